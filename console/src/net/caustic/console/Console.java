@@ -7,10 +7,14 @@ import java.util.Map;
 
 import net.caustic.LogScraperListener;
 import net.caustic.Scraper;
+import net.caustic.database.AsyncDatabaseListener;
 import net.caustic.database.Connection;
 import net.caustic.database.ConnectionException;
 import net.caustic.database.Database;
 import net.caustic.database.DatabaseException;
+import net.caustic.database.DatabaseListener;
+import net.caustic.database.MappedFileDatabase;
+import net.caustic.http.HttpBrowser;
 import net.caustic.log.Logger;
 import net.caustic.util.StringUtils;
 
@@ -23,6 +27,7 @@ public class Console {
 	private final Logger logger;
 	private final Connection connection; // can be null.
 	private final Database database;
+	private final DatabaseListener output; // can be null.
 	private final Input input;
 
 	private final String instruction;
@@ -42,8 +47,24 @@ public class Console {
 		} else {
 			database = options.getInMemoryDatabase();
 		}
+		output = options.getOutput();
+		if(output != null) {
+			database.addListener(output);
+		}
 		
-		scraper = new Scraper(database, options.getNumThreads());
+		HttpBrowser browser = options.getBrowser();
+		if(options.useVirtualThreads()) {
+			try {
+				scraper = Scraper.withVirtualThreads(database, browser);
+			} catch(UnsupportedOperationException e) {
+				throw new InvalidOptionException(ConsoleOptions.THREADS + "=" + ConsoleOptions.VIRTUAL_THREADS +
+						" is not supported: " + e.getMessage());
+			}
+		} else {
+			scraper = new Scraper(database, browser, options.getNumThreads());
+		}
+		scraper.setPriority(options.getPriority());
+		scraper.setMaxScrapes(options.getMaxRows());
 		scraper.register(logger);
 	}
 	
@@ -70,9 +91,15 @@ public class Console {
 		}
 		scraper.join();
 		
+		if(output instanceof AsyncDatabaseListener) {
+			((AsyncDatabaseListener) output).close();
+		}
 		if(connection != null) {
 			connection.close();
 		}
+		if(database instanceof MappedFileDatabase) {
+			((MappedFileDatabase) database).close();
+		}
 	}
 	
 	/**
@@ -93,6 +120,16 @@ public class Console {
 					logger.i("Could not close input " + StringUtils.quote(input) + ": " + e.getMessage());
 					logger.e(e);
 				}
+				try {
+					if(output instanceof AsyncDatabaseListener) {
+						((AsyncDatabaseListener) output).flush();
+					}
+				} catch(InterruptedException e) {
+					logger.e(e);
+				} catch(DatabaseException e) {
+					logger.i("Couldn't finish output: " + e.getMessage());
+					logger.e(e);
+				}
 				try {
 					if(connection != null) {
 						connection.close();
@@ -101,6 +138,14 @@ public class Console {
 					logger.i("Couldn't close connection: " + e.getMessage());
 					logger.e(e);
 				}
+				try {
+					if(database instanceof MappedFileDatabase) {
+						((MappedFileDatabase) database).close();
+					}
+				} catch(IOException e) {
+					logger.i("Couldn't close database: " + e.getMessage());
+					logger.e(e);
+				}
 			}
 		};
 	}
@@ -2,6 +2,8 @@ package net.caustic.console;
 
 import static net.caustic.util.StringUtils.NEWLINE;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -11,15 +13,21 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
+import net.caustic.Priority;
+import net.caustic.Scraper;
+import net.caustic.database.AsyncDatabaseListener;
 import net.caustic.database.CSVDatabaseListener;
 import net.caustic.database.Database;
+import net.caustic.database.DatabaseListener;
 import net.caustic.database.Connection;
 import net.caustic.database.InMemoryDatabase;
 import net.caustic.database.JDBCSqliteConnection;
+import net.caustic.database.MappedFileDatabase;
 import net.caustic.database.MultiTableDatabase;
 import net.caustic.database.SingleTableDatabase;
 import net.caustic.http.DefaultHttpBrowser;
 import net.caustic.http.HttpBrowser;
+import net.caustic.http.HttpClientRequester;
 import net.caustic.log.Logger;
 import net.caustic.log.MultiLog;
 import net.caustic.log.SystemErrLogger;
@@ -69,6 +77,18 @@ final class ConsoleOptions {
 			SQLITE_FORMAT
 		);
 	
+	public static final String ASYNC_OUTPUT = "--async-output";
+	public static final String BLOCK_ASYNC_OUTPUT = "block";
+	public static final String DROP_ASYNC_OUTPUT = "drop";
+	public static final String SPILL_ASYNC_OUTPUT = "spill";
+	public static final String ASYNC_OUTPUT_DEFAULT = BLOCK_ASYNC_OUTPUT;
+	private final Option asyncOutput = Option.withDefault(ASYNC_OUTPUT, ASYNC_OUTPUT_DEFAULT);
+	public static final List<String> validAsyncOutputPolicies = Arrays.asList(
+			BLOCK_ASYNC_OUTPUT,
+			DROP_ASYNC_OUTPUT,
+			SPILL_ASYNC_OUTPUT
+		);
+	
 	public static final String SAVE_TO_FILE_DEFAULT = TIMESTAMP;
 	
 	public static final String SKIP_ROWS = "--skip-rows";
@@ -85,6 +105,10 @@ final class ConsoleOptions {
 		
 	public static final String SINGLE_TABLE = "--single-table";
 	private final Option singleTable = Option.withoutDefault(SINGLE_TABLE);
+	
+	public static final String SPILL = "--spill";
+	public static final String SPILL_DEFAULT = SAVE_TO_FILE_DEFAULT + ".spill";
+	private final Option spill = Option.withDefault(SPILL, SPILL_DEFAULT);
 	/*
 	public static final String SOURCE = "--source";
 	public static final String SOURCE_DEFAULT = "";
@@ -92,11 +116,34 @@ final class ConsoleOptions {
 	*/
 	public static final String THREADS = "--threads";
 	public static final String THREADS_DEFAULT = "6";
+	public static final String VIRTUAL_THREADS = "virtual";
 	private final Option threads = Option.withDefault(THREADS, THREADS_DEFAULT);
 	
+	public static final String MAX_ROWS = "--max-rows";
+	public static final String MAX_ROWS_DEFAULT = "100";
+	private final Option maxRows = Option.withDefault(MAX_ROWS, MAX_ROWS_DEFAULT);
+	
+	public static final String PRIORITY = "--priority";
+	public static final String FIFO_PRIORITY = "fifo";
+	public static final String DEPTH_FIRST_PRIORITY = "depth-first";
+	public static final String FIND_FIRST_PRIORITY = "find-first";
+	public static final String PRIORITY_DEFAULT = FIFO_PRIORITY;
+	private final Option priority = Option.withDefault(PRIORITY, PRIORITY_DEFAULT);
+	public static final List<String> validPriorities = Arrays.asList(
+			FIFO_PRIORITY,
+			DEPTH_FIRST_PRIORITY,
+			FIND_FIRST_PRIORITY
+		);
+	
 	public static final String TIMEOUT_MILLISECONDS = "--timeout";
 	private final Option timeoutMilliseconds = Option.withDefault(TIMEOUT_MILLISECONDS, Integer.toString(HttpBrowser.DEFAULT_TIMEOUT_MILLISECONDS));
 	
+	public static final String CONNECT_TIMEOUT_MILLISECONDS = "--connect-timeout";
+	private final Option connectTimeoutMilliseconds = Option.withDefault(CONNECT_TIMEOUT_MILLISECONDS, Integer.toString(HttpBrowser.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS));
+	
+	public static final String HTTP_CLIENT = "--http-client";
+	private final Option httpClient = Option.withoutDefault(HTTP_CLIENT);
+	
 	public static final String USAGE = 
 "usage: microscraper <uri> [<options>]" + NEWLINE +
 "       microscraper <json> [<options>]" + NEWLINE + NEWLINE +
@@ -115,11 +162,33 @@ final class ConsoleOptions {
 "        The default column delimiter is "+ StringUtils.quote(INPUT_DELIMITER_DEFAULT) + "." + NEWLINE +
 "    " + LOG + NEWLINE +
 "        Show log in stderr." + NEWLINE +
+"    " + MAX_ROWS + "=<num-rows>" + NEWLINE +
+"        How many rows of input to scrape at once.  Reading" + NEWLINE +
+"        input waits until a row finishes.  Defaults to " + MAX_ROWS_DEFAULT + " rows." + NEWLINE +
+"    " + PRIORITY + "=(" + StringUtils.join(validPriorities.toArray(new String[0]), "|") + ")" + NEWLINE +
+"        Which waiting instructions to run first.  " + StringUtils.quote(FIFO_PRIORITY) + NEWLINE +
+"        runs them in the order they came, " + StringUtils.quote(DEPTH_FIRST_PRIORITY) + " runs" + NEWLINE +
+"        deeper ones first, and " + StringUtils.quote(FIND_FIRST_PRIORITY) + " runs finds before" + NEWLINE +
+"        loads.  Defaults to " + StringUtils.quote(PRIORITY_DEFAULT) + "." + NEWLINE +
 "    " + MAX_RESPONSE_SIZE + NEWLINE +
 "        How many KB of a response to load from a single request " + NEWLINE +
 "        before cutting off the response.  Defaults to " + MAX_RESPONSE_SIZE_DEFAULT + "KB." + NEWLINE +
 "    " + FORMAT + "=(" + StringUtils.join(validOutputFormats.toArray(new String[0]), "|") +")" + NEWLINE +
 "        How to format output.  Defaults to " + StringUtils.quote(FORMAT_DEFAULT) + "." + NEWLINE +
+"    " + ASYNC_OUTPUT + "[=(" + StringUtils.join(validAsyncOutputPolicies.toArray(new String[0]), "|") + ")]" + NEWLINE +
+"        Print " + CSV_FORMAT + " and " + TAB_FORMAT + " output from its own thread, so that" + NEWLINE +
+"        printing does not hold up scraping.  The value says what" + NEWLINE +
+"        to do with results when too many wait to be printed:" + NEWLINE +
+"        " + StringUtils.quote(BLOCK_ASYNC_OUTPUT) + " waits, " + StringUtils.quote(DROP_ASYNC_OUTPUT) + " leaves them out, and" + NEWLINE +
+"        " + StringUtils.quote(SPILL_ASYNC_OUTPUT) + " keeps them in memory.  Defaults to " + StringUtils.quote(ASYNC_OUTPUT_DEFAULT) + "." + NEWLINE +
+"        Without this, output is printed as results are found." + NEWLINE +
+"    " + HTTP_CLIENT + NEWLINE +
+"        Make requests with Java's HttpClient, which reuses" + NEWLINE +
+"        connections and speaks HTTP/2.  " + TIMEOUT_MILLISECONDS + " also limits each" + NEWLINE +
+"        read of a response.  Host, Connection, Content-Length," + NEWLINE +
+"        Expect and Upgrade headers are set by HttpClient, and" + NEWLINE +
+"        ones from instructions are left out." + NEWLINE +
+"        Requires Java " + HttpClientRequester.MIN_JAVA_VERSION + " or later." + NEWLINE +
 "    " + RATE_LIMIT + "=<max-kbps>" + NEWLINE +
 "        The rate limit, in KBPS, for loading from a single host." + NEWLINE +
 "        Defaults to " + StringUtils.quote(RATE_LIMIT_DEFAULT) + " KBPS." + NEWLINE +
@@ -128,14 +197,24 @@ final class ConsoleOptions {
 "        request with a single host.  Defaults to " + REQUEST_WAIT_DEFAULT + "ms." + NEWLINE +
 "    " + SINGLE_TABLE + NEWLINE +
 "        Save all results to a single sqlite table, if using sqlite" + NEWLINE +
+"    " + SPILL + "[=<path>]" + NEWLINE +
+"        Keep results in a memory-mapped file instead of the heap," + NEWLINE +
+"        if not using sqlite.  Defaults to " + StringUtils.quote(SPILL_DEFAULT) + "." + NEWLINE +
 /*
 "    " + SOURCE + "=<source>" + NEWLINE +
 "        A string to use as source for the instruction." + NEWLINE +
 "        Only Finds use sources." + NEWLINE + */
 "    " + SKIP_ROWS + "=<num-skip-rows>" + NEWLINE + 
 "        How many rows of input to skip.  Defaults to " + SKIP_ROWS_DEFAULT + " rows." + NEWLINE +
-"    " + THREADS + "=<num-threads>" + NEWLINE +
+"    " + THREADS + "=(<num-threads>|" + VIRTUAL_THREADS + ")" + NEWLINE +
 "        How many threads to use.  Defaults to " + THREADS_DEFAULT + " threads." + NEWLINE +
+"        " + StringUtils.quote(VIRTUAL_THREADS) + " runs each instruction on its own" + NEWLINE +
+"        thread, and limits how many requests are open to a host." + NEWLINE +
+"        Requires Java " + Scraper.VIRTUAL_THREADS_MIN_JAVA_VERSION + " or later." + NEWLINE +
+"    " + CONNECT_TIMEOUT_MILLISECONDS + "=<timeout>" + NEWLINE +
+"        How many milliseconds to wait for a connection to open" + NEWLINE +
+"        before giving up on a request.  Defaults to " + HttpBrowser.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS + NEWLINE +
+"        milliseconds." + NEWLINE +
 "    " + TIMEOUT_MILLISECONDS + "=<timeout>" + NEWLINE +
 "        How many milliseconds to wait before giving up on a" + NEWLINE + 
 "        request.  Defaults to " + HttpBrowser.DEFAULT_TIMEOUT_MILLISECONDS + " milliseconds.";
@@ -251,15 +330,56 @@ final class ConsoleOptions {
 	 */
 	Database getInMemoryDatabase() throws InvalidOptionException {
 
-		final Database database = new InMemoryDatabase();
+		final Database database;
+		if(isSpecified(spill)) {
+			try {
+				database = new MappedFileDatabase(new File(getValue(spill)));
+			} catch(IOException e) {
+				throw new InvalidOptionException("Could not create " + StringUtils.quote(getValue(spill)) +
+						": " + e.getMessage());
+			}
+		} else {
+			database = new InMemoryDatabase();
+		}
+		return database;
+	}
+	
+	/**
+	 * 
+	 * @return A {@link DatabaseListener} that prints results in the user-passed
+	 * format, or <code>null</code> if results are not printed.  It is an
+	 * {@link AsyncDatabaseListener} if the user asked for {@link #ASYNC_OUTPUT}.
+	 * @throws InvalidOptionException if the user specified an output related
+	 * option that is invalid.
+	 */
+	DatabaseListener getOutput() throws InvalidOptionException {
 		// Determine delimiter.
+		final DatabaseListener output;
 		if(getValue(format).equals(CSV_FORMAT)) {
-			database.addListener(new CSVDatabaseListener(COMMA_DELIMITER));
+			output = new CSVDatabaseListener(COMMA_DELIMITER);
 		} else if(getValue(format).equals(TAB_FORMAT)) {
-			database.addListener(new CSVDatabaseListener(TAB_DELIMITER));
+			output = new CSVDatabaseListener(TAB_DELIMITER);
+		} else {
+			return null;
+		}
+		
+		if(isSpecified(asyncOutput)) {
+			String policy = getValue(asyncOutput);
+			if(policy.equals(BLOCK_ASYNC_OUTPUT)) {
+				return new AsyncDatabaseListener(output);
+			} else if(policy.equals(DROP_ASYNC_OUTPUT)) {
+				return new AsyncDatabaseListener(output, AsyncDatabaseListener.DEFAULT_CAPACITY,
+						AsyncDatabaseListener.DROP);
+			} else if(policy.equals(SPILL_ASYNC_OUTPUT)) {
+				return new AsyncDatabaseListener(output, AsyncDatabaseListener.DEFAULT_CAPACITY,
+						AsyncDatabaseListener.SPILL);
+			} else {
+				throw new InvalidOptionException(StringUtils.quote(policy)
+						+ " is not a valid " + ASYNC_OUTPUT + " policy.");
+			}
+		} else {
+			return output;
 		}
-	
-		return database;
 	}
 
 	/**
@@ -281,7 +401,12 @@ final class ConsoleOptions {
 	 */
 	HttpBrowser getBrowser() throws InvalidOptionException {
 
-		HttpBrowser browser = new DefaultHttpBrowser();
+		final HttpBrowser browser;
+		try {
+			browser = new DefaultHttpBrowser(isSpecified(httpClient));
+		} catch(UnsupportedOperationException e) {
+			throw new InvalidOptionException(HTTP_CLIENT + " is not supported: " + e.getMessage());
+		}
 		
 		// Set timeout.
 		try {
@@ -294,6 +419,17 @@ final class ConsoleOptions {
 			throw new InvalidOptionException(TIMEOUT_MILLISECONDS + " must be an integer");
 		}
 		
+		// Set connect timeout.
+		try {
+			int timeout = Integer.parseInt(getValue(connectTimeoutMilliseconds));
+			if(timeout < 1) {
+				throw new InvalidOptionException(CONNECT_TIMEOUT_MILLISECONDS + " must be greater than 0.");
+			}
+			browser.setConnectTimeout(timeout);
+		} catch(NumberFormatException e) {
+			throw new InvalidOptionException(CONNECT_TIMEOUT_MILLISECONDS + " must be an integer");
+		}
+		
 		// Set rate limit.
 		try {
 			int limit = Integer.parseInt(getValue(rateLimit));
@@ -382,6 +518,16 @@ final class ConsoleOptions {
 		}
 	}
 	
+	/**
+	 * 
+	 * @return <code>true</code> if each instruction should get its own virtual thread,
+	 * in which case {@link #getNumThreads()} does not apply.
+	 * @throws InvalidOptionException
+	 */
+	boolean useVirtualThreads() throws InvalidOptionException {
+		return getValue(threads).equals(VIRTUAL_THREADS);
+	}
+	
 	/**
 	 * 
 	 * @return How many threads should be used.
@@ -399,4 +545,39 @@ final class ConsoleOptions {
 		}
 	}
 	
+	/**
+	 * 
+	 * @return How many rows of input should be scraped at once.
+	 * @throws InvalidOptionException
+	 */
+	int getMaxRows() throws InvalidOptionException {
+		try {
+			int rows = Integer.valueOf(getValue(maxRows));
+			if(rows <= 0) {
+				throw new InvalidOptionException(MAX_ROWS + " must be greater than 0");
+			}
+			return rows;
+		} catch(NumberFormatException e) {
+			throw new InvalidOptionException(MAX_ROWS + " must be an integer.");
+		}
+	}
+	
+	/**
+	 * 
+	 * @return The {@link Priority} that orders waiting instructions.
+	 * @throws InvalidOptionException
+	 */
+	Priority getPriority() throws InvalidOptionException {
+		String priority = getValue(this.priority);
+		if(priority.equals(FIFO_PRIORITY)) {
+			return Priority.FIFO;
+		} else if(priority.equals(DEPTH_FIRST_PRIORITY)) {
+			return Priority.DEPTH_FIRST;
+		} else if(priority.equals(FIND_FIRST_PRIORITY)) {
+			return Priority.FIND_FIRST;
+		} else {
+			throw new InvalidOptionException(StringUtils.quote(priority)
+					+ " is not a valid priority.");
+		}
+	}
 }
@@ -2,7 +2,7 @@ package net.caustic.database;
 
 import au.com.bytecode.opencsv.CSVWriter;
 
-import net.caustic.database.DatabaseListener;
+import net.caustic.database.BatchDatabaseListener;
 import net.caustic.database.DatabaseListenerException;
 import net.caustic.scope.Scope;
 
@@ -11,7 +11,7 @@ import net.caustic.scope.Scope;
  * @author talos
  *
  */
-public class CSVDatabaseListener implements DatabaseListener {
+public class CSVDatabaseListener implements BatchDatabaseListener {
 
 	private final CSVWriter writer;	
 	public CSVDatabaseListener(char separator) {
@@ -28,6 +28,14 @@ public class CSVDatabaseListener implements DatabaseListener {
 		write(null, scope, key, value);
 	}
 
+	@Override
+	public void onPutBatch(Scope[] scopes, String[] keys, String[] values)
+			throws DatabaseListenerException {
+		for(int i = 0 ; i < scopes.length ; i ++) {
+			write(null, scopes[i], keys[i], values[i]);
+		}
+	}
+
 	@Override
 	public void onNewScope(Scope scope) throws DatabaseListenerException {
 
@@ -12,6 +12,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import net.caustic.database.ConnectionException;
 import net.caustic.database.Table;
@@ -19,6 +23,12 @@ import net.caustic.util.StringUtils;
 
 /**
  * An implementation of {@link SQLConnection} for org.sqlite.JDBC
+ * <p>
+ * Modifications are batched, and committed in groups: once {@link #COMMIT_SIZE} are
+ * waiting, or {@link #COMMIT_INTERVAL_MILLISECONDS} after the first of them, whichever
+ * comes first.  Reads only execute waiting batches, which makes them visible on this
+ * connection without committing.  Call {@link #commit()} to wait until everything
+ * modified so far is durable.
  * @see SQLConnection
  * @author realest
  *
@@ -26,6 +36,17 @@ import net.caustic.util.StringUtils;
 public class JDBCSqliteConnection implements SQLConnection {
 	public static final int CACHE_SIZE = 100;
 	
+	/**
+	 * How many modifications can wait to be committed before they are committed
+	 * together.
+	 */
+	public static final int COMMIT_SIZE = 1000;
+	
+	/**
+	 * How many milliseconds a modification can wait to be committed.
+	 */
+	public static final int COMMIT_INTERVAL_MILLISECONDS = 1000;
+	
 	private final boolean isScopeNumeric;
 	private Connection connection;
 	private final String connectionPath;
@@ -69,6 +90,72 @@ public class JDBCSqliteConnection implements SQLConnection {
 	
 	private final String scopeColumnName;
 	
+	/**
+	 * Every {@link SQLTable} known to exist in this connection, by name.  Tables are
+	 * only looked up in SQLite the first time they are asked for.
+	 */
+	private final Map<String, SQLTable> tables = new HashMap<String, SQLTable>();
+	
+	/**
+	 * The SQL of the statement in {@link #prepMods} that has batched modifications
+	 * waiting to be executed, or <code>null</code> if none are.
+	 */
+	private String unexecutedSql = null;
+	
+	/**
+	 * How many modifications have been batched since the last commit.
+	 */
+	private int uncommitted = 0;
+	
+	/**
+	 * Commits modifications that have waited {@link #COMMIT_INTERVAL_MILLISECONDS}.
+	 */
+	private ScheduledExecutorService committer;
+	
+	/**
+	 * Why {@link #committer} last failed to commit, or <code>null</code> if it has not
+	 * failed since this was last thrown.  Thrown by the next {@link #batchModify(String, String[])},
+	 * {@link #commit()}, or {@link #close()}.
+	 */
+	private SQLConnectionException committerFailure = null;
+	
+	/**
+	 * Execute the batched modifications waiting in {@link #unexecutedSql}, so that they
+	 * are visible to reads on this connection.  Does not commit them.
+	 * @throws SQLException If the batch could not be executed.
+	 */
+	private synchronized void executeBatch() throws SQLException {
+		if(unexecutedSql != null) {
+			prepMods.get(unexecutedSql).executeBatch();
+			unexecutedSql = null;
+		}
+	}
+	
+
+	/**
+	 * Throw and forget the exception from {@link #committer}'s last failed commit, if there
+	 * was one.
+	 * @throws SQLConnectionException If {@link #committer} failed to commit.
+	 */
+	private synchronized void throwCommitterFailure() throws SQLConnectionException {
+		if(committerFailure != null) {
+			SQLConnectionException failure = committerFailure;
+			committerFailure = null;
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Execute and commit the waiting batches.
+	 * @throws SQLException If they could not be committed.
+	 */
+	private synchronized void commitBatches() throws SQLException {
+		executeBatch();
+		if(uncommitted > 0) {
+			connection.commit();
+			uncommitted = 0;
+		}
+	}
 
 	/**
 	 * Remember to close the returned result set! Don't have to worry about closing
@@ -98,15 +185,16 @@ public class JDBCSqliteConnection implements SQLConnection {
 		this.isScopeNumeric = isScopeNumeric;
 	}
 
+	/**
+	 * Commit every modification made so far.  Returns once they are durable.
+	 * @throws SQLConnectionException If they could not be committed, or if an earlier
+	 * group commit failed.
+	 */
 	@Override
-	public void commit() throws SQLConnectionException {
+	public synchronized void commit() throws SQLConnectionException {
+		throwCommitterFailure();
 		try {
-			for(PreparedStatement stmt : prepMods.values()) {
-				stmt.executeBatch();
-			}
-			//System.out.println("committing...");
-			connection.commit();
-			//System.out.println("finished committing.");
+			commitBatches();
 		} catch(SQLException e) {
 			throw new SQLConnectionException(e);
 		}
@@ -153,6 +241,13 @@ public class JDBCSqliteConnection implements SQLConnection {
 			connection.setAutoCommit(false);
 			tableExistsStmt =
 					connection.prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name=?;");
+			committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SQLite committer for " + connectionPath);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 		} catch(SQLException e) {
 			throw new SQLConnectionException(e);
 		} catch(ClassNotFoundException e) {
@@ -161,7 +256,7 @@ public class JDBCSqliteConnection implements SQLConnection {
 	}
 	
 	@Override
-	public Table newTable(String name, String[] columnNames, String[] primaryKeyColumnNames)
+	public synchronized Table newTable(String name, String[] columnNames, String[] primaryKeyColumnNames)
 			throws ConnectionException {
 		String scopeColumnType = isScopeNumeric ? intColumnType() : textColumnType();
 		
@@ -179,24 +274,40 @@ public class JDBCSqliteConnection implements SQLConnection {
 		
 		executeNow("CREATE TABLE `" + name + "` (" + definitionStr + ")");
 		
-		return new SQLTable(this, name);
+		SQLTable table = new SQLTable(this, name, columnNames);
+		tables.put(name, table);
+		return table;
 	}
 
+	/**
+	 * Commit every modification made so far, then close the connection.
+	 * @throws ConnectionException If the modifications could not be committed, or if an
+	 * earlier group commit failed.  The connection is closed regardless.
+	 */
 	@Override
-	public void close() throws ConnectionException {
+	public synchronized void close() throws ConnectionException {
 		try {
-			commit();
-			connection.close();
+			if(committer != null) {
+				committer.shutdownNow();
+			}
+			try {
+				commit();
+			} finally {
+				connection.close();
+			}
 		} catch(SQLException e) {
 			throw new SQLConnectionException(e);
 		}
 	}
 	
 	@Override
-	public Table getTable(String name) throws ConnectionException {
+	public synchronized Table getTable(String name) throws ConnectionException {
+		if(tables.containsKey(name)) {
+			return tables.get(name);
+		}
 		try {
 			//System.out.println("testing whether " + name + " exists...");
-			commit();
+			executeBatch();
 			tableExistsStmt.setString(1, name);
 			ResultSet result = tableExistsStmt.executeQuery();
 			boolean tableExists = result.next();
@@ -204,7 +315,9 @@ public class JDBCSqliteConnection implements SQLConnection {
 			//System.out.println("does table " + name + " exist?: " + tableExists);
 			
 			if(tableExists) {
-				return new SQLTable(this, name);
+				SQLTable table = new SQLTable(this, name);
+				tables.put(name, table);
+				return table;
 			} else {
 				return null;
 			}
@@ -219,10 +332,10 @@ public class JDBCSqliteConnection implements SQLConnection {
 	}
 	
 	@Override
-	public boolean doesTableHaveColumn(String tableName, String columnName)
+	public synchronized boolean doesTableHaveColumn(String tableName, String columnName)
 				throws SQLConnectionException{
 		try {
-			commit();
+			executeBatch();
 			//System.out.println("does table " +tableName +" have column " + columnName + 
 			//	": " + "SELECT * FROM `" + tableName + "`");
 			boolean result = false;
@@ -252,11 +365,11 @@ public class JDBCSqliteConnection implements SQLConnection {
 	}
 
 	@Override
-	public List<Map<String, String>> select(String sql, String[] columnNames, String[] parameters)
+	public synchronized List<Map<String, String>> select(String sql, String[] columnNames, String[] parameters)
 			throws SQLConnectionException {
 			
 		try {
-			commit(); // commit any lingering changes before selecting
+			executeBatch(); // make any lingering changes visible before selecting
 			//System.out.println("Selecting " + sql + " with params " + Arrays.asList(parameters));
 			ResultSet rs = getResultSet(sql, parameters);
 			List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
@@ -279,7 +392,7 @@ public class JDBCSqliteConnection implements SQLConnection {
 	}
 
 	@Override
-	public void executeNow(String sql) throws SQLConnectionException {
+	public synchronized void executeNow(String sql) throws SQLConnectionException {
 		try {
 			commit();
 			//System.out.println(sql);
@@ -292,10 +405,21 @@ public class JDBCSqliteConnection implements SQLConnection {
 		}
 	}
 	
+	/**
+	 * Modifications with the same <code>sql</code> in a row are batched together.  A
+	 * different <code>sql</code> executes the waiting batch first, so that modifications
+	 * happen in the order they were made.
+	 * @throws SQLConnectionException If the modification could not be batched, or if an
+	 * earlier group commit failed.
+	 */
 	@Override
-	public void batchModify(String sql, String[] parameters)
+	public synchronized void batchModify(String sql, String[] parameters)
 			throws SQLConnectionException {
+		throwCommitterFailure();
 		try {
+			if(unexecutedSql != null && !unexecutedSql.equals(sql)) {
+				executeBatch();
+			}
 			PreparedStatement stmt;
 			if(prepMods.containsKey(sql)) {
 				stmt = prepMods.get(sql);
@@ -305,6 +429,24 @@ public class JDBCSqliteConnection implements SQLConnection {
 			}
 			setParams(stmt, parameters);
 			stmt.addBatch();
+			unexecutedSql = sql;
+			
+			uncommitted++;
+			if(uncommitted >= COMMIT_SIZE) {
+				commit();
+			} else if(uncommitted == 1) {
+				committer.schedule(new Runnable() {
+					public void run() {
+						synchronized(JDBCSqliteConnection.this) {
+							try {
+								commitBatches();
+							} catch(SQLException e) {
+								committerFailure = new SQLConnectionException(e);
+							}
+						}
+					}
+				}, COMMIT_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+			}
 		} catch(SQLException e) {
 			throw new SQLConnectionException(e);
 		}
@@ -0,0 +1,140 @@
+package net.caustic.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file mapped into memory in segments of {@link #SEGMENT_SIZE} bytes, which are
+ * mapped the first time they are used.  Longs and ints must not cross a segment
+ * boundary, byte arrays may.
+ * @author realest
+ *
+ */
+final class MappedFile {
+
+	/**
+	 * How many bytes are mapped at once.
+	 */
+	public static final int SEGMENT_SIZE = 1 << 26;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final boolean readOnly;
+	private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+	/**
+	 * @param file The {@link File} to map.
+	 * @param readOnly <code>true</code> to map an existing file that will not be
+	 * written to, <code>false</code> to create the file, or empty it if it exists.
+	 * @throws IOException if the file could not be opened.
+	 */
+	public MappedFile(File file, boolean readOnly) throws IOException {
+		this.readOnly = readOnly;
+		this.file = new RandomAccessFile(file, readOnly ? "r" : "rw");
+		if(!readOnly) {
+			this.file.setLength(0);
+		}
+		this.channel = this.file.getChannel();
+	}
+
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	public long getLong(long position) throws IOException {
+		return segment(position).getLong(offset(position));
+	}
+
+	public int getInt(long position) throws IOException {
+		return segment(position).getInt(offset(position));
+	}
+
+	public void putLong(long position, long value) throws IOException {
+		segment(position).putLong(offset(position), value);
+	}
+
+	public void putInt(long position, int value) throws IOException {
+		segment(position).putInt(offset(position), value);
+	}
+
+	/**
+	 * Fill <code>bytes</code> starting at <code>position</code>.
+	 */
+	public void get(long position, byte[] bytes) throws IOException {
+		int copied = 0;
+		while(copied < bytes.length) {
+			MappedByteBuffer segment = segment(position + copied);
+			int offset = offset(position + copied);
+			int length = Math.min(bytes.length - copied, segment.capacity() - offset);
+			ByteBuffer view = segment.duplicate();
+			view.position(offset);
+			view.get(bytes, copied, length);
+			copied += length;
+		}
+	}
+
+	/**
+	 * Write all of <code>bytes</code> starting at <code>position</code>.
+	 */
+	public void put(long position, byte[] bytes) throws IOException {
+		int copied = 0;
+		while(copied < bytes.length) {
+			MappedByteBuffer segment = segment(position + copied);
+			int offset = offset(position + copied);
+			int length = Math.min(bytes.length - copied, segment.capacity() - offset);
+			ByteBuffer view = segment.duplicate();
+			view.position(offset);
+			view.put(bytes, copied, length);
+			copied += length;
+		}
+	}
+
+	/**
+	 * Write every mapped segment out to the file.
+	 */
+	public void force() {
+		for(int i = 0 ; i < segments.length ; i ++) {
+			if(segments[i] != null) {
+				segments[i].force();
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		if(!readOnly) {
+			force();
+		}
+		segments = new MappedByteBuffer[0];
+		file.close();
+	}
+
+	private static int offset(long position) {
+		return (int) (position % SEGMENT_SIZE);
+	}
+
+	private MappedByteBuffer segment(long position) throws IOException {
+		int index = (int) (position / SEGMENT_SIZE);
+		if(index >= segments.length) {
+			MappedByteBuffer[] grown = new MappedByteBuffer[Math.max(segments.length * 2, index + 1)];
+			System.arraycopy(segments, 0, grown, 0, segments.length);
+			segments = grown;
+		}
+		if(segments[index] == null) {
+			long start = (long) index * SEGMENT_SIZE;
+			if(readOnly) {
+				long length = Math.min(SEGMENT_SIZE, channel.size() - start);
+				if(length <= 0) {
+					throw new IOException("Position " + position + " is past the end of the file.");
+				}
+				segments[index] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			} else {
+				segments[index] = channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_SIZE);
+			}
+		}
+		return segments[index];
+	}
+}
@@ -0,0 +1,263 @@
+package net.caustic.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import net.caustic.scope.Scope;
+
+/**
+ * A {@link Database} that keeps scopes and values in memory-mapped files instead of
+ * the heap, so that the operating system pages them in and out as they are used.
+ * <p>
+ * Values are appended to a data file.  Each value record points back to the
+ * previous record of the same scope.  A separate index file holds, for each scope
+ * id, its parent id and its latest record.  Once {@link #close()}d, the files can be
+ * reopened with {@link #openReadOnly(File)}.
+ * @author realest
+ *
+ */
+public class MappedFileDatabase extends Database {
+
+	/**
+	 * Appended to the path of the data file for the path of the index file.
+	 */
+	public static final String INDEX_SUFFIX = ".index";
+
+	private static final int MAGIC = 0x43415553;
+	private static final int VERSION = 1;
+
+	/**
+	 * Bytes at the start of each file: {@link #MAGIC}, {@link #VERSION}, and, in the
+	 * data file, where the data ends.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * Bytes for each scope in the index file: its latest record, its parent id plus one,
+	 * and whether it exists.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 16;
+
+	/**
+	 * Records start on a multiple of this, so that their headers of a long and two
+	 * ints never cross into another segment of {@link MappedFile}.
+	 */
+	private static final int RECORD_ALIGNMENT = 16;
+
+	/**
+	 * Value length of a record for a <code>null</code> value.
+	 */
+	private static final int NULL_LENGTH = -1;
+
+	private static final int NO_PARENT = -1;
+
+	private static final long NO_RECORD = 0;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final MappedFile data;
+	private final MappedFile index;
+
+	/**
+	 * Where the next record in {@link #data} will be written.
+	 */
+	private long end;
+
+	private MappedFileDatabase(MappedFile data, MappedFile index) throws IOException {
+		this.data = data;
+		this.index = index;
+		if(data.isReadOnly()) {
+			if(data.getInt(0) != MAGIC || index.getInt(0) != MAGIC) {
+				throw new IOException("Not a " + MappedFileDatabase.class.getSimpleName() + " file.");
+			} else if(data.getInt(4) != VERSION) {
+				throw new IOException("Unsupported version " + data.getInt(4));
+			}
+			end = data.getLong(8);
+		} else {
+			data.putInt(0, MAGIC);
+			data.putInt(4, VERSION);
+			index.putInt(0, MAGIC);
+			index.putInt(4, VERSION);
+			end = HEADER_SIZE;
+			data.putLong(8, end);
+		}
+		addListener(new MappedFileDatabaseListener(this));
+	}
+
+	/**
+	 * Create a {@link MappedFileDatabase} in <code>file</code>, and an index alongside
+	 * it.  Existing files are emptied.
+	 * @param file The {@link File} to keep values in.
+	 * @throws IOException if the files could not be created.
+	 */
+	public MappedFileDatabase(File file) throws IOException {
+		this(new MappedFile(file, false), new MappedFile(indexFile(file), false));
+	}
+
+	/**
+	 * Reopen a {@link MappedFileDatabase} that was written to <code>file</code>.  Its
+	 * scopes can be read by their ids, but no scopes or values can be added.
+	 * @param file The {@link File} that values were kept in.
+	 * @return A read-only {@link MappedFileDatabase}.
+	 * @throws IOException if the files could not be opened.
+	 */
+	public static MappedFileDatabase openReadOnly(File file) throws IOException {
+		return new MappedFileDatabase(new MappedFile(file, true), new MappedFile(indexFile(file), true));
+	}
+
+	private static File indexFile(File file) {
+		return new File(file.getPath() + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Look in a scope's records for a value.  If it's not there, traverse
+	 * up the tree.
+	 */
+	@Override
+	public String get(Scope scope, String key) throws DatabaseException {
+		return getAll(scope, new String[] { key })[0];
+	}
+
+	/**
+	 * Look in each scope's records for every key not yet found, traversing up
+	 * the tree once.
+	 */
+	@Override
+	public synchronized String[] getAll(Scope scope, String[] keys) throws DatabaseException {
+		byte[][] keyBytes = new byte[keys.length][];
+		for(int i = 0 ; i < keys.length ; i ++) {
+			keyBytes[i] = keys[i].getBytes(UTF_8);
+		}
+		String[] values = new String[keys.length];
+		boolean[] found = new boolean[keys.length];
+		boolean[] seen = new boolean[keys.length];
+		int remaining = keys.length;
+
+		try {
+			int id = InMemoryDatabase.idOf(scope);
+			while(id != NO_PARENT && remaining > 0) {
+				long entry = indexEntry(id);
+				Arrays.fill(seen, false);
+
+				// the latest record for a key in a scope is the first one reached.
+				for(long record = index.getLong(entry) ; record != NO_RECORD ; record = data.getLong(record)) {
+					int keyLength = data.getInt(record + 8);
+					int valueLength = data.getInt(record + 12);
+					byte[] recordKey = null;
+					for(int i = 0 ; i < keys.length ; i ++) {
+						if(found[i] || seen[i] || keyBytes[i].length != keyLength) {
+							continue;
+						}
+						if(recordKey == null) {
+							recordKey = new byte[keyLength];
+							data.get(record + RECORD_ALIGNMENT, recordKey);
+						}
+						if(Arrays.equals(recordKey, keyBytes[i])) {
+							seen[i] = true;
+							if(valueLength != NULL_LENGTH) {
+								byte[] value = new byte[valueLength];
+								data.get(record + RECORD_ALIGNMENT + keyLength, value);
+								values[i] = new String(value, UTF_8);
+								found[i] = true;
+								remaining--;
+							}
+						}
+					}
+				}
+				id = index.getInt(entry + 8) - 1;
+			}
+		} catch(IOException e) {
+			throw new DatabaseReadException("Could not read " + scope, e);
+		}
+		return values;
+	}
+
+	/**
+	 * Add a scope to the index.
+	 * @param parent The <code>int</code> id of the parent scope, or {@link #NO_PARENT}.
+	 * @param id The <code>int</code> id of the new scope.
+	 */
+	synchronized void newScope(int parent, int id) throws IOException {
+		checkWritable();
+		long entry = entryPosition(id);
+		index.putLong(entry, NO_RECORD);
+		index.putInt(entry + 8, parent + 1);
+		index.putInt(entry + 12, 1);
+	}
+
+	synchronized void newScope(int id) throws IOException {
+		newScope(NO_PARENT, id);
+	}
+
+	/**
+	 * Append a record for <code>value</code>, and make it the latest of its scope.
+	 * @param id The <code>int</code> id of the scope.
+	 * @param key The {@link String} key.
+	 * @param value The {@link String} value, which can be <code>null</code>.
+	 */
+	synchronized void put(int id, String key, String value) throws IOException, DatabaseReadException {
+		checkWritable();
+		long entry = indexEntry(id);
+		byte[] keyBytes = key.getBytes(UTF_8);
+		byte[] valueBytes = value == null ? null : value.getBytes(UTF_8);
+
+		long record = end;
+		data.putLong(record, index.getLong(entry));
+		data.putInt(record + 8, keyBytes.length);
+		data.putInt(record + 12, valueBytes == null ? NULL_LENGTH : valueBytes.length);
+		data.put(record + RECORD_ALIGNMENT, keyBytes);
+		long recordEnd = record + RECORD_ALIGNMENT + keyBytes.length;
+		if(valueBytes != null) {
+			data.put(recordEnd, valueBytes);
+			recordEnd += valueBytes.length;
+		}
+
+		end = (recordEnd + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+		data.putLong(8, end);
+		index.putLong(entry, record);
+	}
+
+	/**
+	 * @throws IOException if this {@link MappedFileDatabase} was opened with
+	 * {@link #openReadOnly(File)}.
+	 */
+	private void checkWritable() throws IOException {
+		if(data.isReadOnly()) {
+			throw new IOException("Database was opened read-only.");
+		}
+	}
+
+	/**
+	 * Write everything out to the files and unmap them.
+	 * @throws IOException if the files could not be closed.
+	 */
+	public synchronized void close() throws IOException {
+		data.close();
+		index.close();
+	}
+
+	private static long entryPosition(int id) {
+		if(id < 0) {
+			throw new IllegalArgumentException("Scope id " + id + " is negative.");
+		}
+		return HEADER_SIZE + (long) id * INDEX_ENTRY_SIZE;
+	}
+
+	/**
+	 * @return The position of the index entry of an existing scope.
+	 * @throws DatabaseReadException if there is no scope with <code>id</code>.
+	 */
+	private long indexEntry(int id) throws IOException, DatabaseReadException {
+		long entry = entryPosition(id);
+		try {
+			if(index.getInt(entry + 12) == 1) {
+				return entry;
+			}
+		} catch(IOException e) {
+			// past the end of a read-only index.
+		}
+		throw new DatabaseReadException("No scope with id " + id);
+	}
+}
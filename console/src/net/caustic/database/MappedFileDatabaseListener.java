@@ -0,0 +1,59 @@
+package net.caustic.database;
+
+import java.io.IOException;
+
+import net.caustic.scope.Scope;
+
+/**
+ * This {@link DatabaseListener} writes new scopes and values into a
+ * {@link MappedFileDatabase}.
+ * @author realest
+ *
+ */
+class MappedFileDatabaseListener implements DatabaseListener {
+
+	private final MappedFileDatabase db;
+
+	public MappedFileDatabaseListener(MappedFileDatabase db) {
+		this.db = db;
+	}
+
+	@Override
+	public void onPut(Scope scope, String key, String value)
+			throws DatabaseListenerException {
+		try {
+			db.put(InMemoryDatabase.idOf(scope), key, value);
+		} catch(IOException e) {
+			throw new DatabaseListenerException("Could not put " + key + " in " + scope, e);
+		} catch(DatabaseReadException e) {
+			throw new DatabaseListenerException("Could not put " + key + " in " + scope, e);
+		}
+	}
+
+	@Override
+	public void onNewScope(Scope scope)
+			throws DatabaseListenerException {
+		try {
+			db.newScope(InMemoryDatabase.idOf(scope));
+		} catch(IOException e) {
+			throw new DatabaseListenerException("Could not add scope " + scope, e);
+		}
+	}
+
+	@Override
+	public void onNewScope(Scope parent, String key, Scope child)
+			throws DatabaseListenerException {
+		try {
+			db.newScope(InMemoryDatabase.idOf(parent), InMemoryDatabase.idOf(child));
+		} catch(IOException e) {
+			throw new DatabaseListenerException("Could not add scope " + child, e);
+		}
+	}
+
+	@Override
+	public void onNewScope(Scope parent, String key, String value, Scope child)
+			throws DatabaseListenerException {
+		onNewScope(parent, key, child);
+		onPut(child, key, value);
+	}
+}
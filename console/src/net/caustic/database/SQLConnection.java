@@ -53,7 +53,8 @@ interface SQLConnection extends Connection {
 	
 	/**
 	 * Immediately commit all {@link SQLPreparedStatement}s that have not yet been executed in
-	 * {@link SQLConnection}.
+	 * {@link SQLConnection}.  Once this returns, every modification made before it was
+	 * called is durable.
 	 * @throws SQLConnectionException If there is a problem executing one of the statements.
 	 */
 	public abstract void commit() throws SQLConnectionException;
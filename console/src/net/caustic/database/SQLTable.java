@@ -2,6 +2,8 @@ package net.caustic.database;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +31,23 @@ class SQLTable implements Table {
 	 */
 	private final String name;
 	
+	/**
+	 * Names of columns known to be in this {@link SQLTable}.  Columns not in here
+	 * are looked up with {@link SQLConnection#doesTableHaveColumn(String, String)}.
+	 */
+	private final Set<String> columns = new HashSet<String>();
+	
+	/**
+	 * Scopes known to have a row in this {@link SQLTable}.
+	 */
+	private final Set<String> scopes = new HashSet<String>();
+	
+	/**
+	 * Whether {@link #scopes} holds every row in this {@link SQLTable}.  Only
+	 * <code>true</code> if the table was created through this {@link SQLTable}.
+	 */
+	private final boolean allScopesKnown;
+	
 	/**
 	 * Check a {@link String} for backticks, which cause problems in column or
 	 * table names.
@@ -58,9 +77,28 @@ class SQLTable implements Table {
 		return buf.toString();
 	}
 	
+	/**
+	 * Obtain an {@link SQLTable} that already exists.
+	 * @param connection The {@link SQLConnection} of the table.
+	 * @param name The {@link String} name of the table.
+	 */
 	public SQLTable(SQLConnection connection, String name) throws SQLConnectionException {
 		this.name = name;
 		this.connection = connection;
+		this.allScopesKnown = false;
+	}
+	
+	/**
+	 * Obtain an {@link SQLTable} that was just created, and has no rows yet.
+	 * @param connection The {@link SQLConnection} of the table.
+	 * @param name The {@link String} name of the table.
+	 * @param columnNames The {@link String} names of the columns it was created with.
+	 */
+	public SQLTable(SQLConnection connection, String name, String[] columnNames) {
+		this.name = name;
+		this.connection = connection;
+		this.allScopesKnown = true;
+		columns.addAll(Arrays.asList(columnNames));
 	}
 	
 	@Override
@@ -72,6 +110,7 @@ class SQLTable implements Table {
 							"ALTER TABLE `" + name + "` " +
 							" ADD COLUMN `" + columnName + "`" + 
 							connection.textColumnType());
+			columns.add(columnName);
 		} catch(SQLConnectionException e) {
 			throw new TableManipulationException("Couldn't add column " + 
 					StringUtils.quote(columnName) + " to " + StringUtils.quote(name), e);
@@ -80,8 +119,16 @@ class SQLTable implements Table {
 	
 	@Override
 	public boolean hasColumn(String columnName) throws IOTableReadException {
+		if(columns.contains(columnName)) {
+			return true;
+		}
 		try {
-			return connection.doesTableHaveColumn(name, columnName);
+			if(connection.doesTableHaveColumn(name, columnName)) {
+				columns.add(columnName);
+				return true;
+			} else {
+				return false;
+			}
 		} catch(SQLConnectionException e) {
 			throw new IOTableReadException("Error determining whether table " +
 					StringUtils.quote(name) + " has column " + StringUtils.quote(columnName), e);
@@ -111,10 +158,51 @@ class SQLTable implements Table {
 							"(" + StringUtils.join(columnNames, ", ") + ") " +
 							"VALUES (" + StringUtils.join(parameters, ", ") + ")",
 							columnValues);
+			scopes.add(columnValues[0]);
 		} catch(SQLConnectionException e) {
 			throw new TableManipulationException(e.getMessage());
 		}
 	}
+	
+	@Override
+	public void upsert(Scope scope, Map<String, String> map) throws TableManipulationException {
+		if(hasRow(scope)) {
+			if(map.size() > 0) {
+				update(scope, Collections.<String, String>emptyMap(), map);
+			}
+		} else {
+			insert(scope, map);
+		}
+	}
+	
+	/**
+	 * Check whether there is a row for a scope in this {@link SQLTable}, only going to
+	 * {@link #connection} if the table was not created here and the row has not been
+	 * seen yet.
+	 * @param scope The {@link Scope} of the row.
+	 * @return <code>true</code> if there is a row for <code>scope</code>, <code>false</code>
+	 * otherwise.
+	 * @throws TableManipulationException if the table could not be read.
+	 */
+	private boolean hasRow(Scope scope) throws TableManipulationException {
+		String scopeStr = scope.asString();
+		if(scopes.contains(scopeStr)) {
+			return true;
+		} else if(allScopesKnown) {
+			return false;
+		}
+		try {
+			if(select(scope, Collections.<String, String>emptyMap(), new String[] {}).size() > 0) {
+				scopes.add(scopeStr);
+				return true;
+			} else {
+				return false;
+			}
+		} catch(IOTableReadException e) {
+			throw new TableManipulationException("Could not check for row of " +
+					StringUtils.quote(scopeStr) + " in " + StringUtils.quote(name), e);
+		}
+	}
 
 	@Override
 	public void update(Scope scope, Map<String, String> whereMap, Map<String, String> updateMap)
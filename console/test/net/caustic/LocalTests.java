@@ -3,6 +3,7 @@ package net.caustic;
 import net.caustic.console.ConsoleOptionsTest;
 import net.caustic.console.InputTest;
 import net.caustic.database.DatabaseTest;
+import net.caustic.database.MappedFileDatabaseTest;
 import net.caustic.database.SQLConnectionTest;
 import net.caustic.util.MapUtilsTest;
 import net.caustic.util.ScopeFactoryTest;
@@ -16,6 +17,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	ConsoleOptionsTest.class,
 	InputTest.class,
 	DatabaseTest.class,
+	MappedFileDatabaseTest.class,
 	MapUtilsTest.class,
 	ScopeFactoryTest.class,
 	SQLConnectionTest.class,
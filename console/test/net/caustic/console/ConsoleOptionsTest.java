@@ -8,8 +8,11 @@ import static org.junit.Assert.*;
 import java.util.Hashtable;
 import java.util.Map;
 
+import net.caustic.Priority;
 import net.caustic.console.ConsoleOptions;
 import net.caustic.console.InvalidOptionException;
+import net.caustic.database.AsyncDatabaseListener;
+import net.caustic.database.CSVDatabaseListener;
 import net.caustic.util.HashtableUtils;
 
 import org.junit.Test;
@@ -65,4 +68,75 @@ public class ConsoleOptionsTest {
 		options.getInput();
 	}
 	
+	@Test
+	public void testVirtualThreads() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString(),
+				THREADS + "=" + VIRTUAL_THREADS });
+		assertTrue(options.useVirtualThreads());
+		
+		options = new ConsoleOptions(new String[] { randomString(),
+				THREADS + "=" + (randomInt(100) + 1) });
+		assertFalse(options.useVirtualThreads());
+	}
+	
+	@Test(expected=InvalidOptionException.class)
+	public void testMaxRowsMustBePositive() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString(),
+				MAX_ROWS + "=0" });
+		options.getMaxRows();
+	}
+	
+	@Test
+	public void testPriorityDefaultsToFIFO() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString() });
+		assertSame(Priority.FIFO, options.getPriority());
+	}
+	
+	@Test
+	public void testPriority() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString(),
+				PRIORITY + "=" + DEPTH_FIRST_PRIORITY });
+		assertSame(Priority.DEPTH_FIRST, options.getPriority());
+		
+		options = new ConsoleOptions(new String[] { randomString(),
+				PRIORITY + "=" + FIND_FIRST_PRIORITY });
+		assertSame(Priority.FIND_FIRST, options.getPriority());
+		
+		options = new ConsoleOptions(new String[] { randomString(),
+				PRIORITY + "=" + FIFO_PRIORITY });
+		assertSame(Priority.FIFO, options.getPriority());
+	}
+	
+	@Test(expected=InvalidOptionException.class)
+	public void testPriorityMustBeValid() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString(),
+				PRIORITY + "=" + randomString() });
+		options.getPriority();
+	}
+	
+	@Test
+	public void testOutputIsSynchronousByDefault() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString() });
+		assertTrue(options.getOutput() instanceof CSVDatabaseListener);
+	}
+	
+	@Test
+	public void testAsyncOutput() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString(),
+				ASYNC_OUTPUT });
+		assertTrue(options.getOutput() instanceof AsyncDatabaseListener);
+		
+		for(String policy : validAsyncOutputPolicies) {
+			options = new ConsoleOptions(new String[] { randomString(),
+					ASYNC_OUTPUT + "=" + policy });
+			assertTrue(options.getOutput() instanceof AsyncDatabaseListener);
+		}
+	}
+	
+	@Test(expected=InvalidOptionException.class)
+	public void testAsyncOutputPolicyMustBeValid() throws Exception {
+		ConsoleOptions options = new ConsoleOptions(new String[] { randomString(),
+				ASYNC_OUTPUT + "=" + randomString() });
+		options.getOutput();
+	}
 }
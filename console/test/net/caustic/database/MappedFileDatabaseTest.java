@@ -0,0 +1,57 @@
+package net.caustic.database;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import net.caustic.scope.Scope;
+import net.caustic.scope.SerializedScope;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MappedFileDatabaseTest extends DatabaseTest {
+	private File file;
+	private MappedFileDatabase db;
+	
+	@Override
+	public Database getDatabase() throws Exception {
+		file = File.createTempFile("caustic", ".spill");
+		db = new MappedFileDatabase(file);
+		return db;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		file.delete();
+		new File(file.getPath() + MappedFileDatabase.INDEX_SUFFIX).delete();
+	}
+	
+	@Test
+	public void testReopenReadOnly() throws Exception {
+		Database db = getDatabase();
+		Scope scope = db.newDefaultScope();
+		Scope child = db.newScope(scope, "foo", "bar");
+		db.put(scope, "roses", "red");
+		db.put(child, "roses", "pink");
+		db.put(child, "roses", "white");
+		this.db.close();
+		
+		this.db = MappedFileDatabase.openReadOnly(file);
+		Scope reopened = new SerializedScope(child.asString(), child.getName());
+		assertEquals("bar", this.db.get(reopened, "foo"));
+		assertEquals("white", this.db.get(reopened, "roses"));
+		assertEquals("red", this.db.get(new SerializedScope(scope.asString(), scope.getName()), "roses"));
+	}
+	
+	@Test(expected = DatabaseException.class)
+	public void testReadOnlyCannotPut() throws Exception {
+		Database db = getDatabase();
+		Scope scope = db.newDefaultScope();
+		this.db.close();
+		
+		this.db = MappedFileDatabase.openReadOnly(file);
+		this.db.put(new SerializedScope(scope.asString(), scope.getName()), "roses", "red");
+	}
+}
@@ -3,6 +3,7 @@ package net.caustic.database;
 import static org.junit.Assert.*;
 import static net.caustic.util.TestUtils.*;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -90,5 +91,103 @@ public class SQLConnectionTest {
 		assertEquals("Should have populated added column", addValue,
 				table.select(scope, emptyMap,new String[] { addColumn } ).get(0).get(addColumn));
 	}
+	
+	/**
+	 * Upsert twice into <code>table</code>, and check that the second updated the row
+	 * the first inserted.
+	 */
+	private void assertUpsertUpdates(Table table, String column) throws Exception {
+		Scope scope = new SerializedScope(randomString(), "default");
+		String first = randomString();
+		String second = randomString();
+		
+		table.upsert(scope, Collections.singletonMap(column, first));
+		table.upsert(scope, Collections.singletonMap(column, second));
+		
+		List<Map<String, String>> rows = table.select(scope, emptyMap, new String[] { column });
+		assertEquals("Should only have one row", 1, rows.size());
+		assertEquals("Should have updated row", second, rows.get(0).get(column));
+	}
+	
+	@Test
+	public void testUpsertNewTable() throws Exception {
+		String column = randomString();
+		Table table = conn.newTable(randomString(), new String[] { column }, new String[] { });
+		assertUpsertUpdates(table, column);
+	}
+	
+	@Test
+	public void testUpsertExistingTable() throws Exception {
+		String name = randomString();
+		String column = randomString();
+		Scope scope = new SerializedScope(randomString(), "default");
+		String value = randomString();
+		conn.executeNow("CREATE TABLE `" + name + "` (`" + Database.SCOPE_COLUMN_NAME + "` TEXT, `"
+				+ column + "` TEXT)");
+		conn.executeNow("INSERT INTO `" + name + "` VALUES ('" + scope.asString() + "', 'old')");
+		
+		Table table = conn.getTable(name);
+		table.upsert(scope, Collections.singletonMap(column, value));
+		List<Map<String, String>> rows = table.select(scope, emptyMap, new String[] { column });
+		assertEquals("Should update the row already in the table", 1, rows.size());
+		assertEquals(value, rows.get(0).get(column));
+		
+		assertUpsertUpdates(table, column);
+	}
+	
+	@Test
+	public void testExistingTableHasAddedColumn() throws Exception {
+		String name = randomString();
+		String column = randomString();
+		conn.executeNow("CREATE TABLE `" + name + "` (`" + Database.SCOPE_COLUMN_NAME + "` TEXT)");
+		
+		Table table = conn.getTable(name);
+		assertFalse(table.hasColumn(column));
+		table.addColumn(column);
+		assertTrue("Should have added column", table.hasColumn(column));
+	}
+	
+	@Test
+	public void testReadsOwnWritesBeforeCommit() throws Exception {
+		Scope scope = new SerializedScope(randomString(), "default");
+		String column = randomString();
+		String value = randomString();
+		Table table = conn.newTable(randomString(), new String[] { column }, new String[] { });
+		
+		table.insert(scope, Collections.singletonMap(column, value));
+		
+		List<Map<String, String>> rows = table.select(scope, emptyMap, new String[] { column });
+		assertEquals("Should see uncommitted row", 1, rows.size());
+		assertEquals(value, rows.get(0).get(column));
+	}
+	
+	@Test
+	public void testCommittedWritesAreDurable() throws Exception {
+		File file = File.createTempFile("caustic", ".db");
+		file.deleteOnExit();
+		Scope scope = new SerializedScope(randomString(), "default");
+		String name = randomString();
+		String column = randomString();
+		String value = randomString();
+		
+		SQLConnection writer = JDBCSqliteConnection.toFile(file.getPath(), Database.SCOPE_COLUMN_NAME, false);
+		SQLConnection reader = JDBCSqliteConnection.toFile(file.getPath(), Database.SCOPE_COLUMN_NAME, false);
+		writer.open();
+		reader.open();
+		try {
+			writer.newTable(name, new String[] { column }, new String[] { })
+					.insert(scope, Collections.singletonMap(column, value));
+			writer.commit();
+			
+			Table table = reader.getTable(name);
+			assertNotNull("Should see committed table", table);
+			List<Map<String, String>> rows = table.select(scope, emptyMap, new String[] { column });
+			assertEquals("Should see committed row", 1, rows.size());
+			assertEquals(value, rows.get(0).get(column));
+		} finally {
+			reader.close();
+			writer.close();
+		}
+	}
 
 }
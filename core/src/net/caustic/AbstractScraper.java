@@ -31,8 +31,26 @@ public abstract class AbstractScraper implements Loggable {
 	
 	private final MultiLog log = new MultiLog();
 
-	private volatile int scrapesStarted = 0;
-	private volatile int scrapesFinished = 0;
+	/**
+	 * The number of scrapes started but not finished.  Threads waiting for it to
+	 * fall wait on {@link #running}.
+	 */
+	private final Object running = new Object();
+	private int scrapesRunning = 0;
+	
+	/**
+	 * How many scrapes can run at once before {@link #scrape(String, Hashtable, ScraperListener, boolean)}
+	 * blocks.  <code>0</code> means there is no limit.
+	 */
+	private int maxScrapes = 0;
+	
+	/**
+	 * Whether {@link #interrupt()} has been called, after which scrapes are no longer
+	 * waited for or started.  Guarded by {@link #running}.
+	 */
+	private boolean interrupted = false;
+	
+	private Priority priority = Priority.FIFO;
 
 	public AbstractScraper(Database db, HttpBrowser browser,
 			Deserializer deserializer) {
@@ -47,6 +65,29 @@ public abstract class AbstractScraper implements Loggable {
 		log.register(logger);
 	}
 
+	/**
+	 * Limit how many scrapes can run at once.  Once the limit is reached, calls to
+	 * {@link #scrape(String, Hashtable, ScraperListener, boolean)} block until
+	 * another scrape finishes, which slows down whatever is feeding input.
+	 * @param maxScrapes The maximum number of simultaneous scrapes, or <code>0</code>
+	 * for no limit.
+	 */
+	public final void setMaxScrapes(int maxScrapes) {
+		synchronized(running) {
+			this.maxScrapes = maxScrapes;
+			running.notifyAll();
+		}
+	}
+	
+	/**
+	 * Change the order in which waiting {@link Instruction}s are run.  Defaults
+	 * to {@link Priority#FIFO}.
+	 * @param priority The {@link Priority} to use.
+	 */
+	public final void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+	
 	/**
 	 * Scrape <code>instruction</code> with <code>input</code>, triggering events on
 	 * <code>listener</code>.  Child {@link Instruction}s must be listened for on
@@ -58,8 +99,9 @@ public abstract class AbstractScraper implements Loggable {
 	 * @param input A {@link Hashtable} of {@link String} to {@link String} key-values,
 	 * which will be used as defaults for substitutions during the scrape.
 	 * @param listener A {@link ScraperListener} to receive callbacks.
+	 * @return A {@link ScrapeFuture} that is done when the scrape finishes.
 	 */
-	public Scope scrape(String uriOrJSON, Hashtable input, ScraperListener listener) {
+	public ScrapeFuture scrape(String uriOrJSON, Hashtable input, ScraperListener listener) {
 		return scrape(uriOrJSON, input, listener, false);
 	}
 
@@ -72,8 +114,9 @@ public abstract class AbstractScraper implements Loggable {
 	 * @param input A {@link Hashtable} of {@link String} to {@link String} key-values,
 	 * which will be used as defaults for substitutions during the scrape.
 	 * @param listener A {@link ScraperListener} to receive callbacks.
+	 * @return A {@link ScrapeFuture} that is done when the scrape finishes.
 	 */
-	public Scope scrapeAll(String uriOrJSON, Hashtable input, ScraperListener listener) {
+	public ScrapeFuture scrapeAll(String uriOrJSON, Hashtable input, ScraperListener listener) {
 		return scrape(uriOrJSON, input, listener, true);
 	}
 	
@@ -87,8 +130,10 @@ public abstract class AbstractScraper implements Loggable {
 	 * which will be used as defaults for substitutions during the scrape.
 	 * @param listener A {@link ScraperListener} to receive callbacks.
 	 * @param autoRun Whether {@link Instruction} children should be scraped automatically.
+	 * @return A {@link ScrapeFuture} that is done when the scrape finishes.
+	 * @see #setMaxScrapes(int)
 	 */
-	public Scope scrape(String uriOrJSON, Hashtable input, ScraperListener listener, boolean autoRun) {
+	public ScrapeFuture scrape(String uriOrJSON, Hashtable input, ScraperListener listener, boolean autoRun) {
 		
 		// Quote string it if it's not quoted, and isn't JSON.
 		// This is OK because the process hits {@link #submit}, not {@link #scrape}.
@@ -101,11 +146,37 @@ public abstract class AbstractScraper implements Loggable {
 		}
 		
 		// The process calls back to {@link #submit}.
-		ScraperProcess process = new ScraperProcess(listener, this, autoRun);
+		final ScrapeFuture future = new ScrapeFuture();
+		ScraperProcess process = new ScraperProcess(listener, this, future, autoRun);
 		
 		// obtain an instruction from the supplied URI or JSON relative to the root URI.
 		final Instruction instruction = new SerializedInstruction(quoted, deserializer, rootURI);
 		
+		// wait for room to run another scrape.
+		final boolean wasInterrupted;
+		synchronized(running) {
+			try {
+				while(!interrupted && maxScrapes > 0 && scrapesRunning >= maxScrapes) {
+					running.wait();
+				}
+			} catch(InterruptedException e) {
+				// start the scrape anyway, leaving the interrupt for the caller to notice.
+				Thread.currentThread().interrupt();
+			}
+			wasInterrupted = interrupted;
+			if(!wasInterrupted) {
+				scrapesRunning++;
+			}
+		}
+		
+		// the scrapes that would have made room may never finish, so don't start this one.
+		if(wasInterrupted) {
+			InterruptedException e = new InterruptedException("Scraper was interrupted.");
+			listener.onCrashed(instruction, null, null, null, e);
+			future.crash(e);
+			return future;
+		}
+		
 		// creation of a new scope could be stopped by database crash.
 		try {
 			final Scope scope = db.newDefaultScope();
@@ -114,16 +185,14 @@ public abstract class AbstractScraper implements Loggable {
 				String key = (String) e.nextElement();
 				db.put(scope, key, (String) input.get(key));
 			}
-			scrapesStarted++;
+			future.setScope(scope);
 			
 			// initial call doesn't filter through .onReady
-			process.triggerScrape(instruction, db, scope, null, null, browser.copy());
-			
-			return scope;
+			process.triggerScrape(instruction, db, new ScopeChain(scope, null), null, null, browser.copy());
 		} catch(DatabaseException e) {
-			process.triggerCrashed(instruction, null, null, null, e); // TODO
-			return null;
+			process.triggerCrashed(instruction, null, null, null, e);
 		}
+		return future;
 	}
 	
 	/**
@@ -132,11 +201,61 @@ public abstract class AbstractScraper implements Loggable {
 	 * anything, <code>false</code> otherwise.
 	 */
 	public final boolean isDormant() {
-		return scrapesStarted == scrapesFinished;
+		synchronized(running) {
+			return scrapesRunning == 0;
+		}
+	}
+	
+	/**
+	 * Block the calling thread until this {@link AbstractScraper} {@link #isDormant()},
+	 * or until <code>timeoutMilliseconds</code> have passed.  The thread is woken as soon
+	 * as the last scrape finishes.
+	 * @param timeoutMilliseconds How long to wait, in milliseconds.
+	 * @return <code>true</code> if this {@link AbstractScraper} is dormant, <code>false</code>
+	 * if the wait timed out first.
+	 * @throws InterruptedException if the calling thread was interrupted while waiting.
+	 */
+	protected final boolean waitUntilDormant(long timeoutMilliseconds) throws InterruptedException {
+		final long until = System.currentTimeMillis() + timeoutMilliseconds;
+		synchronized(running) {
+			long remaining = timeoutMilliseconds;
+			while(scrapesRunning > 0 && remaining > 0) {
+				running.wait(remaining);
+				remaining = until - System.currentTimeMillis();
+			}
+			return scrapesRunning == 0;
+		}
 	}
 	
 	protected final void finishedScrape(int successful, int stuck, int failed) {
-		scrapesFinished++;
+		synchronized(running) {
+			scrapesRunning--;
+			running.notifyAll();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param executable An {@link Executable} that has been submitted.
+	 * @return Its priority according to the {@link Priority} of this {@link AbstractScraper}.
+	 * Implementations of {@link #submit(Executable)} that queue work should run higher
+	 * priorities first.
+	 */
+	protected final int getPriority(Executable executable) {
+		return priority.get(executable.getInstruction(), executable.getDepth());
+	}
+	
+	/**
+	 * Wake every thread waiting in {@link #scrape(String, Hashtable, ScraperListener, boolean)}
+	 * for room, and stop any more scrapes from starting.  Implementations of
+	 * {@link #interrupt()} must call this, since the scrapes that would make room
+	 * may never finish.
+	 */
+	protected final void markInterrupted() {
+		synchronized(running) {
+			interrupted = true;
+			running.notifyAll();
+		}
 	}
 	
 	/**
@@ -145,5 +264,9 @@ public abstract class AbstractScraper implements Loggable {
 	 */
 	protected abstract void submit(Executable executable);
 	
+	/**
+	 * Override this method to stop running {@link Executable}s.  Must call
+	 * {@link #markInterrupted()}.
+	 */
 	protected abstract void interrupt();
 }
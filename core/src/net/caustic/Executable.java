@@ -19,21 +19,40 @@ final class Executable implements Runnable {
 	private final Database db;
 	private final Scope parent;
 	private final Scope scope;
+	private final ScopeChain chain;
 	private final HttpBrowser browser;
 	private final String source;
 	private final ScraperProcess process;
 	
-	public Executable(Instruction instruction, Database db, Scope scope, Scope parent,
+	public Executable(Instruction instruction, Database db, ScopeChain chain, Scope parent,
 			String source, HttpBrowser browser, ScraperProcess process) {
 		this.instruction = instruction;
 		this.source = source;
 		this.db = db;
 		this.parent = parent;
-		this.scope = scope;
+		this.chain = chain;
+		this.scope = chain.getScope();
 		this.browser = browser;
 		this.process = process;
 	}
 	
+	/**
+	 * 
+	 * @return The {@link Instruction} this {@link Executable} will execute.
+	 */
+	Instruction getInstruction() {
+		return instruction;
+	}
+	
+	/**
+	 * 
+	 * @return The depth of the {@link Scope} this {@link Executable} will execute in.
+	 * @see ScopeChain#getDepth()
+	 */
+	int getDepth() {
+		return chain.getDepth();
+	}
+	
 	/**
 	 * When {@link #run()}, an {@link Executable} will execute its {@link #instruction}. 
 	 * After execution, {@link #process} will be notified of the results.
@@ -59,6 +78,7 @@ final class Executable implements Runnable {
 						childScope = scope;
 						if(shouldStoreValues) {
 							db.put(childScope, name, resultValue);
+							process.triggerPut(childScope, name);
 						}
 					} else {
 						if(shouldStoreValues) {
@@ -67,6 +87,8 @@ final class Executable implements Runnable {
 							childScope = db.newScope(scope, name);							
 						}
 					}
+					final ScopeChain childChain = chain.extend(childScope);
+					
 					// create & scrape children.
 					for(int j = 0 ; j < children.length ; j ++) {
 						
@@ -75,7 +97,7 @@ final class Executable implements Runnable {
 						final Instruction child = children[j];
 						final HttpBrowser browserCopy = browser.copy();
 						
-						process.triggerReady(child, db, childScope, scope, results[i], browserCopy);
+						process.triggerReady(child, db, childChain, scope, results[i], browserCopy);
 					}
 				}
 				// Tell listener this instruction was successful, if it is visible.
@@ -83,7 +105,7 @@ final class Executable implements Runnable {
 			} else if(result.isMissingTags()) {
 				
 				// Tell listener this instruction could not be completed due to missing tags.
-				process.triggerMissingTags(instruction, db, scope, parent, source, browser, result.getMissingTags());
+				process.triggerMissingTags(instruction, db, chain, parent, source, browser, result.getMissingTags());
 			} else {
 				
 				// Tell listener this instruction failed.
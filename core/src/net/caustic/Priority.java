@@ -0,0 +1,56 @@
+package net.caustic;
+
+import net.caustic.instruction.Instruction;
+import net.caustic.instruction.Load;
+import net.caustic.scope.Scope;
+
+/**
+ * A {@link Priority} orders the {@link Instruction}s an {@link AbstractScraper} has
+ * waiting to be executed.  Implementations of {@link AbstractScraper} that queue
+ * work should run those with higher priorities first, and those with equal priorities
+ * in the order they were submitted.
+ * @see AbstractScraper#setPriority(Priority)
+ * @author talos
+ *
+ */
+public abstract class Priority {
+	
+	/**
+	 * Every {@link Instruction} has the same priority, so they are run in the order
+	 * they were submitted.  This expands a recursive template breadth-first.
+	 */
+	public static final Priority FIFO = new Priority() {
+		public int get(Instruction instruction, int depth) {
+			return 0;
+		}
+	};
+	
+	/**
+	 * {@link Instruction}s in deeper {@link Scope}s run first, so a recursive template
+	 * reaches its leaves before widening its frontier.  At equal depths, {@link Instruction}s
+	 * other than {@link Load}s run first.
+	 */
+	public static final Priority DEPTH_FIRST = new Priority() {
+		public int get(Instruction instruction, int depth) {
+			return depth * 2 + (instruction instanceof Load ? 0 : 1);
+		}
+	};
+	
+	/**
+	 * {@link Instruction}s other than {@link Load}s run first, so results already
+	 * loaded are found and stored before more pages are requested.  Within each group,
+	 * {@link Instruction}s in deeper {@link Scope}s run first.
+	 */
+	public static final Priority FIND_FIRST = new Priority() {
+		public int get(Instruction instruction, int depth) {
+			return instruction instanceof Load ? depth : Integer.MAX_VALUE / 2 + depth;
+		}
+	};
+	
+	/**
+	 * @param instruction The {@link Instruction} waiting to be executed.
+	 * @param depth The number of ancestors of the {@link Scope} it will be executed in.
+	 * @return The priority of <code>instruction</code>.  Higher priorities run first.
+	 */
+	public abstract int get(Instruction instruction, int depth);
+}
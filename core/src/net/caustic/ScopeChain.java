@@ -0,0 +1,57 @@
+package net.caustic;
+
+import net.caustic.scope.Scope;
+
+/**
+ * An immutable, linked list of a {@link Scope} and its ancestors, as created by the
+ * {@link Executable}s of one {@link ScraperProcess}.  Children that share their
+ * parent's {@link Scope} share its {@link ScopeChain} as well.
+ * @author talos
+ *
+ */
+final class ScopeChain {
+	private final Scope scope;
+	private final ScopeChain parent;
+	private final int depth;
+	
+	public ScopeChain(Scope scope, ScopeChain parent) {
+		this.scope = scope;
+		this.parent = parent;
+		this.depth = parent == null ? 0 : parent.depth + 1;
+	}
+	
+	/**
+	 * 
+	 * @return The {@link Scope} at the head of this {@link ScopeChain}.
+	 */
+	public Scope getScope() {
+		return scope;
+	}
+	
+	/**
+	 * 
+	 * @return The {@link ScopeChain} of the parent of {@link #getScope()}, or
+	 * <code>null</code> if it is a default scope.
+	 */
+	public ScopeChain getParent() {
+		return parent;
+	}
+	
+	/**
+	 * 
+	 * @return The number of ancestors of {@link #getScope()}.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @param scope A {@link Scope} that is either {@link #getScope()} or one of
+	 * its children.
+	 * @return This {@link ScopeChain} if <code>scope</code> is {@link #getScope()},
+	 * otherwise a new {@link ScopeChain} with <code>scope</code> at its head.
+	 */
+	public ScopeChain extend(Scope scope) {
+		return scope == this.scope ? this : new ScopeChain(scope, this);
+	}
+}
@@ -0,0 +1,134 @@
+package net.caustic;
+
+import java.util.Hashtable;
+
+import net.caustic.instruction.Instruction;
+import net.caustic.scope.Scope;
+
+/**
+ * A handle on a single call to
+ * {@link AbstractScraper#scrape(String, Hashtable, ScraperListener, boolean)}.
+ * It is done once none of the scrape's {@link Instruction}s is running or
+ * waiting to run, or once the scrape crashed.  Threads can {@link #join()} it
+ * to be woken as soon as that happens.
+ * @author talos
+ *
+ */
+public final class ScrapeFuture {
+	
+	private Scope scope;
+	private boolean isDone = false;
+	private int successful = 0;
+	private int stuck = 0;
+	private int failed = 0;
+	private Throwable crash;
+	
+	ScrapeFuture() { }
+	
+	synchronized void setScope(Scope scope) {
+		this.scope = scope;
+	}
+	
+	/**
+	 * Complete this {@link ScrapeFuture} with the counts passed to
+	 * {@link ScraperListener#onFinish(int, int, int)}.
+	 */
+	synchronized void finish(int successful, int stuck, int failed) {
+		this.successful = successful;
+		this.stuck = stuck;
+		this.failed = failed;
+		isDone = true;
+		notifyAll();
+	}
+	
+	/**
+	 * Complete this {@link ScrapeFuture} because <code>e</code> was thrown during
+	 * the scrape.  Has no effect if it is already done.
+	 */
+	synchronized void crash(Throwable e) {
+		if(isDone == false) {
+			crash = e;
+			isDone = true;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return <code>true</code> if the scrape has finished or crashed, <code>false</code>
+	 * otherwise.
+	 */
+	public synchronized boolean isDone() {
+		return isDone;
+	}
+	
+	/**
+	 * Block the calling thread until the scrape has finished or crashed.
+	 * @throws InterruptedException if the calling thread was interrupted while waiting.
+	 */
+	public synchronized void join() throws InterruptedException {
+		while(isDone == false) {
+			wait();
+		}
+	}
+	
+	/**
+	 * Block the calling thread until the scrape has finished or crashed, or until
+	 * <code>timeoutMilliseconds</code> have passed.
+	 * @param timeoutMilliseconds How long to wait, in milliseconds.
+	 * @return <code>true</code> if the scrape is done, <code>false</code> if the wait
+	 * timed out first.
+	 * @throws InterruptedException if the calling thread was interrupted while waiting.
+	 */
+	public synchronized boolean join(long timeoutMilliseconds) throws InterruptedException {
+		final long until = System.currentTimeMillis() + timeoutMilliseconds;
+		long remaining = timeoutMilliseconds;
+		while(isDone == false && remaining > 0) {
+			wait(remaining);
+			remaining = until - System.currentTimeMillis();
+		}
+		return isDone;
+	}
+	
+	/**
+	 * 
+	 * @return The default {@link Scope} the scrape's input was put in, or <code>null</code>
+	 * if it could not be created.
+	 */
+	public synchronized Scope getScope() {
+		return scope;
+	}
+	
+	/**
+	 * 
+	 * @return The number of successful {@link Instruction}s once the scrape is done.
+	 */
+	public synchronized int getSuccessful() {
+		return successful;
+	}
+	
+	/**
+	 * 
+	 * @return The number of stuck {@link Instruction}s once the scrape is done.
+	 */
+	public synchronized int getStuck() {
+		return stuck;
+	}
+	
+	/**
+	 * 
+	 * @return The number of failed {@link Instruction}s once the scrape is done.
+	 */
+	public synchronized int getFailed() {
+		return failed;
+	}
+	
+	/**
+	 * 
+	 * @return The {@link Throwable} that crashed the scrape, or <code>null</code> if it
+	 * did not crash.
+	 */
+	public synchronized Throwable getCrash() {
+		return crash;
+	}
+}
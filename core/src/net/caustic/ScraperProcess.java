@@ -1,13 +1,15 @@
 package net.caustic;
 
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
 import net.caustic.database.Database;
 import net.caustic.database.DatabaseException;
+import net.caustic.deserializer.DeserializerResult;
 import net.caustic.http.HttpBrowser;
 import net.caustic.instruction.Instruction;
+import net.caustic.instruction.InstructionArray;
+import net.caustic.instruction.SerializedInstruction;
 import net.caustic.regexp.StringTemplate;
 import net.caustic.scope.Scope;
 import net.caustic.template.StringSubstitution;
@@ -17,20 +19,38 @@ import net.caustic.template.StringSubstitution;
  * {@link AbstractScraper#scrape(String, Hashtable, ScraperListener)}
  * by enclosing the provided {@link ScraperListener} and determining
  * whether and when {@link Instruction}s should be retried.
+ * <p>
+ * The process is called concurrently by every worker running one of its
+ * {@link Executable}s, so it holds no lock while calling its {@link ScraperListener},
+ * the {@link Database}, or its {@link AbstractScraper}.  The counters are guarded by
+ * {@link #counts}, and stuck {@link Executable}s are kept in a {@link StuckIndex}.
  * @author talos
  *
  */
 final class ScraperProcess {
+	private static final int SUCCESSFUL = 0;
+	private static final int STUCK = 1;
+	private static final int FAILED = 2;
+	
 	private final ScraperListener listener;
 	private final AbstractScraper scraper;
+	private final ScrapeFuture future;
+	
+	/**
+	 * Lock for {@link #submitted}, {@link #stuckCnt}, {@link #successful}, and {@link #failed}.
+	 * It is only ever held to modify or read those counters.
+	 */
+	private final Object counts = new Object();
+	
+	private int submitted = 0;
 	
-	private volatile int submitted = 0;
+	// a count of the number of executables in {@link #stuck}.
+	private int stuckCnt = 0;
+	private int successful = 0;
+	private int failed = 0;
 	
-	// a count of the number of elements internal to {@link #stuck}, which is multidimensional
-	// and thus hard to count.
-	private volatile int stuckCnt = 0;
-	private volatile int successful = 0;
-	private volatile int failed = 0;
+	// whether {@link AbstractScraper#finishedScrape} has been called.
+	private boolean finished = false;
 	
 	/**
 	 * If {@link #autoRun} is <code>true</code>, instructions are automatically fired from 
@@ -39,29 +59,32 @@ final class ScraperProcess {
 	private final boolean autoRun;
 	
 	/**
-	 * A {@link Hashtable} of stuck {@link Executable}s.  The first dimension of
-	 * keys are {@link Scope}s, and the second dimension is an array of Strings
-	 * of missing tags.  The final values are the {@link Executable}s.
+	 * The stuck {@link Executable}s, indexed by the {@link Scope}s and tags that will
+	 * free them.
 	 */
-	private final Hashtable stuck = new Hashtable();
+	private final StuckIndex stuck = new StuckIndex();
 	
-	public ScraperProcess(ScraperListener listener, AbstractScraper scraper, boolean autoRun) {
+	public ScraperProcess(ScraperListener listener, AbstractScraper scraper, ScrapeFuture future, boolean autoRun) {
 		this.listener = listener;
 		this.scraper = scraper;
+		this.future = future;
 		this.autoRun = autoRun;
 	}
 	
-	public synchronized final void triggerReady(
+	public final void triggerReady(
 			final Instruction instruction, final Database db,
-			final Scope scope, final Scope parent, 
+			final ScopeChain chain, final Scope parent, 
 			final String source, final HttpBrowser browser) {
 		
+		// serialized instructions and arrays only produce children, so resolve them here.
+		if(instruction instanceof SerializedInstruction || instruction instanceof InstructionArray) {
+			triggerInline(instruction, db, chain, parent, source, browser);
 		// automatically launch children and instructions that don't need confirmation,
 		// skipping the onReady.
-		if(autoRun == true || instruction.shouldConfirm() == false) {
-			triggerScrape(instruction, db, scope, parent, source, browser);
+		} else if(autoRun == true || instruction.shouldConfirm() == false) {
+			triggerScrape(instruction, db, chain, parent, source, browser);
 		} else {
-			
+			final Scope scope = chain.getScope();
 			try {
 				// This is a bit of a hack, but allows the onReady listener method to be
 				// called with an actual name.
@@ -69,7 +92,10 @@ final class ScraperProcess {
 				
 				// if we can't work out the name, trigger missing tags right now.
 				if(ss.isMissingTags()) {
-					triggerMissingTags(instruction, db, scope, parent, source, browser, ss.getMissingTags());
+					synchronized(counts) {
+						submitted++;
+					}
+					triggerMissingTags(instruction, db, chain, parent, source, browser, ss.getMissingTags());
 				} else {
 					
 					// otherwise, we can trigger the onReady with a real name.
@@ -77,7 +103,7 @@ final class ScraperProcess {
 					Runnable start = new Runnable() {
 						// This run method is called from the listener that is passed onReady
 						public void run() {
-							triggerScrape(instruction, db, scope, parent, source, browser);
+							triggerScrape(instruction, db, chain, parent, source, browser);
 						}
 					};
 					listener.onReady(instruction, name, db, scope, parent, source, start);
@@ -88,123 +114,196 @@ final class ScraperProcess {
 		}
 	}
 	
-	public synchronized final void triggerScrape(
-			final Instruction instruction, final Database db, final Scope scope, final Scope parent,
+	public final void triggerScrape(
+			final Instruction instruction, final Database db, final ScopeChain chain, final Scope parent,
 			final String source, final HttpBrowser browser) {
-		submitted++;
+		// count the executable before it can possibly finish.
+		synchronized(counts) {
+			submitted++;
+		}
 		
-		scraper.submit(new Executable(instruction, db, scope, parent, source, browser, this));
+		listener.onScrape(instruction, db, chain.getScope(), parent, source);
 		
-		listener.onScrape(instruction, db, scope, parent, source);
+		scraper.submit(new Executable(instruction, db, chain, parent, source, browser, this));
 	}
 	
-	public synchronized final void triggerSuccess(Instruction instruction, Database db, Scope scope, Scope parent,
-			String source, String key, String[] results) {
+	/**
+	 * Run a {@link SerializedInstruction} or {@link InstructionArray} in the calling
+	 * thread instead of submitting an {@link Executable} for it, and trigger its children
+	 * as {@link Executable#run()} would.  <code>browser</code> goes to the last child
+	 * rather than being copied again.  The listener is called and the instruction
+	 * counted just as if it had been submitted.
+	 */
+	private void triggerInline(Instruction instruction, Database db, ScopeChain chain, Scope parent,
+			String source, HttpBrowser browser) {
+		synchronized(counts) {
+			submitted++;
+		}
+		final Scope scope = chain.getScope();
+		listener.onScrape(instruction, db, scope, parent, source);
+		
 		try {
-			successful++;
-			
-			// Retry stuck scrapers based off of new data.
-			if(stuck.containsKey(scope)) {
-				
-				// stuckInScope is a table of Executables by String arrays of missing strings.
-				Hashtable stuckInScope = (Hashtable) stuck.get(scope);
-				Enumeration e = stuckInScope.keys();
-				
-				// Vector of missing tag string array references.  This will be used to prune
-				// stuckInScope after enumeration is complete.
-				Vector removeFromStuckInScope = new Vector(); 
-				while(e.hasMoreElements()) {
-					String[] missingTags = (String[]) e.nextElement();
-					
-					boolean shouldResubmit = true; // change to false if still missing tags
-					
-					// check the database to see if we're still missing any of these tags.
-					for(int j = 0 ; j < missingTags.length ; j ++) {
-						if(db.get(scope, missingTags[j]) == null) {
-							// we are still missing a tag, break out.
-							shouldResubmit = false;
-							break;
-						}
-					}
-					
-					if(shouldResubmit == true) {
-						//scraper.submit((Executable) stuck.get((Executable) stuck.get(missingTags)));
-						scraper.submit((Executable) stuckInScope.get(missingTags));
-						removeFromStuckInScope.add(missingTags);
-					}
-				}
-				
-				// remove the elements that were resubmitted.
-				// we have to do this here because we have an enumerator, not an iterator. *grumble*
-				e = removeFromStuckInScope.elements();
-				while(e.hasMoreElements()) {
-					stuckInScope.remove(e.nextElement());
-					stuckCnt--;
+			final Instruction[] children;
+			if(instruction instanceof InstructionArray) {
+				children = ((InstructionArray) instruction).getInstructions();
+			} else {
+				DeserializerResult result = ((SerializedInstruction) instruction).deserialize(db, scope);
+				if(result.isMissingTags()) {
+					triggerMissingTags(instruction, db, chain, parent, source, browser, result.getMissingTags());
+					return;
+				} else if(result.getInstruction() == null) {
+					triggerFailed(instruction, db, scope, parent, source, result.getFailedBecause());
+					return;
 				}
-				
-				// if nothing left stuck in scope, remove the scope
-				if(stuckInScope.size() == 0) {
-					stuck.remove(scope);
-				}
-			}
-			
-			// only tell extra listener about successes that actually have keys.
-			if(key != null) {
-				listener.onSuccess(instruction, db, scope, parent, source, key, results);
+				children = new Instruction[] { result.getInstruction() };
 			}
 			
-			if(isDone()) {
-				triggerFinish(successful, stuck.size(), failed);
+			for(int i = 0 ; i < children.length ; i ++) {
+				final HttpBrowser childBrowser = i == children.length - 1 ? browser : browser.copy();
+				triggerReady(children[i], db, chain, scope, source, childBrowser);
 			}
+			triggerSuccess(instruction, db, scope, parent, source, null, new String[] { source });
 		} catch(DatabaseException e) {
-			triggerCrashed(instruction, scope, parent, null, e);
+			triggerCrashed(instruction, scope, parent, source, e);
+		} catch(InterruptedException e) {
+			triggerCrashed(instruction, scope, parent, source, e);
 		}
 	}
 	
-	public synchronized void triggerMissingTags(Instruction instruction,
-			Database db, Scope scope, Scope parent, String source,
-			HttpBrowser browser, String[] missingTags) {
-		
-		// add an executable missing tags to the hash of stuck executables.
-		if(!stuck.containsKey(scope)) {
-			stuck.put(scope, new Hashtable());
+	/**
+	 * Retry stuck {@link Executable}s that were waiting on <code>key</code>.  This must be
+	 * called after the value is in the {@link Database}, and before the {@link Executable}
+	 * that put it triggers its success, so that the process cannot finish in between.
+	 * @param scope The {@link Scope} <code>key</code> was put in.
+	 * @param key The name of the value that was put.
+	 */
+	public void triggerPut(Scope scope, String key) {
+		Vector unstuck = stuck.unpark(scope, key);
+		if(unstuck.size() > 0) {
+			synchronized(counts) {
+				stuckCnt -= unstuck.size();
+			}
+			for(int i = 0 ; i < unstuck.size() ; i ++) {
+				scraper.submit((Executable) unstuck.elementAt(i));
+			}
+		}
+	}
+	
+	public final void triggerSuccess(Instruction instruction, Database db, Scope scope, Scope parent,
+			String source, String key, String[] results) {
+		// only tell extra listener about successes that actually have keys.
+		if(key != null) {
+			listener.onSuccess(instruction, db, scope, parent, source, key, results);
 		}
 		
-		Hashtable stuckInScope = (Hashtable) stuck.get(scope);
-		stuckInScope.put(missingTags, new Executable(instruction, db, scope, parent, source, browser, this));
-		stuckCnt++;
+		complete(SUCCESSFUL);
+	}
+	
+	public void triggerMissingTags(Instruction instruction,
+			Database db, ScopeChain chain, Scope parent, String source,
+			HttpBrowser browser, String[] missingTags) {
+		final Scope scope = chain.getScope();
+		final Executable executable = new Executable(instruction, db, chain, parent, source, browser, this);
 		
 		listener.onMissingTags(instruction, db, scope, parent, source, missingTags);
 		
-		if(isDone()) {
-			triggerFinish(successful, stuck.size(), failed);
+		try {
+			// The tags could have been put by another worker since this executable
+			// looked for them, in which case it is not stuck after all.
+			if(stuck.park(executable, chain, missingTags, db)) {
+				scraper.submit(executable);
+				return;
+			}
+		} catch(DatabaseException e) {
+			triggerCrashed(instruction, scope, parent, source, e);
 		}
+		
+		complete(STUCK);
 	}
 	
-	public synchronized void triggerFailed(Instruction instruction, Database db,
+	public void triggerFailed(Instruction instruction, Database db,
 			Scope scope, Scope parent, String source, String failedBecause) {
-		failed++;
-		
 		listener.onFailed(instruction, db, scope, parent, source, failedBecause);
 		
-		if(isDone()) {
-			triggerFinish(successful, stuck.size(), failed);
-		}
+		complete(FAILED);
 	}
 	
-	public synchronized final void triggerCrashed(Instruction instruction, Scope scope, Scope parent, String source, Throwable e) {
+	public final void triggerCrashed(Instruction instruction, Scope scope, Scope parent, String source, Throwable e) {
 		e.printStackTrace();
 		scraper.interrupt();
 		
 		listener.onCrashed(instruction, scope, parent, source, e);
+		future.crash(e);
+		
+		// the interrupt can drop executables, so the process may never finish on its own.
+		// Count it as finished now, once.
+		final boolean wasFinished;
+		final int successful, stuck, failed;
+		synchronized(counts) {
+			wasFinished = finished;
+			finished = true;
+			successful = this.successful;
+			stuck = this.stuckCnt;
+			failed = this.failed;
+		}
+		if(!wasFinished) {
+			scraper.finishedScrape(successful, stuck, failed);
+		}
 	}
 	
-	private synchronized final void triggerFinish(int successful, int stuck, int failed) {		
-		scraper.finishedScrape(successful, stuck, failed);
+	/**
+	 * Tell the listener, then {@link #future}, then {@link #scraper} that the process is
+	 * finished, so anything woken by the latter two sees the listener's work.
+	 */
+	private final void triggerFinish(int successful, int stuck, int failed) {
 		listener.onFinish(successful, stuck, failed);
+		future.finish(successful, stuck, failed);
+		
+		// A process not run automatically can finish again after a late start,
+		// but the scraper only counted it as started once.
+		final boolean wasFinished;
+		synchronized(counts) {
+			wasFinished = finished;
+			finished = true;
+		}
+		if(!wasFinished) {
+			scraper.finishedScrape(successful, stuck, failed);
+		}
+	}
+	
+	/**
+	 * Count an {@link Executable} as complete, and call {@link #triggerFinish(int, int, int)}
+	 * if it was the last one outstanding.  Only the thread whose count completes the
+	 * process will see {@link #isDone()} become true.
+	 * @param outcome {@link #SUCCESSFUL}, {@link #STUCK}, or {@link #FAILED}.
+	 */
+	private void complete(int outcome) {
+		final boolean isDone;
+		final int successful, stuck, failed;
+		synchronized(counts) {
+			if(outcome == SUCCESSFUL) {
+				this.successful++;
+			} else if(outcome == STUCK) {
+				this.stuckCnt++;
+			} else {
+				this.failed++;
+			}
+			isDone = isDone();
+			successful = this.successful;
+			stuck = this.stuckCnt;
+			failed = this.failed;
+		}
+		
+		if(isDone) {
+			triggerFinish(successful, stuck, failed);
+		}
 	}
 	
-	private synchronized final boolean isDone() {
+	/**
+	 * Must be called while holding {@link #counts}.
+	 * @return <code>true</code> if no {@link Executable} is outstanding.
+	 */
+	private final boolean isDone() {
 		return submitted == failed + stuckCnt + successful;
 	}
 }
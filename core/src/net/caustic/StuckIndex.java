@@ -0,0 +1,202 @@
+package net.caustic;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+import net.caustic.database.Database;
+import net.caustic.database.DatabaseException;
+import net.caustic.scope.Scope;
+
+/**
+ * A reverse index of stuck {@link Executable}s, keyed by the {@link Scope}s and
+ * tag names that would satisfy them.  Each {@link Executable} is filed under every
+ * {@link Scope} in its {@link ScopeChain}, because a value put in any ancestor is
+ * visible to it.  A put therefore finds exactly the {@link Executable}s it unblocks
+ * with two {@link Hashtable} lookups, without reading the {@link Database}.
+ * @author talos
+ *
+ */
+final class StuckIndex {
+	
+	/**
+	 * {@link Scope} to a {@link Hashtable} of tag names to a {@link Vector}
+	 * of {@link Waiting}.  Synchronize on {@link #index} to read or modify.
+	 */
+	private final Hashtable index = new Hashtable();
+	
+	/**
+	 * An {@link Executable} with the number of distinct tags it is still missing.
+	 * Only modified while holding {@link StuckIndex#index}.
+	 */
+	private static final class Waiting {
+		private final Executable executable;
+		private final String[] tags;
+		private final boolean[] found;
+		private int remaining;
+		
+		/**
+		 * The {@link Scope}s this is filed under in {@link StuckIndex#index}, so that it
+		 * can be taken out of all of them once it is no longer stuck.
+		 */
+		private final Vector scopes = new Vector();
+		
+		private Waiting(Executable executable, String[] tags) {
+			this.executable = executable;
+			this.tags = tags;
+			this.found = new boolean[tags.length];
+			this.remaining = tags.length;
+		}
+		
+		/**
+		 * @param tag A tag that is now available.
+		 * @return <code>true</code> if <code>tag</code> was the last one missing.
+		 */
+		private boolean find(String tag) {
+			for(int i = 0 ; i < tags.length ; i ++) {
+				if(found[i] == false && tags[i].equals(tag)) {
+					found[i] = true;
+					remaining--;
+					return remaining == 0;
+				}
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * File <code>executable</code> under every {@link Scope} of <code>chain</code> for
+	 * each of <code>missingTags</code>.
+	 * @param executable The stuck {@link Executable}.
+	 * @param chain The {@link ScopeChain} <code>executable</code> runs in.
+	 * @param missingTags The tags <code>executable</code> is missing.
+	 * @param db The {@link Database} to check once more for <code>missingTags</code>,
+	 * in case they were put after <code>executable</code> looked for them.
+	 * @return <code>true</code> if all of <code>missingTags</code> turned out to be available,
+	 * in which case the caller should run <code>executable</code> again itself.
+	 * @throws DatabaseException if <code>db</code> could not be read.
+	 */
+	public boolean park(Executable executable, ScopeChain chain, String[] missingTags, Database db)
+			throws DatabaseException {
+		final Waiting waiting = new Waiting(executable, distinct(missingTags));
+		
+		synchronized(index) {
+			for(ScopeChain link = chain ; link != null ; link = link.getParent()) {
+				Hashtable byTag = (Hashtable) index.get(link.getScope());
+				if(byTag == null) {
+					byTag = new Hashtable();
+					index.put(link.getScope(), byTag);
+				}
+				waiting.scopes.addElement(link.getScope());
+				for(int i = 0 ; i < waiting.tags.length ; i ++) {
+					Vector waitingForTag = (Vector) byTag.get(waiting.tags[i]);
+					if(waitingForTag == null) {
+						waitingForTag = new Vector();
+						byTag.put(waiting.tags[i], waitingForTag);
+					}
+					waitingForTag.addElement(waiting);
+				}
+			}
+		}
+		
+		for(int i = 0 ; i < waiting.tags.length ; i ++) {
+			if(db.get(chain.getScope(), waiting.tags[i]) != null) {
+				synchronized(index) {
+					if(waiting.find(waiting.tags[i])) {
+						remove(waiting);
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Collect the {@link Executable}s that were waiting only on <code>key</code>
+	 * having a value in <code>scope</code>.
+	 * @param scope The {@link Scope} that a value was put in.
+	 * @param key The name of the value.
+	 * @return A {@link Vector} of {@link Executable}s that are no longer stuck.  Each
+	 * is only ever returned once, either here or from {@link #park(Executable, ScopeChain, String[], Database)}.
+	 */
+	public Vector unpark(Scope scope, String key) {
+		final Vector unparked = new Vector();
+		synchronized(index) {
+			Hashtable byTag = (Hashtable) index.get(scope);
+			if(byTag != null) {
+				Vector waitingForTag = (Vector) byTag.remove(key);
+				if(byTag.size() == 0) {
+					index.remove(scope);
+				}
+				if(waitingForTag != null) {
+					for(int i = 0 ; i < waitingForTag.size() ; i ++) {
+						Waiting waiting = (Waiting) waitingForTag.elementAt(i);
+						if(waiting.find(key)) {
+							remove(waiting);
+							unparked.addElement(waiting.executable);
+						}
+					}
+				}
+			}
+		}
+		return unparked;
+	}
+	
+	/**
+	 * Take <code>waiting</code> out of every {@link Vector} it was filed in, dropping
+	 * any that are left empty.  Must be called while holding {@link #index}.
+	 * @param waiting A {@link Waiting} that is no longer stuck.
+	 */
+	private void remove(Waiting waiting) {
+		for(int i = 0 ; i < waiting.scopes.size() ; i ++) {
+			Object scope = waiting.scopes.elementAt(i);
+			Hashtable byTag = (Hashtable) index.get(scope);
+			if(byTag == null) {
+				continue;
+			}
+			for(int j = 0 ; j < waiting.tags.length ; j ++) {
+				Vector waitingForTag = (Vector) byTag.get(waiting.tags[j]);
+				if(waitingForTag != null) {
+					waitingForTag.removeElement(waiting);
+					if(waitingForTag.size() == 0) {
+						byTag.remove(waiting.tags[j]);
+					}
+				}
+			}
+			if(byTag.size() == 0) {
+				index.remove(scope);
+			}
+		}
+		waiting.scopes.removeAllElements();
+	}
+	
+	/**
+	 * 
+	 * @return <code>true</code> if no {@link Executable} is stuck.
+	 */
+	public boolean isEmpty() {
+		synchronized(index) {
+			return index.size() == 0;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param tags An array of tags, possibly with repeats.
+	 * @return <code>tags</code> without repeats.
+	 */
+	private static String[] distinct(String[] tags) {
+		Vector result = new Vector(tags.length);
+		for(int i = 0 ; i < tags.length ; i ++) {
+			if(!result.contains(tags[i])) {
+				result.addElement(tags[i]);
+			}
+		}
+		if(result.size() == tags.length) {
+			return tags;
+		}
+		String[] distinct = new String[result.size()];
+		result.copyInto(distinct);
+		return distinct;
+	}
+}
@@ -0,0 +1,331 @@
+package net.caustic.database;
+
+import java.util.Vector;
+
+import net.caustic.scope.Scope;
+
+/**
+ * A {@link DatabaseListener} that passes events on to another {@link DatabaseListener}
+ * from its own thread, so that a slow listener does not hold up the thread that
+ * changed the {@link Database}.
+ * <p>
+ * Events wait in a ring buffer, and are delivered in the order they happened.  Runs
+ * of puts are delivered with {@link BatchDatabaseListener#onPutBatch(Scope[], String[], String[])}
+ * if the listener is a {@link BatchDatabaseListener}.  When the ring buffer is full,
+ * events are handled according to the overflow policy: {@link #BLOCK}, {@link #DROP},
+ * or {@link #SPILL}.
+ * <p>
+ * Only listeners that nothing reads back from should be wrapped, since their events
+ * arrive after the {@link Database} method returns.  Call {@link #close()} to wait for
+ * every event to be delivered.
+ * @author realest
+ *
+ */
+public class AsyncDatabaseListener implements DatabaseListener {
+
+	/**
+	 * Overflow policy that waits for room in the ring buffer.
+	 */
+	public static final int BLOCK = 0;
+
+	/**
+	 * Overflow policy that discards events that do not fit in the ring buffer.
+	 * @see #getDropped()
+	 */
+	public static final int DROP = 1;
+
+	/**
+	 * Overflow policy that queues events that do not fit in the ring buffer on the heap
+	 * until there is room.
+	 */
+	public static final int SPILL = 2;
+
+	/**
+	 * Default number of events in the ring buffer.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * How many milliseconds the delivering thread waits for an event before it stops.
+	 * The next event starts a new one.
+	 */
+	public static final int IDLE_MILLISECONDS = 1000;
+
+	private static final int PUT = 0;
+	private static final int NEW_DEFAULT_SCOPE = 1;
+	private static final int NEW_SCOPE = 2;
+	private static final int NEW_SCOPE_WITH_VALUE = 3;
+
+	private final DatabaseListener listener;
+	private final int policy;
+
+	private final Event[] ring;
+	private int head = 0;
+	private int size = 0;
+
+	/**
+	 * {@link Event}s that did not fit in {@link #ring}, when {@link #policy} is
+	 * {@link #SPILL}.  They all happened after those in {@link #ring}.
+	 */
+	private final Vector spill = new Vector();
+
+	/**
+	 * Index of the oldest {@link Event} in {@link #spill} not yet moved to {@link #ring}.
+	 */
+	private int spillHead = 0;
+
+	/**
+	 * Whether there is a thread running {@link #deliver()}.
+	 */
+	private boolean running = false;
+
+	/**
+	 * Whether the thread running {@link #deliver()} is delivering events taken from
+	 * {@link #ring}.
+	 */
+	private boolean delivering = false;
+	private boolean closed = false;
+	private int dropped = 0;
+
+	/**
+	 * The first exception thrown by {@link #listener}, which is thrown on to the next
+	 * caller.
+	 */
+	private DatabaseListenerException failure;
+
+	/**
+	 * Deliver events to <code>listener</code> from a ring buffer of
+	 * {@link #DEFAULT_CAPACITY}, blocking when it is full.
+	 * @param listener The {@link DatabaseListener} to deliver events to.
+	 */
+	public AsyncDatabaseListener(DatabaseListener listener) {
+		this(listener, DEFAULT_CAPACITY, BLOCK);
+	}
+
+	/**
+	 * @param listener The {@link DatabaseListener} to deliver events to.
+	 * @param capacity How many events can wait in the ring buffer.
+	 * @param policy What to do with events when the ring buffer is full: {@link #BLOCK},
+	 * {@link #DROP}, or {@link #SPILL}.
+	 */
+	public AsyncDatabaseListener(DatabaseListener listener, int capacity, int policy) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		} else if(policy != BLOCK && policy != DROP && policy != SPILL) {
+			throw new IllegalArgumentException("Unknown overflow policy " + policy);
+		}
+		this.listener = listener;
+		this.ring = new Event[capacity];
+		this.policy = policy;
+	}
+
+	public void onPut(Scope scope, String key, String value)
+			throws DatabaseListenerException {
+		enqueue(new Event(PUT, null, scope, key, value));
+	}
+
+	public void onNewScope(Scope scope) throws DatabaseListenerException {
+		enqueue(new Event(NEW_DEFAULT_SCOPE, null, scope, null, null));
+	}
+
+	public void onNewScope(Scope parent, String key, Scope child)
+			throws DatabaseListenerException {
+		enqueue(new Event(NEW_SCOPE, parent, child, key, null));
+	}
+
+	public void onNewScope(Scope parent, String key, String value, Scope child)
+			throws DatabaseListenerException {
+		enqueue(new Event(NEW_SCOPE_WITH_VALUE, parent, child, key, value));
+	}
+
+	/**
+	 * @return How many events have been discarded because the ring buffer was full.
+	 */
+	public synchronized int getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Wait until every event so far has been delivered.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws DatabaseListenerException if the listener threw an exception.
+	 */
+	public synchronized void flush() throws InterruptedException, DatabaseListenerException {
+		while(size > 0 || spillHead < spill.size() || delivering) {
+			wait();
+		}
+		throwFailure();
+	}
+
+	/**
+	 * Wait until every event so far has been delivered, then stop delivering.  Events
+	 * after this are rejected.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws DatabaseListenerException if the listener threw an exception.
+	 */
+	public void close() throws InterruptedException, DatabaseListenerException {
+		flush();
+		synchronized(this) {
+			closed = true;
+			notifyAll();
+		}
+	}
+
+	private synchronized void enqueue(Event event) throws DatabaseListenerException {
+		throwFailure();
+		if(closed) {
+			throw new DatabaseListenerException("Listener is closed.", new IllegalStateException());
+		}
+		if(size == ring.length || spillHead < spill.size()) {
+			if(policy == DROP) {
+				dropped++;
+				return;
+			} else if(policy == SPILL) {
+				spill.addElement(event);
+				return;
+			} else {
+				try {
+					while(size == ring.length) {
+						wait();
+					}
+				} catch(InterruptedException e) {
+					throw new DatabaseListenerException("Interrupted waiting to enqueue.", e);
+				}
+			}
+		}
+		ring[(head + size) % ring.length] = event;
+		size++;
+		if(running) {
+			notifyAll();
+		} else {
+			running = true;
+			new Thread(new Runnable() {
+				public void run() {
+					deliver();
+				}
+			}).start();
+		}
+	}
+
+	private void throwFailure() throws DatabaseListenerException {
+		if(failure != null) {
+			DatabaseListenerException e = failure;
+			failure = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Take every waiting event, and deliver them outside the lock.  Returns once no
+	 * event has arrived for {@link #IDLE_MILLISECONDS}.
+	 */
+	private void deliver() {
+		while(true) {
+			Event[] batch;
+			synchronized(this) {
+				delivering = false;
+				notifyAll();
+				try {
+					if(size == 0 && !closed) {
+						wait(IDLE_MILLISECONDS);
+					}
+				} catch(InterruptedException e) {
+					// stop, as if idle.
+				}
+				if(size == 0) { // idle or closed, and nothing left.
+					running = false;
+					return;
+				}
+				batch = new Event[size];
+				for(int i = 0 ; i < batch.length ; i ++) {
+					batch[i] = ring[head];
+					ring[head] = null;
+					head = (head + 1) % ring.length;
+				}
+				size = 0;
+				// refill the ring from the spill, oldest first.
+				while(size < ring.length && spillHead < spill.size()) {
+					ring[(head + size) % ring.length] = (Event) spill.elementAt(spillHead);
+					spill.setElementAt(null, spillHead);
+					spillHead++;
+					size++;
+				}
+				if(spillHead == spill.size()) {
+					spill.removeAllElements();
+					spillHead = 0;
+				}
+				delivering = true;
+				notifyAll();
+			}
+
+			try {
+				deliver(batch);
+			} catch(DatabaseListenerException e) {
+				fail(e);
+			} catch(RuntimeException e) {
+				fail(new DatabaseListenerException("Listener failed.", e));
+			}
+		}
+	}
+
+	private synchronized void fail(DatabaseListenerException e) {
+		if(failure == null) {
+			failure = e;
+		}
+	}
+
+	private void deliver(Event[] batch) throws DatabaseListenerException {
+		int i = 0;
+		while(i < batch.length) {
+			Event event = batch[i];
+			if(event.type == PUT && listener instanceof BatchDatabaseListener) {
+				int end = i + 1;
+				while(end < batch.length && batch[end].type == PUT) {
+					end++;
+				}
+				Scope[] scopes = new Scope[end - i];
+				String[] keys = new String[end - i];
+				String[] values = new String[end - i];
+				for(int j = 0 ; j < scopes.length ; j ++) {
+					scopes[j] = batch[i + j].scope;
+					keys[j] = batch[i + j].key;
+					values[j] = batch[i + j].value;
+				}
+				((BatchDatabaseListener) listener).onPutBatch(scopes, keys, values);
+				i = end;
+			} else {
+				switch(event.type) {
+				case PUT:
+					listener.onPut(event.scope, event.key, event.value);
+					break;
+				case NEW_DEFAULT_SCOPE:
+					listener.onNewScope(event.scope);
+					break;
+				case NEW_SCOPE:
+					listener.onNewScope(event.parent, event.key, event.scope);
+					break;
+				case NEW_SCOPE_WITH_VALUE:
+					listener.onNewScope(event.parent, event.key, event.value, event.scope);
+					break;
+				}
+				i++;
+			}
+		}
+	}
+
+	private static final class Event {
+		private final int type;
+		private final Scope parent;
+		private final Scope scope;
+		private final String key;
+		private final String value;
+
+		Event(int type, Scope parent, Scope scope, String key, String value) {
+			this.type = type;
+			this.parent = parent;
+			this.scope = scope;
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package net.caustic.database;
+
+import net.caustic.scope.Scope;
+
+/**
+ * A {@link DatabaseListener} that can be told about several puts at once.  An
+ * {@link AsyncDatabaseListener} calls {@link #onPutBatch(Scope[], String[], String[])}
+ * instead of {@link #onPut(Scope, String, String)} for puts that were made one after
+ * the other.
+ * @author realest
+ *
+ */
+public interface BatchDatabaseListener extends DatabaseListener {
+
+	/**
+	 * This method is called in place of {@link #onPut(Scope, String, String)} for a
+	 * run of puts.  The arrays are the same length, and ordered as the puts were made.
+	 * @param scopes the {@link Scope} of each put.
+	 * @param keys the {@link String} key of each put.
+	 * @param values the {@link String} value of each put.
+	 * @throws DatabaseListenerException if there was an exception running the hook.
+	 */
+	public void onPutBatch(Scope[] scopes, String[] keys, String[] values) throws DatabaseListenerException;
+}
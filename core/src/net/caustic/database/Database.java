@@ -58,6 +58,24 @@ public abstract class Database {
 	 */
 	public abstract String get(Scope scope, String key) throws DatabaseException;
 	
+	/**
+	 * Return the values for several <code>keys</code> within <code>scope</code> or its
+	 * enclosing scopes, as if by {@link #get(Scope, String)} for each.  Implementations
+	 * should override this to find every key in one walk up the enclosing scopes.
+	 * @param scope The {@link Scope} to look within the database.
+	 * @param keys The {@link String} keys to look for within {@link Scope}.
+	 * @return An array of {@link String} values, one for each of <code>keys</code>.
+	 * An element is <code>null</code> if its key does not exist in <code>scope</code>.
+	 * @throws DatabaseException if there was an reading the {@link Database}.
+	 */
+	public String[] getAll(Scope scope, String[] keys) throws DatabaseException {
+		String[] values = new String[keys.length];
+		for(int i = 0 ; i < keys.length ; i ++) {
+			values[i] = get(scope, keys[i]);
+		}
+		return values;
+	}
+	
 	//public abstract Scope[] getChildren(Scope scope) throws DatabaseException;
 	
 	/**
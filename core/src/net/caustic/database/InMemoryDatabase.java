@@ -1,29 +1,37 @@
 package net.caustic.database;
 
-import java.util.Hashtable;
-
+import net.caustic.scope.IntScope;
 import net.caustic.scope.Scope;
 
 /**
  * A {@link Database} implementation that creates a new {@link InMemoryDatabaseView}
- * for each call of {@link #newDefaultScope()}.
+ * for each call of {@link #newDefaultScope()}.  Scopes are stored by the
+ * <code>int</code> id of their {@link IntScope}.
  * @author talos
  *
  */
 public class InMemoryDatabase extends Database {
 	
 	/**
-	 * Tree of scope parent relationships.  {@link Scope} => {@link Scope}.
+	 * Tree of scope parent relationships and data nodes.
 	 */
-	private final Hashtable tree = new Hashtable();
+	private final InMemoryScopeTree tree = new InMemoryScopeTree();
+	
+	public InMemoryDatabase() {
+		addListener(new InMemoryDatabaseListener(tree));
+	}
 	
 	/**
-	 * Tree of data nodes. {@link Scope} => {@link Hashtable}.
+	 * @param scope A {@link Scope} created by an {@link InMemoryDatabase}, or
+	 * serialized from one.
+	 * @return The <code>int</code> id of <code>scope</code>.
 	 */
-	private final Hashtable nodes = new Hashtable();
-	
-	public InMemoryDatabase() {
-		addListener(new InMemoryDatabaseListener(tree, nodes));
+	static int idOf(Scope scope) {
+		if(scope instanceof IntScope) {
+			return ((IntScope) scope).getId();
+		} else {
+			return Integer.parseInt(scope.asString());
+		}
 	}
 
 	/**
@@ -31,16 +39,15 @@ public class InMemoryDatabase extends Database {
 	 * up the tree.
 	 */
 	public String get(Scope scope, String key) {
-		while(scope != null) {
-			Hashtable dataNode = (Hashtable) nodes.get(scope);
-			String value = (String) dataNode.get(key);
-			if(value != null) {
-				return value;
-			} else {
-				scope = (Scope) tree.get(scope); // could be null, would break loop.
-			}
-		}
-		return null;
+		return tree.get(idOf(scope), key);
+	}
+	
+	/**
+	 * Look in each data node for every key not yet found, traversing up
+	 * the tree once.
+	 */
+	public String[] getAll(Scope scope, String[] keys) {
+		return tree.getAll(idOf(scope), keys);
 	}
 
 }
@@ -1,7 +1,5 @@
 package net.caustic.database;
 
-import java.util.Hashtable;
-
 import net.caustic.scope.Scope;
 
 /**
@@ -11,37 +9,32 @@ import net.caustic.scope.Scope;
  */
 class InMemoryDatabaseListener implements DatabaseListener {
 
-	private final Hashtable tree;
-	private final Hashtable nodes;
+	private final InMemoryScopeTree tree;
 	
-	public InMemoryDatabaseListener(Hashtable tree, Hashtable nodes) {
+	public InMemoryDatabaseListener(InMemoryScopeTree tree) {
 		this.tree = tree;
-		this.nodes = nodes;
 	}
 	
 	public void onPut(Scope scope, String key, String value)
 			throws DatabaseListenerException {
-		Hashtable dataNode = (Hashtable) nodes.get(scope);
-		dataNode.put(key, value);
+		tree.put(InMemoryDatabase.idOf(scope), key, value);
 	}
 	
 	public void onNewScope(Scope scope)
 			throws DatabaseListenerException {
-		nodes.put(scope, new Hashtable());
+		tree.newScope(InMemoryDatabase.idOf(scope));
 	}
 
 	public void onNewScope(Scope parent, String key, Scope child)
 			throws DatabaseListenerException {
-		tree.put(child, parent);
-		nodes.put(child, new Hashtable());
+		tree.newScope(InMemoryDatabase.idOf(parent), InMemoryDatabase.idOf(child));
 	}
 
 	public void onNewScope(Scope parent, String key, String value, Scope child)
 			throws DatabaseListenerException {
-		tree.put(child, parent); // search for parent by child.
-		Hashtable dataNode = new Hashtable();
-		dataNode.put(key, value);
-		nodes.put(child, dataNode);
+		int childId = InMemoryDatabase.idOf(child);
+		tree.newScope(InMemoryDatabase.idOf(parent), childId); // search for parent by child.
+		tree.put(childId, key, value);
 	}
 
 }
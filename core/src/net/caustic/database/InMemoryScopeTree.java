@@ -0,0 +1,269 @@
+package net.caustic.database;
+
+import java.util.Hashtable;
+
+/**
+ * The storage behind {@link InMemoryDatabase}, keyed by the <code>int</code> id of
+ * each scope.
+ * <p>
+ * Scopes are kept in chunks of {@link #CHUNK_SIZE} nodes, indexed by id, so that
+ * adding a scope only locks when a new chunk is needed.  Each node holds the id of
+ * its parent and a small open-addressed map from interned key symbols to values,
+ * and is locked on its own.
+ * @author realest
+ *
+ */
+final class InMemoryScopeTree {
+
+	/**
+	 * How many bits of a scope id select its place within a chunk.
+	 */
+	private static final int CHUNK_BITS = 10;
+
+	/**
+	 * How many scopes are kept in each chunk.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Parent id of a scope without a parent.
+	 */
+	private static final int NO_PARENT = -1;
+
+	/**
+	 * Symbol of a key that has never been stored.
+	 */
+	private static final int NO_SYMBOL = -1;
+
+	/**
+	 * Chunks of {@link Node}s, by <code>id >>> CHUNK_BITS</code>.  Only replaced or
+	 * filled in while synchronized on this {@link InMemoryScopeTree}.
+	 */
+	private Node[][] chunks = new Node[16][];
+
+	/**
+	 * Interned keys.  {@link String} => {@link Integer}.
+	 */
+	private final Hashtable symbols = new Hashtable();
+
+	/**
+	 * Add a scope without a parent.
+	 * @param id The <code>int</code> id of the new scope.
+	 */
+	public void newScope(int id) {
+		setNode(id, new Node(NO_PARENT));
+	}
+
+	/**
+	 * Add a scope beneath <code>parent</code>.
+	 * @param parent The <code>int</code> id of the parent scope.
+	 * @param id The <code>int</code> id of the new scope.
+	 */
+	public void newScope(int parent, int id) {
+		setNode(id, new Node(parent));
+	}
+
+	/**
+	 * Store <code>value</code> under <code>key</code> in a scope.
+	 * @param id The <code>int</code> id of the scope.
+	 * @param key The {@link String} key.
+	 * @param value The {@link String} value.
+	 */
+	public void put(int id, String key, String value) {
+		getNode(id).put(intern(key), value);
+	}
+
+	/**
+	 * Look in a scope for a value.  If it's not there, traverse up the tree.
+	 * @param id The <code>int</code> id of the scope.
+	 * @param key The {@link String} key.
+	 * @return The {@link String} value, or <code>null</code> if neither the scope nor
+	 * any of its ancestors has one.
+	 */
+	public String get(int id, String key) {
+		Integer symbol = (Integer) symbols.get(key);
+		if(symbol == null) {
+			return null;
+		}
+		while(id != NO_PARENT) {
+			Node node = getNode(id);
+			String value = node.get(symbol.intValue());
+			if(value != null) {
+				return value;
+			}
+			id = node.parent;
+		}
+		return null;
+	}
+
+	/**
+	 * Look in each scope for every key not yet found, traversing up the tree once.
+	 * @param id The <code>int</code> id of the scope.
+	 * @param keys The {@link String} keys.
+	 * @return An array of {@link String} values, with <code>null</code> for those
+	 * not found.
+	 */
+	public String[] getAll(int id, String[] keys) {
+		String[] values = new String[keys.length];
+		int[] keySymbols = new int[keys.length];
+		int remaining = 0;
+		for(int i = 0 ; i < keys.length ; i ++) {
+			Integer symbol = (Integer) symbols.get(keys[i]);
+			if(symbol == null) {
+				keySymbols[i] = NO_SYMBOL;
+			} else {
+				keySymbols[i] = symbol.intValue();
+				remaining++;
+			}
+		}
+		while(id != NO_PARENT && remaining > 0) {
+			Node node = getNode(id);
+			for(int i = 0 ; i < keys.length ; i ++) {
+				if(values[i] == null && keySymbols[i] != NO_SYMBOL) {
+					values[i] = node.get(keySymbols[i]);
+					if(values[i] != null) {
+						remaining--;
+					}
+				}
+			}
+			id = node.parent;
+		}
+		return values;
+	}
+
+	/**
+	 * @param key A {@link String} key.
+	 * @return The <code>int</code> symbol for <code>key</code>, assigning it a new one
+	 * if it has none yet.
+	 */
+	private int intern(String key) {
+		Integer symbol = (Integer) symbols.get(key);
+		if(symbol == null) {
+			synchronized(symbols) {
+				symbol = (Integer) symbols.get(key);
+				if(symbol == null) {
+					symbol = new Integer(symbols.size());
+					symbols.put(key, symbol);
+				}
+			}
+		}
+		return symbol.intValue();
+	}
+
+	private Node getNode(int id) {
+		Node[] chunk = getChunk(id >>> CHUNK_BITS);
+		Node node = chunk == null ? null : chunk[id & CHUNK_MASK];
+		if(node == null) {
+			throw new IllegalArgumentException("No scope with id " + id);
+		}
+		return node;
+	}
+
+	private void setNode(int id, Node node) {
+		if(id < 0) {
+			throw new IllegalArgumentException("Scope id " + id + " is negative.");
+		}
+		int index = id >>> CHUNK_BITS;
+		Node[] chunk = getChunk(index);
+		if(chunk == null) {
+			chunk = newChunk(index);
+		}
+		chunk[id & CHUNK_MASK] = node;
+	}
+
+	/**
+	 * @param index The <code>int</code> index of the chunk.
+	 * @return The chunk at <code>index</code>, or <code>null</code> if it may not exist.
+	 */
+	private Node[] getChunk(int index) {
+		Node[][] chunks = this.chunks;
+		if(index < chunks.length && chunks[index] != null) {
+			return chunks[index];
+		}
+		synchronized(this) { // it may have been added by another thread.
+			return index < this.chunks.length ? this.chunks[index] : null;
+		}
+	}
+
+	private synchronized Node[] newChunk(int index) {
+		if(index >= chunks.length) {
+			Node[][] grown = new Node[Math.max(chunks.length * 2, index + 1)][];
+			System.arraycopy(chunks, 0, grown, 0, chunks.length);
+			chunks = grown;
+		}
+		if(chunks[index] == null) {
+			chunks[index] = new Node[CHUNK_SIZE];
+		}
+		return chunks[index];
+	}
+
+	/**
+	 * A scope's parent and values.  Values are kept in an open-addressed table of key
+	 * symbols, which are stored plus one so that <code>0</code> marks an empty slot.
+	 */
+	private static final class Node {
+		private static final int INITIAL_CAPACITY = 4;
+
+		private final int parent;
+		private int[] keys = new int[INITIAL_CAPACITY];
+		private String[] values = new String[INITIAL_CAPACITY];
+		private int size = 0;
+
+		Node(int parent) {
+			this.parent = parent;
+		}
+
+		synchronized String get(int symbol) {
+			int[] keys = this.keys;
+			int mask = keys.length - 1;
+			for(int i = symbol & mask ; keys[i] != 0 ; i = (i + 1) & mask) {
+				if(keys[i] == symbol + 1) {
+					return values[i];
+				}
+			}
+			return null;
+		}
+
+		synchronized void put(int symbol, String value) {
+			int slot = slot(keys, symbol);
+			if(keys[slot] == 0) {
+				if((size + 1) * 4 > keys.length * 3) {
+					grow();
+					slot = slot(keys, symbol);
+				}
+				keys[slot] = symbol + 1;
+				size++;
+			}
+			values[slot] = value;
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			String[] oldValues = values;
+			keys = new int[oldKeys.length * 2];
+			values = new String[oldKeys.length * 2];
+			for(int i = 0 ; i < oldKeys.length ; i ++) {
+				if(oldKeys[i] != 0) {
+					int slot = slot(keys, oldKeys[i] - 1);
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+
+		/**
+		 * @return The slot in <code>keys</code> holding <code>symbol</code>, or the
+		 * empty slot where it would go.
+		 */
+		private static int slot(int[] keys, int symbol) {
+			int mask = keys.length - 1;
+			int i = symbol & mask;
+			while(keys[i] != 0 && keys[i] != symbol + 1) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+	}
+}
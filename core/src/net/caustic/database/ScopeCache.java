@@ -0,0 +1,189 @@
+package net.caustic.database;
+
+import java.util.Hashtable;
+
+import net.caustic.scope.Scope;
+
+/**
+ * A {@link DatabaseListener} that keeps the values and parent of the most recently
+ * used {@link Scope}s in memory, so that a {@link Database} stored elsewhere can answer
+ * {@link Database#get(Scope, String)} without reading its store.  It must be added after
+ * the listener that writes to the store, so it only remembers what was written.
+ * <p>
+ * A {@link Scope} is only remembered if its creation was heard, since only then are all
+ * its values known.  Once {@link #capacity} {@link Scope}s are remembered, the least
+ * recently used is forgotten, and lookups that reach it must go to the store.
+ * @author realest
+ *
+ */
+final class ScopeCache implements DatabaseListener {
+	
+	/**
+	 * The default number of {@link Scope}s a {@link ScopeCache} remembers.
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+	
+	private final int capacity;
+	
+	/**
+	 * {@link Scope}s to {@link Node}s.
+	 */
+	private final Hashtable nodes = new Hashtable();
+	
+	/**
+	 * The head of a circular list of {@link Node}s.  {@link Node#next} of the head
+	 * is the most recently used, {@link Node#prev} the least.
+	 */
+	private final Node head = new Node(null, null);
+	
+	private static final class Node {
+		private final Scope scope;
+		
+		/**
+		 * The enclosing {@link Scope}, or <code>null</code> for a default scope.
+		 */
+		private final Scope parent;
+		
+		/**
+		 * {@link String} keys to {@link String} values.
+		 */
+		private final Hashtable values = new Hashtable();
+		private Node prev = this;
+		private Node next = this;
+		
+		private Node(Scope scope, Scope parent) {
+			this.scope = scope;
+			this.parent = parent;
+		}
+		
+		private void unlink() {
+			prev.next = next;
+			next.prev = prev;
+		}
+		
+		private void linkAfter(Node node) {
+			prev = node;
+			next = node.next;
+			node.next.prev = this;
+			node.next = this;
+		}
+	}
+	
+	ScopeCache() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param capacity How many {@link Scope}s to remember.  Must be positive.
+	 */
+	ScopeCache(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Must be called while synchronized on {@link #nodes}.
+	 */
+	private Node touch(Scope scope) {
+		Node node = (Node) nodes.get(scope);
+		if(node != null) {
+			node.unlink();
+			node.linkAfter(head);
+		}
+		return node;
+	}
+	
+	private void add(Node node) {
+		synchronized(nodes) {
+			Node old = (Node) nodes.remove(node.scope);
+			if(old != null) {
+				old.unlink();
+			}
+			node.linkAfter(head);
+			nodes.put(node.scope, node);
+			if(nodes.size() > capacity) {
+				Node eldest = head.prev;
+				eldest.unlink();
+				nodes.remove(eldest.scope);
+			}
+		}
+	}
+	
+	/**
+	 * Look for <code>key</code> in <code>scope</code> and its enclosing scopes.
+	 * @param scope The {@link Scope} to look within.
+	 * @param key The {@link String} key to look for.
+	 * @param result A one-element array.  Its element is set to the value, or <code>null</code>
+	 * if there is none, when this returns <code>true</code>.
+	 * @return <code>true</code> if the value could be found from memory, <code>false</code>
+	 * if the lookup reached a {@link Scope} that isn't remembered.
+	 */
+	boolean get(Scope scope, String key, String[] result) {
+		return getAll(scope, new String[] { key }, result);
+	}
+	
+	/**
+	 * Look for several <code>keys</code> in <code>scope</code> and its enclosing scopes.
+	 * @param scope The {@link Scope} to look within.
+	 * @param keys The {@link String} keys to look for.
+	 * @param values An array as long as <code>keys</code>.  Its elements are set to the values,
+	 * or <code>null</code> where there are none, when this returns <code>true</code>.
+	 * @return <code>true</code> if every value could be found from memory, <code>false</code>
+	 * if the lookup reached a {@link Scope} that isn't remembered.
+	 */
+	boolean getAll(Scope scope, String[] keys, String[] values) {
+		for(int i = 0 ; i < values.length ; i ++) {
+			values[i] = null;
+		}
+		int remaining = keys.length;
+		synchronized(nodes) {
+			while(scope != null && remaining > 0) {
+				Node node = touch(scope);
+				if(node == null) {
+					return false;
+				}
+				for(int i = 0 ; i < keys.length ; i ++) {
+					if(values[i] == null) {
+						values[i] = (String) node.values.get(keys[i]);
+						if(values[i] != null) {
+							remaining--;
+						}
+					}
+				}
+				scope = node.parent;
+			}
+		}
+		return true;
+	}
+	
+	public void onPut(Scope scope, String key, String value) {
+		synchronized(nodes) {
+			Node node = touch(scope);
+			if(node != null) {
+				if(value != null) {
+					node.values.put(key, value);
+				} else {
+					node.values.remove(key);
+				}
+			}
+		}
+	}
+
+	public void onNewScope(Scope scope) {
+		add(new Node(scope, null));
+	}
+
+	public void onNewScope(Scope parent, String key, Scope child) {
+		add(new Node(child, parent));
+	}
+
+	public void onNewScope(Scope parent, String key, String value, Scope child) {
+		Node node = new Node(child, parent);
+		if(value != null) {
+			node.values.put(key, value);
+		}
+		add(node);
+	}
+}
@@ -1,6 +1,8 @@
 package net.caustic.deserializer;
 
+import net.caustic.database.Database;
 import net.caustic.instruction.Instruction;
+import net.caustic.scope.Scope;
 import net.caustic.util.Result;
 
 /**
@@ -13,9 +15,11 @@ public class DeserializerResult implements Result {
 	private Instruction instruction;
 	private String[] missingTags;
 	private String failedBecause;
+	private boolean dependsOnDatabase;
 	
-	private DeserializerResult(Instruction instruction) {
+	private DeserializerResult(Instruction instruction, boolean dependsOnDatabase) {
 		this.instruction = instruction;
+		this.dependsOnDatabase = dependsOnDatabase;
 	}
 	
 	private DeserializerResult(String[] missingTags) {
@@ -38,7 +42,17 @@ public class DeserializerResult implements Result {
 	 * @return A successful {@link DeserializerResult}.
 	 */
 	public static DeserializerResult success(Instruction instruction) {
-		return new DeserializerResult(instruction);
+		return new DeserializerResult(instruction, false);
+	}
+	
+	/**
+	 * @param instruction The deserialized {@link Instruction}.
+	 * @param dependsOnDatabase Whether the {@link Instruction} came from URIs substituted
+	 * from a {@link Database}, so that it could differ for another {@link Scope}.
+	 * @return A successful {@link DeserializerResult}.
+	 */
+	public static DeserializerResult success(Instruction instruction, boolean dependsOnDatabase) {
+		return new DeserializerResult(instruction, dependsOnDatabase);
 	}
 
 	/**
@@ -72,4 +86,13 @@ public class DeserializerResult implements Result {
 	public String getFailedBecause() {
 		return failedBecause;
 	}
+	
+	/**
+	 * 
+	 * @return <code>true</code> if {@link #getInstruction()} came from URIs substituted from
+	 * a {@link Database}, <code>false</code> otherwise.
+	 */
+	public boolean dependsOnDatabase() {
+		return dependsOnDatabase;
+	}
 }
@@ -1,5 +1,6 @@
 package net.caustic.deserializer;
 
+import java.util.Hashtable;
 import java.util.Vector;
 
 import net.caustic.database.DatabaseException;
@@ -30,6 +31,13 @@ import net.caustic.util.StringUtils;
 /**
  * An implementation of {@link Deserializer} to create {@link Instruction}s
  * from JSON {@link String}s.
+ * <p>
+ * Successful results are remembered by their serialized {@link String} and URI, so
+ * that the same JSON reached from many scopes is only deserialized once.  Results
+ * that depended upon the {@link Database} -- references and {@link #EXTENDS} whose
+ * URIs have tags, and references to JSON that depends upon it in turn -- are not
+ * remembered.  The {@link Instruction}s are shared, and must not be changed once
+ * deserialized.
  * @author realest
  *
  */
@@ -55,10 +63,78 @@ public class JSONDeserializer implements Deserializer {
 	 */
 	private final RegexpCompiler compiler;
 	
+	/**
+	 * The default number of {@link DeserializerResult}s a {@link JSONDeserializer}
+	 * remembers.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * How many {@link DeserializerResult}s to remember before forgetting all of them.
+	 */
+	private final int capacity;
+	
+	/**
+	 * {@link Hashtable} of {@link String} URIs to {@link Hashtable}s of serialized
+	 * {@link String}s to successful {@link DeserializerResult}s.  Serialized
+	 * {@link String}s come from {@link SerializedInstruction}s, so their hashes are
+	 * only computed once.
+	 */
+	private final Hashtable results = new Hashtable();
+	
+	/**
+	 * How many {@link DeserializerResult}s are in {@link #results}.
+	 */
+	private int size = 0;
+	
+	/**
+	 * 
+	 * @param string The serialized {@link String}.
+	 * @param uri The {@link String} URI it was deserialized relative to.
+	 * @return The {@link DeserializerResult} remembered for <code>string</code> at
+	 * <code>uri</code>, or <code>null</code>.
+	 */
+	private DeserializerResult getResult(String string, String uri) {
+		synchronized(results) {
+			Hashtable resultsForUri = (Hashtable) results.get(uri);
+			if(resultsForUri == null) {
+				return null;
+			}
+			return (DeserializerResult) resultsForUri.get(string);
+		}
+	}
+	
+	/**
+	 * Remember <code>result</code> if it was successful and did not
+	 * {@link DeserializerResult#dependsOnDatabase()}.
+	 * @param string The serialized {@link String}.
+	 * @param uri The {@link String} URI it was deserialized relative to.
+	 * @param result The {@link DeserializerResult}.
+	 */
+	private void putResult(String string, String uri, DeserializerResult result) {
+		if(result.getInstruction() == null || result.dependsOnDatabase()) {
+			return;
+		}
+		synchronized(results) {
+			if(size >= capacity) {
+				results.clear();
+				size = 0;
+			}
+			Hashtable resultsForUri = (Hashtable) results.get(uri);
+			if(resultsForUri == null) {
+				resultsForUri = new Hashtable();
+				results.put(uri, resultsForUri);
+			}
+			if(resultsForUri.put(string, result) == null) {
+				size++;
+			}
+		}
+	}
+	
 
 	/**
 	 * Parse strings as URIs.  We also have to deal here with all invalid JSON.
-	 * @param string A {@link String}, with leading and trailing quotes already removed.
+	 * @param string A {@link String}, with leading and trailing quotes.
 	 * @param db
 	 * @param scope
 	 * @param uri
@@ -70,15 +146,22 @@ public class JSONDeserializer implements Deserializer {
 			String encodedPatternString, String notEncodedPatternString)  
 			throws DatabaseException, RemoteToLocalSchemeResolutionException, MalformedUriException,
 			URILoaderException, InterruptedException {
-		StringSubstitution uriSub = compiler.newTemplate(string, encodedPatternString, notEncodedPatternString)
-				.sub(db, scope);
+		StringTemplate uriTemplate = compiler.newTemplate(string.substring(1, string.length() - 1),
+				encodedPatternString, notEncodedPatternString);
+		StringSubstitution uriSub = uriTemplate.sub(db, scope);
 		if(!uriSub.isMissingTags()) {
 			// perform substitutions upon the URI path itself.
 			String uriPath = uriSub.getSubstituted();
 			String uriToLoad = uriResolver.resolve(uri, uriPath);
 			String loadedJSONString = uriLoader.load(uriToLoad);
 			
-			return deserialize(loadedJSONString, db, scope, uriToLoad, encodedPatternString, notEncodedPatternString);
+			DeserializerResult result = deserialize(loadedJSONString, db, scope, uriToLoad, encodedPatternString, notEncodedPatternString);
+			if(uriTemplate.hasTags() && result.getInstruction() != null && !result.dependsOnDatabase()) {
+				// the loaded JSON does not depend upon the database, but which JSON was loaded does.
+				result = DeserializerResult.success(result.getInstruction(), true);
+			}
+			putResult(string, uri, result);
+			return result;
 		} else {
 			return DeserializerResult.missingTags(uriSub.getMissingTags());
 		}
@@ -105,7 +188,9 @@ public class JSONDeserializer implements Deserializer {
 			instructions[i] = new SerializedInstruction(ary.getString(i), this, uri);
 		}
 		
-		return DeserializerResult.success(new InstructionArray(instructions));
+		DeserializerResult result = DeserializerResult.success(new InstructionArray(instructions));
+		putResult(string, uri, result);
+		return result;
 	}
 	
 	private DeserializerResult deserializeObject(String string, Database db, Scope scope, String uri,
@@ -113,6 +198,9 @@ public class JSONDeserializer implements Deserializer {
 			URILoaderException, RemoteToLocalSchemeResolutionException, MalformedUriException, InterruptedException {
 		final DeserializerResult result;
 		
+		// Whether a URI loaded for EXTENDS had tags.
+		boolean dependsOnDatabase = false;
+		
 		JsonObject initialObj = parser.newObject(string);
 		
 		// populated for all instructions
@@ -121,6 +209,7 @@ public class JSONDeserializer implements Deserializer {
 		// populated for Load action
 		StringTemplate url = null;
 		String method = null;
+		Boolean shareResponse = null;
 		StringTemplate postData = null;
 		HashtableTemplate posts = new HashtableTemplate();
 		HashtableTemplate cookies = new HashtableTemplate();
@@ -178,6 +267,7 @@ public class JSONDeserializer implements Deserializer {
 						//String uri = uriResolver.resolve(baseUri, (String) extendsStrings.elementAt(j));
 						//jsonObjects.add(parser.parse(uriLoader.load(uri)));
 						StringTemplate extendsUriTemplate = compiler.newTemplate(obj.getString(key), encodedPatternString, notEncodedPatternString);
+						dependsOnDatabase = dependsOnDatabase || extendsUriTemplate.hasTags();
 						StringSubstitution uriSubstitution = extendsUriTemplate.sub(db, scope);
 						if(!uriSubstitution.isMissingTags()) {
 							String uriPath = uriSubstitution.getSubstituted();
@@ -266,6 +356,8 @@ public class JSONDeserializer implements Deserializer {
 						return DeserializerResult.failure(StringUtils.quote(key) +
 								" must be a String with post data or an object with name-value-pairs.");				
 					}
+				} else if(key.equalsIgnoreCase(SHARE_RESPONSE)) {
+					shareResponse = Boolean.valueOf(obj.getBoolean(key));
 				} else if(key.equalsIgnoreCase(COOKIES)) {
 					cookies.extend(
 							deserializeHashtableTemplate(
@@ -324,6 +416,9 @@ public class JSONDeserializer implements Deserializer {
 			if(method != null) {
 				load.setMethod(method);
 			}
+			if(shareResponse != null) {
+				load.setShareResponse(shareResponse.booleanValue());
+			}
 			if(postData != null) {
 				load.setPostData(postData);
 			} else if (posts.size() > 0) {
@@ -335,7 +430,7 @@ public class JSONDeserializer implements Deserializer {
 			for(int i = 0 ; i < childrenAry.length ; i ++) {
 				load.then(childrenAry[i]);
 			}
-			result = DeserializerResult.success(load);
+			result = DeserializerResult.success(load, dependsOnDatabase);
 		} else if(pattern != null) {
 			// We have a Find
 			final Find find;
@@ -380,11 +475,12 @@ public class JSONDeserializer implements Deserializer {
 			for(int i = 0 ; i < childrenAry.length ; i ++) {
 				find.then(childrenAry[i]);
 			}
-			result = DeserializerResult.success(find);
+			result = DeserializerResult.success(find, dependsOnDatabase);
 		} else {
 			result = DeserializerResult.failure("Must define " + FIND + " or " + LOAD);
 		}
 		
+		putResult(string, uri, result);
 		return result;
 	}
 	
@@ -394,6 +490,13 @@ public class JSONDeserializer implements Deserializer {
 		//	MalformedUriException, InterruptedException, RemoteToLocalSchemeResolutionException,
 		//	DatabaseException, URILoaderException {
 		
+		// Every call from one JSONDeserializer uses the same pattern strings, so they are
+		// left out of the key.
+		final DeserializerResult previous = getResult(string, uri);
+		if(previous != null) {
+			return previous;
+		}
+		
 		// We determine the type of this deserialization from the first character.
 		
 		final char firstChar = string.charAt(0);
@@ -410,9 +513,8 @@ public class JSONDeserializer implements Deserializer {
 				break;
 			case '"':
 				int len = string.length();
-				if(string.charAt(len - 1) == '"') {
-					// clip the quotes before sending to deserializeString
-					result = deserializeString(string.substring(1, len - 1), db, scope, uri, encodedPatternString, notEncodedPatternString);
+				if(len > 1 && string.charAt(len - 1) == '"') {
+					result = deserializeString(string, db, scope, uri, encodedPatternString, notEncodedPatternString);
 				} else {
 					result = DeserializerResult.failure("String is missing quote at end.");
 				}
@@ -504,6 +606,12 @@ public class JSONDeserializer implements Deserializer {
 	 */
 	public static final String COOKIES = "cookies";
 	
+	/**
+	 * Key for {@link Load#shareResponse} when deserializing. Default is {@link #SHARE_RESPONSE_DEFAULT}.
+	 */
+	public static final String SHARE_RESPONSE = "share_response";
+	public static final boolean SHARE_RESPONSE_DEFAULT = true;
+	
 	/**
 	 * Key for {@link Instruction#children} when deserializing from JSON.
 	 */
@@ -553,7 +661,8 @@ public class JSONDeserializer implements Deserializer {
 	public static final boolean DOES_DOT_MATCH_ALL_DEFAULT = true;
 
 	/**
-	 * 
+	 * Construct a {@link JSONDeserializer} remembering up to {@link #DEFAULT_CAPACITY}
+	 * {@link DeserializerResult}s.
 	 * @param parser
 	 * @param compiler
 	 * @param browser
@@ -562,6 +671,23 @@ public class JSONDeserializer implements Deserializer {
 	 */
 	public JSONDeserializer(JsonParser parser, RegexpCompiler compiler,
 			UriResolver uriResolver, URILoader uriLoader) {
+		this(parser, compiler, uriResolver, uriLoader, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * 
+	 * @param parser
+	 * @param compiler
+	 * @param uriResolver
+	 * @param uriLoader
+	 * @param capacity How many {@link DeserializerResult}s to remember.  Must be positive.
+	 */
+	public JSONDeserializer(JsonParser parser, RegexpCompiler compiler,
+			UriResolver uriResolver, URILoader uriLoader, int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.capacity = capacity;
 		this.compiler = compiler;
 		this.parser = parser;
 		this.uriResolver = uriResolver;
@@ -2,6 +2,7 @@ package net.caustic.http;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -25,6 +26,12 @@ public class HttpBrowser implements Loggable {
 	 * request for {@link HttpBrowser} interfaces.
 	 */
 	public static final int DEFAULT_TIMEOUT_MILLISECONDS = 30000;
+	
+	/**
+	 * The default number of milliseconds to wait for a connection to open
+	 * before timing out on a request for {@link HttpBrowser} interfaces.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLISECONDS = 30000;
 
 	/**
 	 * The default rate limit a {@link RateLimitManager} interface imposes upon itself for
@@ -38,6 +45,12 @@ public class HttpBrowser implements Loggable {
 	 */
 	public static final int DEFAULT_REQUEST_WAIT = 1000;
 	
+	/**
+	 * The default number of requests a {@link HttpBrowser} and its copies will have open
+	 * to a single host at once.  <code>0</code> means there is no limit.
+	 */
+	public static final int DEFAULT_MAX_HOST_REQUESTS = 0;
+	
 	/**
 	 * The default number of redirects {@link HttpBrowser} interfaces will follow.
 	 */
@@ -69,13 +82,38 @@ public class HttpBrowser implements Loggable {
 	private final HttpRequester requester;
 	private final CookieManager cookieManager;
 	
+	/**
+	 * The requests this {@link HttpBrowser} and its copies have in flight, so that identical
+	 * requests made at once share one response.
+	 */
+	private final SharedRequests sharedRequests;
+	
 	private int maxResponseSize = HttpBrowser.DEFAULT_MAX_RESPONSE_SIZE;
+	
+	/**
+	 * How many chars {@link #readResponseStream(String, InputStreamReader, Pattern[])}
+	 * asks its stream for at once.
+	 */
+	private static final int READ_SIZE = 4096;
+	
+	/**
+	 * How many chars {@link #readResponseStream(String, InputStreamReader, Pattern[])}
+	 * makes room for before reading anything.  Doubled whenever it runs out.
+	 */
+	private static final int INITIAL_RESPONSE_BUFFER_SIZE = 8192;
+	
+	/**
+	 * Response code for a conditional request whose response has not changed.
+	 */
+	private static final int NOT_MODIFIED = 304;
 	private final MultiLog log;
 
 	/**
 	 * How many milliseconds this {@link HttpBrowser} will sleep before
 	 * considering trying a host again, when its {@link RateLimitManager} tells
 	 * it that a request should be held off.
+	 * @deprecated {@link HttpBrowser} now sleeps exactly as long as its
+	 * {@link RateLimitManager} asks.
 	 */
 	public static final int DEFAULT_SLEEP_TIME = 500;
 
@@ -112,7 +150,7 @@ public class HttpBrowser implements Loggable {
 	 */
 	private InputStreamReader request(String method, String urlStr, Hashtable headers, String encodedPostData)
 			throws InterruptedException, HttpRequestException, CookieStorageException {
-		return request(method, urlStr, headers, encodedPostData, new Vector());
+		return request(method, urlStr, headers, encodedPostData, null, null, new Vector());
 	}
 
 	/**
@@ -123,6 +161,11 @@ public class HttpBrowser implements Loggable {
 	 * {@link String} name-value pairs.
 	 * @param encodedPostData {@link String} of post data, already encoded. <code>Null</code> if
 	 * none.
+	 * @param responseHeaders A {@link Hashtable} to fill with the last response's headers, or
+	 * <code>null</code>.  If not <code>null</code>, a {@link #NOT_MODIFIED} response is
+	 * returned as <code>null</code> rather than thrown.
+	 * @param cookieResponses A {@link Vector} to add each {@link String} URL and the
+	 * {@link ResponseHeaders} cookies were taken from, or <code>null</code>.
 	 * @return A {@link InputStreamReader} to read response content, if it was a request that
 	 * should return content.
 	 * @throws InterruptedException If the user interrupted the request while it was being delayed
@@ -131,11 +174,13 @@ public class HttpBrowser implements Loggable {
 	 * @throws CookieStorageException If a cookie could not be stored from one of the responses.
 	 */
 	private InputStreamReader request(String method, String urlStr, Hashtable headers,
-					String postData, Vector redirectsFollowed)
+					String postData, Hashtable responseHeaders, Vector cookieResponses,
+					Vector redirectsFollowed)
 			throws InterruptedException, HttpRequestException, CookieStorageException {
 				
-		while(rateLimitManager.shouldDelay(urlStr) == true) {
-			Thread.sleep(DEFAULT_SLEEP_TIME);
+		long wait;
+		while((wait = rateLimitManager.acquire(urlStr)) > 0) {
+			Thread.sleep(wait);
 			if(Thread.interrupted()) {
 				throw new InterruptedException("Interrupted while waiting to not exceed rate limit.");
 			}
@@ -171,11 +216,23 @@ public class HttpBrowser implements Loggable {
 		}
 		
 		// Add cookies from the response.
+		ResponseHeaders headersReceived = response.getResponseHeaders();
 		try {
-			cookieManager.addCookiesFromResponseHeaders(urlStr, response.getResponseHeaders());
+			cookieManager.addCookiesFromResponseHeaders(urlStr, headersReceived);
 		} catch(BadURLException e) {
 			log.i("Could not add cookie because of bad URL: " + e.getMessage());
 		}
+		if(cookieResponses != null) {
+			cookieResponses.addElement(urlStr);
+			cookieResponses.addElement(headersReceived);
+		}
+		
+		if(responseHeaders != null) {
+			copyResponseHeaders(headersReceived, responseHeaders);
+			if(response.getResponseCode() == NOT_MODIFIED) {
+				return null;
+			}
+		}
 		
 		if(response.isSuccess()) {
 			// Only return the content stream for non-head requests.
@@ -206,57 +263,89 @@ public class HttpBrowser implements Loggable {
 				log.i("Following redirect #" + Integer.toString(redirectsFollowed.size()) +
 						" from " + StringUtils.quote(urlStr) + " to " + StringUtils.quote(redirectURLStr));
 				
-				return request(GET, redirectURLStr, headers, null, redirectsFollowed);
+				return request(GET, redirectURLStr, headers, null, responseHeaders, cookieResponses,
+						redirectsFollowed);
 			} catch(BadURLException e) {
 				throw HttpRedirectException.fromBadURL(e);
 			}
 		}	
 	}
 	
+	/**
+	 * Replace the contents of <code>copy</code> with <code>responseHeaders</code>.  Names are
+	 * put in lower case, and several values for one name are joined with commas.
+	 * @param responseHeaders The {@link ResponseHeaders} to copy.
+	 * @param copy The {@link Hashtable} to fill with {@link String} names and values.
+	 */
+	private static void copyResponseHeaders(ResponseHeaders responseHeaders, Hashtable copy) {
+		copy.clear();
+		String[] names = responseHeaders.getHeaderNames();
+		for(int i = 0 ; i < names.length ; i ++) {
+			String[] values = responseHeaders.getHeaderValues(names[i]);
+			// HttpURLConnection lists the status line under a null name.
+			if(names[i] != null && values != null) {
+				copy.put(names[i].toLowerCase(), StringUtils.join(values, ", "));
+			}
+		}
+	}
+	
 	/**
 	 * Pull an {@link InputStreamReader} into a {@link String}, allowing for early termination.
+	 * <code>terminates</code> are checked each time the body has grown by half since the last check,
+	 * so that checking stays proportional to the length of the body.
 	 * @param urlStr The {@link String} URL from which the {@link InputStreamReader} is a response.
 	 * @param stream An {@link InputStreamReader} response from <code>url</code>
-	 * @param terminates array of {@link Pattern}s to interrupt the load.
+	 * @param terminates array of {@link Pattern}s to interrupt the load once any has a
+	 * settled first match.
 	 * @return A {@link String}.
 	 * @throws InterruptedException if the user interrupted the load.
 	 * @throws HttpResponseContentException if the response could not be fully read.
+	 * @see Pattern#hasSettledMatch(String, int)
 	 */
 	private String readResponseStream(String urlStr, InputStreamReader stream, Pattern[] terminates)
 			throws InterruptedException, HttpResponseContentException {
 		
-		StringBuffer responseBody = new StringBuffer();
-		
-		char[] buffer = new char[512];
+		// Keep the body in one array, so that it is only copied once more to make a String.
+		char[] responseBody = new char[INITIAL_RESPONSE_BUFFER_SIZE];
+		char[] buffer = new char[READ_SIZE];
 		int totalReadBytes = 0;
 		int lastTotalReadBytes = totalReadBytes;
+		int nextTerminateCheck = buffer.length;
 		int readBytes;
 		boolean terminate = false;
 		
 		try { // try/catch for reading the stream
-			while((readBytes = stream.read(buffer)) != -1 && terminate == false) {
+			while(terminate == false && (readBytes = stream.read(buffer)) != -1) {
 
 				if(Thread.interrupted()) {
 					throw new InterruptedException();
 				}
+				if(totalReadBytes + readBytes > responseBody.length) {
+					char[] grown = new char[Math.max(responseBody.length * 2, totalReadBytes + readBytes)];
+					System.arraycopy(responseBody, 0, grown, 0, totalReadBytes);
+					responseBody = grown;
+				}
+				System.arraycopy(buffer, 0, responseBody, totalReadBytes, readBytes);
 				totalReadBytes += readBytes;
-				// log every 51.2 kB
+				// log every 400 kB
 				if(totalReadBytes - lastTotalReadBytes > buffer.length * 100) { 
 					log.i("Have loaded " + totalReadBytes + " bytes from " + StringUtils.quote(urlStr));
 					lastTotalReadBytes = totalReadBytes;
 				}
 				
-				responseBody.append(buffer, 0, readBytes);
-				
 				if(totalReadBytes > maxResponseSize * 1024) {
 					throw new IOException("Exceeded maximum response size of " + maxResponseSize + "KB.");
 				}
 				
-				for(int i = 0 ; i < terminates.length && terminate == false ; i++) {
-					if(terminates[i].matches(responseBody.toString(), Pattern.FIRST_MATCH)) {
-						log.i("Terminating " + urlStr.toString() + " due to pattern " + terminates[i].toString());
-						terminate = true;
+				if(terminates.length > 0 && totalReadBytes >= nextTerminateCheck) {
+					String bodySoFar = new String(responseBody, 0, totalReadBytes);
+					for(int i = 0 ; i < terminates.length && terminate == false ; i++) {
+						if(terminates[i].hasSettledMatch(bodySoFar, Pattern.FIRST_MATCH)) {
+							log.i("Terminating " + urlStr.toString() + " due to pattern " + terminates[i].toString());
+							terminate = true;
+						}
 					}
+					nextTerminateCheck = totalReadBytes + Math.max(buffer.length, totalReadBytes / 2);
 				}
 			}
 		} catch (IOException e) {
@@ -268,14 +357,20 @@ public class HttpBrowser implements Loggable {
 		} catch (IOException e) {
 			throw HttpResponseContentException.fromIOException(e);
 		}
-		rateLimitManager.rememberResponse(urlStr, responseBody.length());
-		return responseBody.toString();
+		rateLimitManager.rememberResponse(urlStr, totalReadBytes);
+		return new String(responseBody, 0, totalReadBytes);
 	}
 
-	private HttpBrowser(HttpRequester requester, RateLimitManager rateLimitManager, CookieManager cookieManager, MultiLog log) {
+	/**
+	 * @param sharedRequests The {@link SharedRequests} to share responses through, which
+	 * tests can watch.
+	 */
+	HttpBrowser(HttpRequester requester, RateLimitManager rateLimitManager, CookieManager cookieManager,
+			SharedRequests sharedRequests, MultiLog log) {
 		this.requester = requester;
 		this.rateLimitManager = rateLimitManager;
 		this.cookieManager = cookieManager;
+		this.sharedRequests = sharedRequests;
 		this.log = log;
 	}
 	
@@ -283,6 +378,7 @@ public class HttpBrowser implements Loggable {
 		this.requester = requester;
 		this.rateLimitManager = rateLimitManager;
 		this.cookieManager = cookieManager;
+		this.sharedRequests = new SharedRequests();
 		this.log = new MultiLog();
 	}
 	
@@ -290,10 +386,11 @@ public class HttpBrowser implements Loggable {
 	 * 
 	 * @return A copy of this {@link HttpBrowser} with a copied {@link CookieManager}.
 	 * This cookie manager will have a copy of old cookies in it, but new cookies
-	 * will not affect other scrapers.  Has the same loggers.
+	 * will not affect other scrapers.  Has the same loggers, and shares responses
+	 * to identical requests made at once.
 	 */
 	public HttpBrowser copy() {
-		return new HttpBrowser(requester, rateLimitManager, cookieManager.copy(), log);
+		return new HttpBrowser(requester, rateLimitManager, cookieManager.copy(), sharedRequests, log);
 	}
 	
 	/**
@@ -305,11 +402,20 @@ public class HttpBrowser implements Loggable {
 	 * @throws HttpException if there was an exception that prevented the request from being completed.
 	 */
 	public void head(String urlStr, Hashtable headers) throws InterruptedException, HttpException {
-		request(HEAD, urlStr, headers, null);
+		rateLimitManager.startRequest(urlStr);
+		try {
+			request(HEAD, urlStr, headers, null);
+		} finally {
+			rateLimitManager.finishRequest(urlStr);
+		}
 	}
 	
 	/**
 	 * Make an HTTP Get request.  This returns the body of the response, and adds cookies to the cookie jar.
+	 * <p>
+	 * If this {@link HttpBrowser} or one of its copies is already making an identical request,
+	 * with the same headers, cookies, and <code>terminates</code>, this waits for and returns
+	 * its body instead, and adds the cookies it received.
 	 * @param urlStr the URL to HTTP Get.
 	 * @param headers {@link Hashtable} extra headers.
 	 * @param terminates Array of {@link Pattern}s that prematurely terminate the load and return the body.
@@ -317,11 +423,54 @@ public class HttpBrowser implements Loggable {
 	 * @throws InterruptedException If the user interrupted the request.
 	 * @throws HttpException if there was an exception that prevented the request from being completed or
 	 * its response from being read.
+	 * @see #getUnshared(String, Hashtable, Pattern[])
 	 */
 	public String get(String urlStr, Hashtable headers, Pattern[] terminates)
 				throws InterruptedException, HttpException {
-		InputStreamReader stream = request(GET, urlStr, headers, null);
-		return readResponseStream(urlStr, stream, terminates);
+		return share(GET, urlStr, headers, terminates, null);
+	}
+	
+	/**
+	 * Make an HTTP Get request of its own, even if an identical request is being made.
+	 * This returns the body of the response, and adds cookies to the cookie jar.
+	 * @param urlStr the URL to HTTP Get.
+	 * @param headers {@link Hashtable} extra headers.
+	 * @param terminates Array of {@link Pattern}s that prematurely terminate the load and return the body.
+	 * @return The body of the response.
+	 * @throws InterruptedException If the user interrupted the request.
+	 * @throws HttpException if there was an exception that prevented the request from being completed or
+	 * its response from being read.
+	 */
+	public String getUnshared(String urlStr, Hashtable headers, Pattern[] terminates)
+				throws InterruptedException, HttpException {
+		return fetch(GET, urlStr, headers, terminates, null, null);
+	}
+	
+	/**
+	 * Make a conditional HTTP Get request, such as one with an <code>If-None-Match</code>
+	 * header.  This returns the body of the response, and adds cookies to the cookie jar.
+	 * @param urlStr the URL to HTTP Get.
+	 * @param headers {@link Hashtable} extra headers.
+	 * @param terminates Array of {@link Pattern}s that prematurely terminate the load and return the body.
+	 * @param responseHeaders A {@link Hashtable} that is filled with the headers of the response,
+	 * with names in lower case.
+	 * @return The body of the response, or <code>null</code> if the response was 304 Not Modified.
+	 * @throws InterruptedException If the user interrupted the request.
+	 * @throws HttpException if there was an exception that prevented the request from being completed or
+	 * its response from being read.
+	 */
+	public String get(String urlStr, Hashtable headers, Pattern[] terminates, Hashtable responseHeaders)
+				throws InterruptedException, HttpException {
+		rateLimitManager.startRequest(urlStr);
+		try {
+			InputStreamReader stream = request(GET, urlStr, headers, null, responseHeaders, null, new Vector());
+			if(stream == null) {
+				return null;
+			}
+			return readResponseStream(urlStr, stream, terminates);
+		} finally {
+			rateLimitManager.finishRequest(urlStr);
+		}
 	}
 	
 	/**
@@ -338,8 +487,136 @@ public class HttpBrowser implements Loggable {
 	 */
 	public String post(String urlStr, Hashtable headers, Pattern[] terminates, String encodedPostData)
 				throws InterruptedException, HttpException {
-		InputStreamReader stream = request(POST, urlStr, headers, encodedPostData);
-		return readResponseStream(urlStr, stream, terminates);
+		return share(POST, urlStr, headers, terminates, encodedPostData);
+	}
+	
+	/**
+	 * Make an HTTP Post request of its own, even if an identical request is being made.
+	 * This returns the body of the response, and adds cookies to the cookie jar.
+	 * @param urlStr the URL to HTTP Post.
+	 * @param headers {@link Hashtable} extra headers.
+	 * @param terminates Array of {@link Pattern}s that prematurely terminate the load and return the body.
+	 * @param encodedPostData {@link String} of post data.  Should already be encoded.
+	 * @return The body of the response.
+	 * @throws InterruptedException If the user interrupted the request.
+	 * @throws HttpException if there was an exception that prevented the request from being completed or
+	 * its response from being read.
+	 */
+	public String postUnshared(String urlStr, Hashtable headers, Pattern[] terminates, String encodedPostData)
+				throws InterruptedException, HttpException {
+		return fetch(POST, urlStr, headers, terminates, encodedPostData, null);
+	}
+	
+	/**
+	 * Make a request, or wait for and share the response to an identical one already in flight.
+	 * @param method {@link #GET} or {@link #POST}.
+	 * @param urlStr The {@link String} URL to request.
+	 * @param headers {@link Hashtable} extra headers.
+	 * @param terminates Array of {@link Pattern}s that prematurely terminate the load and return the body.
+	 * @param encodedPostData {@link String} of post data, already encoded. <code>Null</code> if none.
+	 * @return The body of the response.
+	 * @throws InterruptedException If the user interrupted the request.
+	 * @throws HttpException if there was an exception that prevented the request from being completed or
+	 * its response from being read.
+	 */
+	private String share(String method, String urlStr, Hashtable headers, Pattern[] terminates,
+				String encodedPostData) throws InterruptedException, HttpException {
+		SharedRequests.SharedRequest shared =
+				sharedRequests.join(getShareKey(method, urlStr, headers, terminates, encodedPostData));
+		if(shared.isLeader()) {
+			try {
+				String body = fetch(method, urlStr, headers, terminates, encodedPostData, shared.getResponses());
+				shared.succeed(body);
+				return body;
+			} catch(HttpException e) {
+				shared.fail(e);
+				throw e;
+			} finally {
+				sharedRequests.land(shared);
+			}
+		}
+		
+		String body = shared.await();
+		if(body == null) { // the leader gave up, so try for ourselves.
+			return fetch(method, urlStr, headers, terminates, encodedPostData, null);
+		}
+		log.i("Shared response to " + method + " from " + StringUtils.quote(urlStr));
+		
+		// Add the cookies the leader received.
+		Vector responses = shared.getResponses();
+		for(int i = 0 ; i < responses.size() ; i += 2) {
+			try {
+				cookieManager.addCookiesFromResponseHeaders((String) responses.elementAt(i),
+						(ResponseHeaders) responses.elementAt(i + 1));
+			} catch(BadURLException e) {
+				log.i("Could not add cookie because of bad URL: " + e.getMessage());
+			}
+		}
+		return body;
+	}
+	
+	/**
+	 * Make a request and read its response.
+	 * @param method {@link #GET} or {@link #POST}.
+	 * @param urlStr The {@link String} URL to request.
+	 * @param headers {@link Hashtable} extra headers.
+	 * @param terminates Array of {@link Pattern}s that prematurely terminate the load and return the body.
+	 * @param encodedPostData {@link String} of post data, already encoded. <code>Null</code> if none.
+	 * @param cookieResponses A {@link Vector} to add each {@link String} URL and the
+	 * {@link ResponseHeaders} cookies were taken from, or <code>null</code>.
+	 * @return The body of the response.
+	 * @throws InterruptedException If the user interrupted the request.
+	 * @throws HttpException if there was an exception that prevented the request from being completed or
+	 * its response from being read.
+	 */
+	private String fetch(String method, String urlStr, Hashtable headers, Pattern[] terminates,
+				String encodedPostData, Vector cookieResponses) throws InterruptedException, HttpException {
+		rateLimitManager.startRequest(urlStr);
+		try {
+			InputStreamReader stream = request(method, urlStr, headers, encodedPostData,
+					null, cookieResponses, new Vector());
+			return readResponseStream(urlStr, stream, terminates);
+		} finally {
+			rateLimitManager.finishRequest(urlStr);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return A {@link String} that is the same for requests that would be sent identically,
+	 * including their cookies, and read identically.
+	 * @throws BadURLException If <code>urlStr</code> cannot be parsed as a URL.
+	 */
+	private String getShareKey(String method, String urlStr, Hashtable headers, Pattern[] terminates,
+				String encodedPostData) throws BadURLException {
+		// sort header names so that the order they were put in does not matter.
+		String[] names = new String[headers.size()];
+		int size = 0;
+		Enumeration e = headers.keys();
+		while(e.hasMoreElements()) {
+			String name = (String) e.nextElement();
+			int i = size++;
+			while(i > 0 && names[i - 1].compareTo(name) > 0) {
+				names[i] = names[i - 1];
+				i--;
+			}
+			names[i] = name;
+		}
+		
+		StringBuffer key = new StringBuffer(method).append(' ').append(urlStr).append('\n');
+		for(int i = 0 ; i < size ; i ++) {
+			key.append(names[i]).append(": ").append(headers.get(names[i])).append('\n');
+		}
+		String[] cookies = cookieManager.getCookiesFor(urlStr, headers);
+		key.append(CookieManager.COOKIE_HEADER_NAME).append(": ")
+			.append(StringUtils.join(cookies, "; ")).append('\n');
+		for(int i = 0 ; i < terminates.length ; i ++) {
+			key.append(terminates[i].toString()).append('\n');
+		}
+		if(encodedPostData != null) {
+			key.append('\n').append(encodedPostData);
+		}
+		return key.toString();
 	}
 	
 	/**
@@ -377,6 +654,15 @@ public class HttpBrowser implements Loggable {
 	public void setTimeout(int timeoutMilliseconds) {
 		requester.setTimeout(timeoutMilliseconds);
 	}
+	
+	/**
+	 * 
+	 * @param connectTimeoutMilliseconds How many milliseconds to wait for a connection to the remote server
+	 * to open before giving up.
+	 */
+	public void setConnectTimeout(int connectTimeoutMilliseconds) {
+		requester.setConnectTimeout(connectTimeoutMilliseconds);
+	}
 
 	/**
 	 * Change this {@link Browser}'s enforced rate limit.
@@ -393,4 +679,12 @@ public class HttpBrowser implements Loggable {
 	public void setMinRequestWait(int minRequestWaitMilliseconds) {
 		rateLimitManager.setMinRequestWait(minRequestWaitMilliseconds);
 	}
+	
+	/**
+	 * Change how many requests this {@link Browser} and its copies will have open to a single host at once.
+	 * @param maxHostRequests The maximum number of simultaneous requests to a host, or <code>0</code> for no limit.
+	 */
+	public void setMaxHostRequests(int maxHostRequests) {
+		rateLimitManager.setMaxHostRequests(maxHostRequests);
+	}
 }
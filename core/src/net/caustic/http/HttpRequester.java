@@ -53,4 +53,10 @@ interface HttpRequester {
 	 */	
 	public abstract void setTimeout(int timeoutMilliseconds);
 	
+	/**
+	 * @param connectTimeoutMilliseconds How many milliseconds to wait for a connection to
+	 * the remote server to open before giving up.
+	 */
+	public abstract void setConnectTimeout(int connectTimeoutMilliseconds);
+	
 }
@@ -1,26 +1,75 @@
 package net.caustic.http;
 
-import java.util.Date;
 import java.util.Hashtable;
 
 
 /**
- * Keep track of how many bytes are loaded from hosts, and when.  Used to calculate rate
- * limits.
+ * Keep track of how many requests are made to hosts, and how many bytes are loaded
+ * from them.  Each host has two token buckets: one refilled at {@link #minRequestWaitMilliseconds}
+ * per request, and one refilled at {@link #rateLimitKBps}.  Every response is
+ * charged against the second, so a host that has sent more than its share recently
+ * is held off for exactly as long as it takes to pay that back.
  * @see #rememberResponse(String, int)
- * @see #getRateSinceLastResponseFrom(String)
+ * @see #acquire(String)
  * @author realest
  *
  */
 class RateLimitManager {
 
-	
-	private final Hashtable hostLastRequest = new Hashtable();
-	private final Hashtable hostLastResponse = new Hashtable();
-	private final Hashtable hostLastResponseSize = new Hashtable();
+	/**
+	 * Host {@link String}s to {@link Host}s.
+	 */
+	private final Hashtable hosts = new Hashtable();
 	private final HttpUtils httpUtils;
-	private int rateLimitKBps = HttpBrowser.DEFAULT_RATE_LIMIT;
-	private int minRequestWaitMilliseconds = HttpBrowser.DEFAULT_REQUEST_WAIT;
+	private volatile int rateLimitKBps = HttpBrowser.DEFAULT_RATE_LIMIT;
+	private volatile int minRequestWaitMilliseconds = HttpBrowser.DEFAULT_REQUEST_WAIT;
+	private volatile int maxHostRequests = HttpBrowser.DEFAULT_MAX_HOST_REQUESTS;
+	
+	/**
+	 * The limits on a single host.  Synchronize on the {@link Host} to read or
+	 * modify it.  Threads waiting for a request to the host to finish wait on it.
+	 */
+	private static final class Host {
+		
+		/**
+		 * When {@link #requestTokens} and {@link #byteTokens} were last refilled.
+		 */
+		private long lastRefill;
+		
+		/**
+		 * Between <code>0</code> and <code>1</code>: a request may be made once it is <code>1</code>.
+		 */
+		private double requestTokens = 1;
+		
+		/**
+		 * How many bytes may be loaded.  Negative when recent responses were larger than
+		 * the rate limit allows.
+		 */
+		private double byteTokens;
+		
+		/**
+		 * The number of requests open to this host.
+		 */
+		private int open = 0;
+		
+		private Host(long now, double byteCapacity) {
+			this.lastRefill = now;
+			this.byteTokens = byteCapacity;
+		}
+		
+		/**
+		 * Fill the buckets for the time elapsed since {@link #lastRefill}.
+		 */
+		private void refill(long now, int minRequestWaitMilliseconds, double bytesPerMillisecond, double byteCapacity) {
+			long elapsed = now - lastRefill;
+			if(elapsed > 0) {
+				requestTokens = minRequestWaitMilliseconds > 0 ?
+						Math.min(1, requestTokens + (double) elapsed / minRequestWaitMilliseconds) : 1;
+				byteTokens = Math.min(byteCapacity, byteTokens + elapsed * bytesPerMillisecond);
+				lastRefill = now;
+			}
+		}
+	}
 	
 	/**
 	 * 
@@ -35,59 +84,134 @@ class RateLimitManager {
 			return urlStr;
 		}
 	}
+	
+	private Host getHostFor(String urlStr) {
+		String host = getHost(urlStr);
+		synchronized(hosts) {
+			Host result = (Host) hosts.get(host);
+			if(result == null) {
+				result = new Host(System.currentTimeMillis(), getByteCapacity());
+				hosts.put(host, result);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return How many bytes per millisecond {@link #rateLimitKBps} allows.
+	 */
+	private double getBytesPerMillisecond() {
+		return rateLimitKBps * 1024 / 1000.0;
+	}
+	
+	/**
+	 * 
+	 * @return How many bytes a host can send at once: one second's worth.
+	 */
+	private double getByteCapacity() {
+		return rateLimitKBps * 1024;
+	}
 
 	public RateLimitManager(HttpUtils httpUtils) {
 		this.httpUtils = httpUtils;
 	}
 	
-	
 	/**
 	 * Remember that a response of a certain size was pulled from a URL.
 	 * @param urlStr The {@link String} url that supplied the response.
 	 * @param responseByteSize The size of the response, in bytes.
 	 */
 	public void rememberResponse(String urlStr, int responseByteSize) {
-		String host = getHost(urlStr);
-		hostLastResponse.put(host, Long.valueOf(new Date().getTime()));
-		hostLastResponseSize.put(host, Integer.valueOf(responseByteSize));
+		Host host = getHostFor(urlStr);
+		synchronized(host) {
+			host.refill(System.currentTimeMillis(), minRequestWaitMilliseconds, getBytesPerMillisecond(), getByteCapacity());
+			host.byteTokens -= responseByteSize;
+		}
+	}
+	
+	/**
+	 * Try to take permission to make a request to <code>urlStr</code>.
+	 * @param urlStr The {@link String} url to request.
+	 * @return <code>0</code> if the request may be made now, in which case it is counted
+	 * against the host.  Otherwise, the number of milliseconds until it could be made,
+	 * in which case nothing is counted.  Another request could be made in the meantime,
+	 * so callers should try again after waiting.
+	 */
+	public long acquire(String urlStr) {
+		Host host = getHostFor(urlStr);
+		synchronized(host) {
+			final int minRequestWaitMilliseconds = this.minRequestWaitMilliseconds;
+			final double bytesPerMillisecond = getBytesPerMillisecond();
+			host.refill(System.currentTimeMillis(), minRequestWaitMilliseconds, bytesPerMillisecond, getByteCapacity());
+			
+			double wait = 0;
+			if(host.requestTokens < 1) {
+				wait = (1 - host.requestTokens) * minRequestWaitMilliseconds;
+			}
+			if(host.byteTokens < 0 && bytesPerMillisecond > 0) {
+				wait = Math.max(wait, -host.byteTokens / bytesPerMillisecond);
+			}
+			
+			if(wait > 0) {
+				return (long) Math.ceil(wait);
+			} else {
+				host.requestTokens -= 1;
+				return 0;
+			}
+		}
 	}
 	
 	/**
 	 * Check to see whether a request to <code>urlStr</code> should be delayed.
-	 * When this returns <code>true</code>, assumption is that a request has been made --
-	 * the {@link #hostLastRequest} table will be set.
+	 * When this returns <code>false</code>, assumption is that a request has been made.
 	 * @param urlStr The {@link String} url whose host's rate should be calculated.
 	 * @return <code>true</code> if the request should be delayed, <code>false</code>
 	 * otherwise.
+	 * @see #acquire(String)
 	 */
 	public boolean shouldDelay(String urlStr) {
-		boolean shouldDelay = false;
-		synchronized(this) {
-			long now = new Date().getTime();
-			String host = getHost(urlStr);
-			
-			// Check delay due to repeated requests.
-			if(hostLastRequest.containsKey(host)) {
-				long millisecondsSince = now - ((Long) hostLastRequest.get(host)).longValue();
-				if(millisecondsSince < minRequestWaitMilliseconds) {
-					shouldDelay = true;
-				}
-			}
-			
-			// Check delay due to rate limit.
-			if(hostLastResponse.containsKey(host)) {
-				long millisecondsSince = now - ((Long) hostLastResponse.get(host)).longValue() + 1;
-				int bytesLastLoaded = ((Integer) hostLastResponseSize.get(host)).intValue();
-				if(bytesLastLoaded / millisecondsSince > rateLimitKBps) {
-					shouldDelay = true;
-				}
-			}
-			
-			if(shouldDelay == false) {
-				hostLastRequest.put(host, Long.valueOf(now));
+		return acquire(urlStr) > 0;
+	}
+	
+	/**
+	 * Block until fewer than {@link #maxHostRequests} requests are open to the host
+	 * of <code>urlStr</code>, then count a new one.  Every call must be followed by
+	 * a call to {@link #finishRequest(String)}.
+	 * @param urlStr The {@link String} url about to be requested.
+	 * @throws InterruptedException If the thread was interrupted while waiting.
+	 */
+	public void startRequest(String urlStr) throws InterruptedException {
+		Host host = getHostFor(urlStr);
+		synchronized(host) {
+			while(maxHostRequests > 0 && host.open >= maxHostRequests) {
+				host.wait();
 			}
+			host.open++;
+		}
+	}
+	
+	/**
+	 * Count a request to the host of <code>urlStr</code> started by {@link #startRequest(String)}
+	 * as finished.
+	 * @param urlStr The {@link String} url that was requested.
+	 */
+	public void finishRequest(String urlStr) {
+		Host host = getHostFor(urlStr);
+		synchronized(host) {
+			host.open--;
+			host.notify();
 		}
-		return shouldDelay;
+	}
+	
+	/**
+	 * Change the number of requests this {@link RateLimitManager} lets be open to
+	 * a single host at once.
+	 * @param maxHostRequests The maximum number of simultaneous requests to a host, or
+	 * <code>0</code> for no limit.
+	 */
+	public void setMaxHostRequests(int maxHostRequests) {
+		this.maxHostRequests = maxHostRequests;
 	}
 	
 	/**
@@ -107,4 +231,4 @@ class RateLimitManager {
 	public void setMinRequestWait(int minRequestWaitMilliseconds) {
 		this.minRequestWaitMilliseconds = minRequestWaitMilliseconds;
 	}
-}
\ No newline at end of file
+}
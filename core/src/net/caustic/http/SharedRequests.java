@@ -0,0 +1,151 @@
+package net.caustic.http;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The requests an {@link HttpBrowser} and its copies are making, by key, so that a
+ * request made while an identical one is in flight can wait for and share its
+ * response instead of making its own.
+ * @author realest
+ *
+ */
+class SharedRequests {
+
+	/**
+	 * {@link String} keys to the {@link Flight} in flight for each.
+	 */
+	private final Hashtable inFlight = new Hashtable();
+
+	/**
+	 * The response to one request, once its leader has it.
+	 */
+	private static final class Flight {
+
+		/**
+		 * Alternating {@link String} URLs and the {@link ResponseHeaders} received from them,
+		 * so that those who joined can add the same cookies as the leader.
+		 */
+		private final Vector responses = new Vector();
+
+		private boolean done = false;
+		private String body;
+		private HttpException failure;
+	}
+
+	/**
+	 * One caller's part in a request, either leading it or waiting for its leader.
+	 */
+	static final class SharedRequest {
+		private final String key;
+		private final boolean isLeader;
+		private final Flight flight;
+
+		private SharedRequest(String key, boolean isLeader, Flight flight) {
+			this.key = key;
+			this.isLeader = isLeader;
+			this.flight = flight;
+		}
+
+		/**
+		 *
+		 * @return <code>true</code> if the caller should make the request, then
+		 * {@link #succeed(String)} or {@link #fail(HttpException)}, and finally
+		 * {@link SharedRequests#land(SharedRequest)}.  <code>false</code> if it should
+		 * {@link #await()} the leader.
+		 */
+		boolean isLeader() {
+			return isLeader;
+		}
+
+		/**
+		 *
+		 * @return A {@link Vector} for the leader to add {@link String} URLs and their
+		 * {@link ResponseHeaders} to, or for others to read them from once
+		 * {@link #await()} returns.
+		 */
+		Vector getResponses() {
+			return flight.responses;
+		}
+
+		void succeed(String body) {
+			synchronized(flight) {
+				flight.body = body;
+				flight.done = true;
+				flight.notifyAll();
+			}
+		}
+
+		void fail(HttpException failure) {
+			synchronized(flight) {
+				flight.failure = failure;
+				flight.done = true;
+				flight.notifyAll();
+			}
+		}
+
+		/**
+		 * Wait for the leader to finish.
+		 * @return The {@link String} body of the response, or <code>null</code> if the
+		 * leader gave up without one.
+		 * @throws HttpException the exception the leader's request failed with.
+		 * @throws InterruptedException if interrupted while waiting.
+		 */
+		String await() throws HttpException, InterruptedException {
+			synchronized(flight) {
+				while(!flight.done) {
+					flight.wait();
+				}
+				if(flight.failure != null) {
+					throw flight.failure;
+				}
+				return flight.body;
+			}
+		}
+	}
+
+	/**
+	 * Join the request in flight for <code>key</code>, or lead a new one.
+	 * @param key A {@link String} that is the same for identical requests.
+	 * @return A {@link SharedRequest}.
+	 */
+	SharedRequest join(String key) {
+		SharedRequest request;
+		synchronized(inFlight) {
+			Flight flight = (Flight) inFlight.get(key);
+			if(flight != null) {
+				request = new SharedRequest(key, false, flight);
+			} else {
+				flight = new Flight();
+				inFlight.put(key, flight);
+				request = new SharedRequest(key, true, flight);
+			}
+		}
+		if(!request.isLeader) {
+			joined();
+		}
+		return request;
+	}
+
+	/**
+	 * Called by {@link #join(String)} after it joins a request already in flight, outside
+	 * of any lock.  Does nothing here.
+	 */
+	void joined() { }
+
+	/**
+	 * Stop sharing the leader's <code>request</code>, so that requests for the same key
+	 * after this are made again.  If the leader neither succeeded nor failed, those
+	 * waiting get <code>null</code> from {@link SharedRequest#await()}.
+	 * @param request The {@link SharedRequest} returned to the leader by {@link #join(String)}.
+	 */
+	void land(SharedRequest request) {
+		synchronized(inFlight) {
+			inFlight.remove(request.key);
+		}
+		synchronized(request.flight) {
+			request.flight.done = true;
+			request.flight.notifyAll();
+		}
+	}
+}
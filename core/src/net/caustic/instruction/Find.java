@@ -123,6 +123,28 @@ public final class Find extends Instruction {
 		return false;
 	}
 	
+	/**
+	 * 
+	 * @param db The {@link Database} to substitute {@link #pattern} from.
+	 * @param scope The {@link Scope} to substitute {@link #pattern} in.
+	 * @return A {@link MatchCountStop} that stops loading <code>source</code> once this {@link Find}
+	 * has all the matches it will use, or <code>null</code> if it uses matches counted from the
+	 * end, or its pattern cannot be substituted yet.
+	 * @throws DatabaseException if <code>db</code> could not be read.
+	 */
+	MatchCountStop getStop(Database db, Scope scope) throws DatabaseException {
+		if(minMatch < 0 || maxMatch < 0) {
+			return null;
+		}
+		final StringSubstitution subPattern = pattern.sub(db, scope);
+		if(subPattern.isMissingTags()) {
+			return null;
+		}
+		return new MatchCountStop(
+				compiler.newPattern(subPattern.getSubstituted(), isCaseInsensitive, isMultiline, doesDotMatchNewline),
+				maxMatch);
+	}
+	
 	/**
 	 * Use {@link #pattern}, substituted from {@link Database}, to match against <code>source</code>.
 	 * Ignores <code>browser</code>.
@@ -19,6 +19,14 @@ public class InstructionArray extends Instruction {
 		this.instructions = instructions;
 	}
 	
+	/**
+	 * 
+	 * @return The {@link Instruction}s in this {@link InstructionArray}.
+	 */
+	public Instruction[] getInstructions() {
+		return instructions;
+	}
+	
 	public InstructionResult execute(String source, Database db, Scope scope,
 			HttpBrowser browser) throws InterruptedException, DatabaseException {
 		return InstructionResult.success(null, new String[] { source }, instructions, false);
@@ -50,6 +50,13 @@ public final class Load extends Instruction {
 	 */
 	private final HashtableTemplate postTable = new HashtableTemplate();
 	
+	/**
+	 * Whether this {@link Load} may share the response to an identical request
+	 * being made at the same time.  <code>true</code> by default.
+	 * @see HttpBrowser#get(String, Hashtable, Pattern[])
+	 */
+	private boolean shareResponse = true;
+	
 	/**
 	 * A string that will be templated and evaulated as a URL.
 	 */
@@ -136,6 +143,16 @@ public final class Load extends Instruction {
 		this.headers.extend(headers, true);
 	}
 
+	/**
+	 * Assign {@link #shareResponse}.  Loads whose responses depend upon more than
+	 * the cookies sent with them, or that must each set cookies of their own,
+	 * should not share.
+	 * @param shareResponse <code>false</code> to always make a request of its own.
+	 */
+	public void setShareResponse(boolean shareResponse) {
+		this.shareResponse = shareResponse;
+	}
+	
 	/**
 	 * Add a {@link NameValuePairTemplate} to this {@link Load}'s {@link #cookies}.
 	 * @param cookies A {@link HashtableTemplate} of cookies to add.  Existing cookies with
@@ -156,6 +173,32 @@ public final class Load extends Instruction {
 		return true;
 	}
 	
+	/**
+	 * 
+	 * @param db The {@link Database} to substitute children's patterns from.
+	 * @param scope The {@link Scope} to substitute children's patterns in.
+	 * @return An array of {@link Pattern}s that stop the response being read once every
+	 * child {@link Find} has all the matches it will use.  Zero-length if any child
+	 * needs the whole response.
+	 * @throws DatabaseException if <code>db</code> could not be read.
+	 */
+	private Pattern[] getStops(Database db, Scope scope) throws DatabaseException {
+		final Instruction[] children = getChildren();
+		if(children.length == 0) {
+			return new Pattern[] { };
+		}
+		final MatchCountStop[] stops = new MatchCountStop[children.length];
+		for(int i = 0 ; i < children.length ; i++) {
+			if(children[i] instanceof Find) {
+				stops[i] = ((Find) children[i]).getStop(db, scope);
+			}
+			if(stops[i] == null) {
+				return new Pattern[] { };
+			}
+		}
+		return new Pattern[] { MatchCountStop.all(stops) };
+	}
+	
 	/**
 	 * Make the request and retrieve the response body specified by this {@link Load}.
 	 * <code>source</code> is ignored.
@@ -164,7 +207,6 @@ public final class Load extends Instruction {
 			HttpBrowser browser) throws InterruptedException, DatabaseException {
 		final InstructionResult result;
 		try {			
-			final Pattern[] stops = new Pattern[] { };
 			final StringSubstitution urlSub = url.sub(db, scope);
 			final HashtableSubstitution headersSub = headers.sub(db, scope);
 			final HashtableSubstitution cookiesSub = cookies.sub(db, scope);
@@ -193,9 +235,13 @@ public final class Load extends Instruction {
 					browser.head(url, headers);
 					responseBody = ""; // launch children with a blank source.
 				} else if(method.equalsIgnoreCase(HttpBrowser.POST)) {
-					responseBody = browser.post(url, headers, stops, postStr);
+					responseBody = shareResponse ?
+							browser.post(url, headers, getStops(db, scope), postStr) :
+							browser.postUnshared(url, headers, getStops(db, scope), postStr);
 				} else {
-					responseBody = browser.get(url, headers, stops);
+					responseBody = shareResponse ?
+							browser.get(url, headers, getStops(db, scope)) :
+							browser.getUnshared(url, headers, getStops(db, scope));
 				}
 				result = InstructionResult.success(url, new String[] { responseBody }, getChildren(), false);
 			}
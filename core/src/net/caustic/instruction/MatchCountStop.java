@@ -0,0 +1,91 @@
+package net.caustic.instruction;
+
+import net.caustic.regexp.Pattern;
+
+/**
+ * A {@link Pattern} used by {@link Load} to stop reading a response early.  It has a
+ * settled match once every one of its {@link Pattern}s has a settled match at its own
+ * match number.  It does not substitute anything.
+ * @see Pattern#hasSettledMatch(String, int)
+ * @author realest
+ *
+ */
+final class MatchCountStop implements Pattern {
+	private final Pattern[] patterns;
+	private final int[] matchNumbers;
+	
+	/**
+	 * 
+	 * @param pattern The {@link Pattern} to look for.
+	 * @param matchNumber The last match of <code>pattern</code> needed.
+	 */
+	MatchCountStop(Pattern pattern, int matchNumber) {
+		this(new Pattern[] { pattern }, new int[] { matchNumber });
+	}
+	
+	private MatchCountStop(Pattern[] patterns, int[] matchNumbers) {
+		this.patterns = patterns;
+		this.matchNumbers = matchNumbers;
+	}
+	
+	/**
+	 * 
+	 * @param stops An array of {@link MatchCountStop}s.
+	 * @return A {@link MatchCountStop} that has a settled match once all of
+	 * <code>stops</code> do.
+	 */
+	static MatchCountStop all(MatchCountStop[] stops) {
+		int size = 0;
+		for(int i = 0 ; i < stops.length ; i++) {
+			size += stops[i].patterns.length;
+		}
+		Pattern[] patterns = new Pattern[size];
+		int[] matchNumbers = new int[size];
+		int offset = 0;
+		for(int i = 0 ; i < stops.length ; i++) {
+			System.arraycopy(stops[i].patterns, 0, patterns, offset, stops[i].patterns.length);
+			System.arraycopy(stops[i].matchNumbers, 0, matchNumbers, offset, stops[i].matchNumbers.length);
+			offset += stops[i].patterns.length;
+		}
+		return new MatchCountStop(patterns, matchNumbers);
+	}
+	
+	/**
+	 * <code>matchNumber</code> is ignored in favor of each {@link Pattern}'s own.
+	 */
+	public boolean matches(String input, int matchNumber) {
+		for(int i = 0 ; i < patterns.length ; i++) {
+			if(!patterns[i].matches(input, matchNumbers[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * <code>matchNumber</code> is ignored in favor of each {@link Pattern}'s own.
+	 */
+	public boolean hasSettledMatch(String input, int matchNumber) {
+		for(int i = 0 ; i < patterns.length ; i++) {
+			if(!patterns[i].hasSettledMatch(input, matchNumbers[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return A zero-length array, since a {@link MatchCountStop} has nothing to substitute.
+	 */
+	public String[] match(String input, String replacement, int minMatch, int maxMatch) {
+		return new String[] {};
+	}
+	
+	public String toString() {
+		String result = "";
+		for(int i = 0 ; i < patterns.length ; i++) {
+			result += (i > 0 ? ", " : "") + patterns[i].toString() + " #" + matchNumbers[i];
+		}
+		return result;
+	}
+}
@@ -30,9 +30,23 @@ public class SerializedInstruction extends Instruction {
 		return false;
 	}
 	
+	/**
+	 * Deserialize this {@link SerializedInstruction} without executing it.
+	 * @param db The {@link Database} to use as input for template substitutions.
+	 * @param scope The {@link Scope} within <code>db</code>.
+	 * @return A {@link DeserializerResult} with either the {@link Instruction}, or
+	 * information about why it could not be deserialized.
+	 * @throws InterruptedException if the user interrupted during the method.
+	 * @throws DatabaseException if there was an error reading from <code>db</code>.
+	 */
+	public DeserializerResult deserialize(Database db, Scope scope)
+			throws InterruptedException, DatabaseException {
+		return deserializer.deserialize(serializedString, db, scope, uri);
+	}
+	
 	public InstructionResult execute(String source, Database db, Scope scope,
 			HttpBrowser browser) throws InterruptedException, DatabaseException {
-		DeserializerResult deserializerResult = deserializer.deserialize(serializedString, db, scope, uri);
+		DeserializerResult deserializerResult = deserialize(db, scope);
 		
 		if(deserializerResult.isMissingTags()) {
 			return InstructionResult.missingTags(deserializerResult.getMissingTags());
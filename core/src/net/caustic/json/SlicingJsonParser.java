@@ -0,0 +1,880 @@
+package net.caustic.json;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * A {@link JsonParser} that reads its input in one pass, recording where each value
+ * starts and ends rather than converting it.  Strings are only unescaped, and numbers
+ * only parsed, when they are asked for.  Nested objects and arrays keep their place in
+ * the original text, so {@link JsonObject#getString(String)} and
+ * {@link JsonArray#getString(int)} return them as slices of it without writing them
+ * out again.
+ * <p>
+ * Like <code>org.json.me</code>, it accepts comments, single-quoted strings, unquoted
+ * strings that may contain spaces, <code>=</code> or <code>=&gt;</code> between keys
+ * and values, <code>;</code> between pairs, missing array elements, which are
+ * <code>null</code>, and <code>&#92;x</code> escapes with two hex digits.  Numbers are
+ * written out as <code>org.json.me</code> would, so <code>1.5e3</code> is
+ * <code>1500.0</code> and the octal <code>010</code> is <code>8</code>.
+ * <p>
+ * It differs from <code>org.json.me</code> in that a malformed <code>&#92;u</code> or
+ * <code>&#92;x</code> escape is a {@link JsonException} rather than a
+ * {@link NumberFormatException}, and that {@link JsonObject#isString(String)} and
+ * {@link JsonArray#isString(int)} are <code>false</code> for a missing key or index
+ * rather than <code>true</code>.
+ * @author realest
+ *
+ */
+public class SlicingJsonParser implements JsonParser {
+
+	private static final byte STRING = 0;
+
+	/**
+	 * A quoted string with backslash escapes.
+	 */
+	private static final byte ESCAPED_STRING = 1;
+	private static final byte NUMBER = 2;
+	private static final byte TRUE = 3;
+	private static final byte FALSE = 4;
+	private static final byte NULL = 5;
+	private static final byte OBJECT = 6;
+	private static final byte ARRAY = 7;
+
+	private static final String NULL_STRING = "null";
+	private static final String TRUE_STRING = "true";
+	private static final String FALSE_STRING = "false";
+
+	/**
+	 * Objects with more keys than this look them up in a {@link Hashtable} instead of
+	 * comparing against each.
+	 */
+	private static final int MAX_SCANNED_KEYS = 16;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * The values of a {@link SlicingObject} or {@link SlicingArray}, in order, as
+	 * offsets into their shared text.
+	 */
+	private static class Values {
+		protected final char[] chars;
+
+		/**
+		 * Where the object or array starts and ends in {@link #chars}.
+		 */
+		private final int start;
+		private int end;
+
+		protected int length = 0;
+		private byte[] types = new byte[INITIAL_CAPACITY];
+
+		/**
+		 * For strings, where their contents start and end, without quotes.  For
+		 * everything else, where their text starts and ends.
+		 */
+		private int[] starts = new int[INITIAL_CAPACITY];
+		private int[] ends = new int[INITIAL_CAPACITY];
+
+		/**
+		 * {@link Values} of nested objects and arrays.
+		 */
+		private Values[] children = new Values[INITIAL_CAPACITY];
+
+		Values(char[] chars, int start) {
+			this.chars = chars;
+			this.start = start;
+		}
+
+		void add(byte type, int start, int end, Values child) {
+			if(length == types.length) {
+				int capacity = length * 2;
+				byte[] newTypes = new byte[capacity];
+				int[] newStarts = new int[capacity];
+				int[] newEnds = new int[capacity];
+				Values[] newChildren = new Values[capacity];
+				System.arraycopy(types, 0, newTypes, 0, length);
+				System.arraycopy(starts, 0, newStarts, 0, length);
+				System.arraycopy(ends, 0, newEnds, 0, length);
+				System.arraycopy(children, 0, newChildren, 0, length);
+				types = newTypes;
+				starts = newStarts;
+				ends = newEnds;
+				children = newChildren;
+			}
+			length++;
+			set(length - 1, type, start, end, child);
+		}
+		
+		void set(int index, byte type, int start, int end, Values child) {
+			types[index] = type;
+			starts[index] = start;
+			ends[index] = end;
+			children[index] = child;
+		}
+
+		void close(int end) {
+			this.end = end;
+		}
+
+		/**
+		 *
+		 * @param index The index of a value.
+		 * @return The {@link Values} of the object or array at <code>index</code>.
+		 * @throws JsonException if the value at <code>index</code> is not of <code>type</code>.
+		 */
+		Values getChild(int index, byte type, String description) throws JsonException {
+			if(types[index] != type) {
+				throw new JsonException(describe(index) + " is not " + description + ".");
+			}
+			return children[index];
+		}
+
+		/**
+		 * Objects, arrays, numbers and booleans are returned as they were written,
+		 * strings are unescaped, and <code>null</code> is "null".
+		 */
+		String stringAt(int index) {
+			switch(types[index]) {
+			case ESCAPED_STRING:
+				return unescape(chars, starts[index], ends[index]);
+			case NULL:
+				return NULL_STRING;
+			case NUMBER:
+				return numberToString(new String(chars, starts[index], ends[index] - starts[index]));
+			default:
+				return new String(chars, starts[index], ends[index] - starts[index]);
+			}
+		}
+
+		int intAt(int index) throws JsonException {
+			final byte type = types[index];
+			if(type == NUMBER || type == STRING || type == ESCAPED_STRING) {
+				String string = stringAt(index);
+				try {
+					return Integer.parseInt(string);
+				} catch(NumberFormatException e) {
+					try {
+						return (int) Double.parseDouble(string);
+					} catch(NumberFormatException e2) { }
+				}
+			}
+			throw new JsonException(describe(index) + " is not a number.");
+		}
+
+		boolean booleanAt(int index) throws JsonException {
+			final byte type = types[index];
+			if(type == TRUE) {
+				return true;
+			} else if(type == FALSE) {
+				return false;
+			} else if(type == STRING || type == ESCAPED_STRING) {
+				String string = stringAt(index);
+				if(string.equalsIgnoreCase(TRUE_STRING)) {
+					return true;
+				} else if(string.equalsIgnoreCase(FALSE_STRING)) {
+					return false;
+				}
+			}
+			throw new JsonException(describe(index) + " is not a boolean.");
+		}
+
+		boolean isType(int index, byte type) {
+			return types[index] == type;
+		}
+
+		boolean isIntAt(int index) {
+			try {
+				intAt(index);
+				return true;
+			} catch(JsonException e) {
+				return false;
+			}
+		}
+
+		boolean isBooleanAt(int index) {
+			try {
+				booleanAt(index);
+				return true;
+			} catch(JsonException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Overridden to name values by key.
+		 */
+		String describe(int index) {
+			return "Element " + index;
+		}
+
+		/**
+		 * The text of this object or array.
+		 */
+		public String toString() {
+			return new String(chars, start, end - start);
+		}
+	}
+
+	private static final class SlicingObject extends Values implements JsonObject {
+		private String[] keys = new String[INITIAL_CAPACITY];
+
+		/**
+		 * {@link String} keys to {@link Integer} indices, once there are more than
+		 * {@link #MAX_SCANNED_KEYS}.
+		 */
+		private Hashtable index;
+
+		SlicingObject(char[] chars, int start) {
+			super(chars, start);
+		}
+
+		void put(String key, byte type, int start, int end, Values child) {
+			// a repeated key replaces the earlier value, as in org.json.me.
+			int existing = indexOf(key);
+			if(existing != -1) {
+				set(existing, type, start, end, child);
+				return;
+			}
+			if(length == keys.length) {
+				String[] newKeys = new String[length * 2];
+				System.arraycopy(keys, 0, newKeys, 0, length);
+				keys = newKeys;
+			}
+			keys[length] = key;
+			if(index != null) {
+				index.put(key, new Integer(length));
+			}
+			add(type, start, end, child);
+			if(index == null && length > MAX_SCANNED_KEYS) {
+				index = new Hashtable();
+				for(int i = 0 ; i < length ; i ++) {
+					index.put(keys[i], new Integer(i));
+				}
+			}
+		}
+
+		private int indexOf(String key) {
+			if(index != null) {
+				Integer i = (Integer) index.get(key);
+				return i == null ? -1 : i.intValue();
+			}
+			for(int i = 0 ; i < length ; i ++) {
+				if(keys[i].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private int require(String key) throws JsonException {
+			int i = indexOf(key);
+			if(i == -1) {
+				throw new JsonException("Key " + quote(key) + " not found.");
+			}
+			return i;
+		}
+
+		String describe(int index) {
+			return "Value of " + quote(keys[index]);
+		}
+
+		public JsonArray getJsonArray(String key) throws JsonException {
+			return (JsonArray) getChild(require(key), ARRAY, "an array");
+		}
+
+		public boolean isJsonArray(String key) throws JsonException {
+			return isType(require(key), ARRAY);
+		}
+
+		public JsonObject getJsonObject(String key) throws JsonException {
+			return (JsonObject) getChild(require(key), OBJECT, "an object");
+		}
+
+		public boolean isJsonObject(String key) throws JsonException {
+			return isType(require(key), OBJECT);
+		}
+
+		public String getString(String key) throws JsonException {
+			return stringAt(require(key));
+		}
+
+		/**
+		 * Every value can be a {@link String}.
+		 * @return <code>false</code> if there is no value for <code>key</code>.
+		 */
+		public boolean isString(String key) {
+			return has(key);
+		}
+
+		public int getInt(String key) throws JsonException {
+			return intAt(require(key));
+		}
+
+		public boolean isInt(String key) throws JsonException {
+			return isIntAt(require(key));
+		}
+
+		public boolean getBoolean(String key) throws JsonException {
+			return booleanAt(require(key));
+		}
+
+		public boolean isBoolean(String key) throws JsonException {
+			return isBooleanAt(require(key));
+		}
+
+		public boolean has(String key) {
+			return indexOf(key) != -1;
+		}
+
+		public boolean isNull(String key) {
+			int i = indexOf(key);
+			return i == -1 || isType(i, NULL);
+		}
+
+		public JsonIterator keys() {
+			return new JsonIterator() {
+				private int i = 0;
+
+				public boolean hasNext() {
+					return i < length;
+				}
+
+				public String next() {
+					return keys[i++];
+				}
+			};
+		}
+
+		public int length() {
+			return length;
+		}
+	}
+
+	private static final class SlicingArray extends Values implements JsonArray {
+
+		SlicingArray(char[] chars, int start) {
+			super(chars, start);
+		}
+
+		private int require(int index) throws JsonException {
+			if(index < 0 || index >= length) {
+				throw new JsonException(new ArrayIndexOutOfBoundsException(index));
+			}
+			return index;
+		}
+
+		public JsonArray getJsonArray(int index) throws JsonException {
+			return (JsonArray) getChild(require(index), ARRAY, "an array");
+		}
+
+		public boolean isJsonArray(int index) throws JsonException {
+			return isType(require(index), ARRAY);
+		}
+
+		public JsonObject getJsonObject(int index) throws JsonException {
+			return (JsonObject) getChild(require(index), OBJECT, "an object");
+		}
+
+		public boolean isJsonObject(int index) throws JsonException {
+			return isType(require(index), OBJECT);
+		}
+
+		public String getString(int index) throws JsonException {
+			return stringAt(require(index));
+		}
+
+		/**
+		 * Every value can be a {@link String}.
+		 * @return <code>false</code> if there is no value at <code>index</code>.
+		 */
+		public boolean isString(int index) {
+			return index >= 0 && index < length;
+		}
+
+		public int getInt(int index) throws JsonException {
+			return intAt(require(index));
+		}
+
+		public boolean isInt(int index) throws JsonException {
+			return isIntAt(require(index));
+		}
+
+		public boolean getBoolean(int index) throws JsonException {
+			return booleanAt(require(index));
+		}
+
+		public boolean isBoolean(int index) throws JsonException {
+			return isBooleanAt(require(index));
+		}
+
+		public String[] toArray() throws JsonException {
+			String[] result = new String[length];
+			for(int i = 0 ; i < length ; i ++) {
+				result[i] = stringAt(i);
+			}
+			return result;
+		}
+
+		public int length() {
+			return length;
+		}
+	}
+
+	/**
+	 * Reads one value from a <code>char[]</code>, keeping track of its position.
+	 */
+	private static final class Tokenizer {
+		private final char[] chars;
+		private int pos = 0;
+
+		Tokenizer(char[] chars) {
+			this.chars = chars;
+		}
+
+		private JsonException error(String message) {
+			return new JsonException(message + " at character " + pos + ".");
+		}
+
+		/**
+		 * Skip whitespace and comments.
+		 * @return The next character, which is not consumed, or <code>-1</code> at the end.
+		 */
+		int peek() throws JsonException {
+			while(pos < chars.length) {
+				char c = chars[pos];
+				if(c <= ' ') {
+					pos++;
+				} else if(c == '#') {
+					skipLine();
+				} else if(c == '/' && pos + 1 < chars.length && chars[pos + 1] == '/') {
+					skipLine();
+				} else if(c == '/' && pos + 1 < chars.length && chars[pos + 1] == '*') {
+					pos += 2;
+					while(true) {
+						if(pos + 1 >= chars.length) {
+							throw error("Unclosed comment");
+						} else if(chars[pos] == '*' && chars[pos + 1] == '/') {
+							pos += 2;
+							break;
+						}
+						pos++;
+					}
+				} else {
+					return c;
+				}
+			}
+			return -1;
+		}
+
+		private void skipLine() {
+			while(pos < chars.length && chars[pos] != '\n' && chars[pos] != '\r') {
+				pos++;
+			}
+		}
+
+		SlicingObject readObject() throws JsonException {
+			if(peek() != '{') {
+				throw error("A JSON object must begin with '{'");
+			}
+			SlicingObject object = new SlicingObject(chars, pos);
+			pos++;
+			while(true) {
+				int c = peek();
+				if(c == '}') {
+					pos++;
+					object.close(pos);
+					return object;
+				} else if(c == -1) {
+					throw error("A JSON object must end with '}'");
+				}
+
+				final String key;
+				if(c == '"' || c == '\'') {
+					int start = pos + 1;
+					boolean escaped = skipString((char) c);
+					key = escaped ? unescape(chars, start, pos - 1) : new String(chars, start, pos - 1 - start);
+				} else {
+					int start = pos;
+					int end = skipUnquoted();
+					if(end == start) {
+						throw error("Expected a key");
+					}
+					key = new String(chars, start, end - start);
+				}
+
+				c = peek();
+				if(c == '=') {
+					pos++;
+					if(pos < chars.length && chars[pos] == '>') {
+						pos++;
+					}
+				} else if(c == ':') {
+					pos++;
+				} else {
+					throw error("Expected a ':' after a key");
+				}
+
+				readValue(object, key);
+
+				c = peek();
+				if(c == ',' || c == ';') {
+					pos++;
+				} else if(c != '}') {
+					throw error("Expected a ',' or '}'");
+				}
+			}
+		}
+
+		SlicingArray readArray() throws JsonException {
+			if(peek() != '[') {
+				throw error("A JSON array must begin with '['");
+			}
+			SlicingArray array = new SlicingArray(chars, pos);
+			pos++;
+			if(peek() == ']') {
+				pos++;
+				array.close(pos);
+				return array;
+			}
+			while(true) {
+				int c = peek();
+				if(c == ',') { // missing elements are null.
+					array.add(NULL, pos, pos, null);
+				} else if(c == -1) {
+					throw error("A JSON array must end with ']'");
+				} else {
+					readValue(array, null);
+				}
+
+				c = peek();
+				if(c == ',') {
+					pos++;
+					if(peek() == ']') {
+						pos++;
+						array.close(pos);
+						return array;
+					}
+				} else if(c == ']') {
+					pos++;
+					array.close(pos);
+					return array;
+				} else {
+					throw error("Expected a ',' or ']'");
+				}
+			}
+		}
+
+		/**
+		 * Read a value into <code>values</code>, under <code>key</code> if it is a
+		 * {@link SlicingObject}.
+		 */
+		private void readValue(Values values, String key) throws JsonException {
+			final int c = peek();
+			final byte type;
+			final int start;
+			final int end;
+			Values child = null;
+
+			if(c == '"' || c == '\'') {
+				start = pos + 1;
+				type = skipString((char) c) ? ESCAPED_STRING : STRING;
+				end = pos - 1;
+			} else if(c == '{') {
+				start = pos;
+				child = readObject();
+				type = OBJECT;
+				end = pos;
+			} else if(c == '[') {
+				start = pos;
+				child = readArray();
+				type = ARRAY;
+				end = pos;
+			} else {
+				start = pos;
+				end = skipUnquoted();
+				if(start == end) {
+					throw error("Missing value");
+				}
+				type = unquotedType(start, end);
+			}
+
+			if(key != null) {
+				((SlicingObject) values).put(key, type, start, end, child);
+			} else {
+				values.add(type, start, end, child);
+			}
+		}
+
+		/**
+		 * Move past a quoted string whose opening <code>quote</code> is at {@link #pos}.
+		 * @return Whether the string had any escapes.
+		 */
+		private boolean skipString(char quote) throws JsonException {
+			boolean escaped = false;
+			pos++;
+			while(pos < chars.length) {
+				char c = chars[pos++];
+				if(c == quote) {
+					return escaped;
+				} else if(c == '\\') {
+					escaped = true;
+					skipEscape();
+				} else if(c == '\n' || c == '\r') {
+					break;
+				}
+			}
+			throw error("Unterminated string");
+		}
+
+		/**
+		 * Move past the escape whose backslash was just passed.  <code>&#92;u</code> must be
+		 * followed by four hex digits, and <code>&#92;x</code> by two.
+		 */
+		private void skipEscape() throws JsonException {
+			if(pos >= chars.length) {
+				return; // unterminated, which skipString reports.
+			}
+			final int digits;
+			switch(chars[pos++]) {
+			case 'u':
+				digits = 4;
+				break;
+			case 'x':
+				digits = 2;
+				break;
+			default:
+				return;
+			}
+			for(int i = 0 ; i < digits ; i ++) {
+				if(pos >= chars.length || Character.digit(chars[pos], 16) == -1) {
+					throw error("Illegal escape");
+				}
+				pos++;
+			}
+		}
+
+		/**
+		 * Move past an unquoted string, which may contain spaces.
+		 * @return Where it ends, without trailing spaces.
+		 */
+		private int skipUnquoted() {
+			final int start = pos;
+			while(pos < chars.length) {
+				char c = chars[pos];
+				if(c < ' ' || ",:]}/\\\"[{;=#".indexOf(c) != -1) {
+					break;
+				}
+				pos++;
+			}
+			int end = pos;
+			while(end > start && chars[end - 1] == ' ') {
+				end--;
+			}
+			return end;
+		}
+
+		private byte unquotedType(int start, int end) {
+			int length = end - start;
+			if(regionEqualsIgnoreCase(start, length, TRUE_STRING)) {
+				return TRUE;
+			} else if(regionEqualsIgnoreCase(start, length, FALSE_STRING)) {
+				return FALSE;
+			} else if(regionEqualsIgnoreCase(start, length, NULL_STRING)) {
+				return NULL;
+			}
+			if(numberToString(new String(chars, start, length)) != null) {
+				return NUMBER;
+			}
+			return STRING;
+		}
+
+		private boolean regionEqualsIgnoreCase(int start, int length, String string) {
+			if(length != string.length()) {
+				return false;
+			}
+			for(int i = 0 ; i < length ; i ++) {
+				if(Character.toLowerCase(chars[start + i]) != string.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 *
+	 * @param chars A <code>char[]</code>.
+	 * @param start Where a string's contents start, after the quote.
+	 * @param end Where they end, before the quote.
+	 * @return The contents with escapes replaced.
+	 */
+	private static String unescape(char[] chars, int start, int end) {
+		StringBuffer buf = new StringBuffer(end - start);
+		for(int i = start ; i < end ; i ++) {
+			char c = chars[i];
+			if(c != '\\' || i + 1 == end) {
+				buf.append(c);
+				continue;
+			}
+			c = chars[++i];
+			switch(c) {
+			case 'b':
+				buf.append('\b');
+				break;
+			case 't':
+				buf.append('\t');
+				break;
+			case 'n':
+				buf.append('\n');
+				break;
+			case 'f':
+				buf.append('\f');
+				break;
+			case 'r':
+				buf.append('\r');
+				break;
+			case 'u': // digits were checked by the tokenizer.
+				buf.append((char) Integer.parseInt(new String(chars, i + 1, 4), 16));
+				i += 4;
+				break;
+			case 'x':
+				buf.append((char) Integer.parseInt(new String(chars, i + 1, 2), 16));
+				i += 2;
+				break;
+			default: // quotes, slashes, and anything else stand for themselves.
+				buf.append(c);
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Convert an unquoted value to a number the way <code>org.json.me</code> does: with a
+	 * leading <code>0</code> it is hex after <code>0x</code> and otherwise octal if it can
+	 * be, then it is tried as an <code>int</code>, a <code>long</code>, and a
+	 * <code>double</code>.
+	 * @param string The unquoted value.
+	 * @return The number written out again, or <code>null</code> if <code>string</code>
+	 * is not a number.
+	 */
+	private static String numberToString(String string) {
+		char first = string.charAt(0);
+		if(!((first >= '0' && first <= '9') || first == '.' || first == '-' || first == '+')) {
+			return null;
+		}
+		if(first == '0') {
+			try {
+				if(string.length() > 2 && (string.charAt(1) == 'x' || string.charAt(1) == 'X')) {
+					return Integer.toString(Integer.parseInt(string.substring(2), 16));
+				} else {
+					return Integer.toString(Integer.parseInt(string, 8));
+				}
+			} catch(NumberFormatException e) { }
+		}
+		try {
+			return Integer.toString(Integer.parseInt(string));
+		} catch(NumberFormatException e) { }
+		try {
+			return Long.toString(Long.parseLong(string));
+		} catch(NumberFormatException e) { }
+		try {
+			return Double.toString(Double.parseDouble(string));
+		} catch(NumberFormatException e) { }
+		return null;
+	}
+
+	/**
+	 *
+	 * @param string A {@link String}.
+	 * @return <code>string</code> as a quoted JSON string.
+	 */
+	private static String quote(String string) {
+		StringBuffer buf = new StringBuffer(string.length() + 2);
+		buf.append('"');
+		for(int i = 0 ; i < string.length() ; i ++) {
+			char c = string.charAt(i);
+			switch(c) {
+			case '"':
+			case '\\':
+				buf.append('\\').append(c);
+				break;
+			case '\b':
+				buf.append("\\b");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\f':
+				buf.append("\\f");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			default:
+				if(c < ' ') {
+					String hex = Integer.toHexString(c);
+					buf.append("\\u");
+					for(int j = hex.length() ; j < 4 ; j ++) {
+						buf.append('0');
+					}
+					buf.append(hex);
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+		return buf.append('"').toString();
+	}
+
+	public boolean isJsonObject(String string) {
+		try {
+			newObject(string);
+			return true;
+		} catch(JsonException e) {
+			return false;
+		}
+	}
+
+	public boolean isJsonArray(String string) {
+		try {
+			newArray(string);
+			return true;
+		} catch(JsonException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Anything after the object is ignored, as in <code>org.json.me</code>.
+	 */
+	public JsonObject newObject(String jsonString) throws JsonException {
+		return new Tokenizer(jsonString.toCharArray()).readObject();
+	}
+
+	/**
+	 * Anything after the array is ignored, as in <code>org.json.me</code>.
+	 */
+	public JsonArray newArray(String jsonString) throws JsonException {
+		return new Tokenizer(jsonString.toCharArray()).readArray();
+	}
+
+	public JsonObject generate(Hashtable map) throws JsonException {
+		StringBuffer buf = new StringBuffer();
+		buf.append('{');
+		Enumeration keys = map.keys();
+		while(keys.hasMoreElements()) {
+			Object key = keys.nextElement();
+			buf.append(quote(String.valueOf(key))).append(':')
+				.append(quote(String.valueOf(map.get(key))));
+			if(keys.hasMoreElements()) {
+				buf.append(',');
+			}
+		}
+		buf.append('}');
+		return newObject(buf.toString());
+	}
+}
@@ -0,0 +1,169 @@
+package net.caustic.regexp;
+
+import java.util.Hashtable;
+
+/**
+ * A {@link RegexpCompiler} that remembers the {@link Pattern}s compiled by another,
+ * so that the same pattern string with the same flags is only compiled once.  The
+ * least recently used {@link Pattern} is forgotten once {@link #capacity} are held.
+ * <p>
+ * {@link Pattern}s are shared between callers, so the wrapped {@link RegexpCompiler}'s
+ * {@link Pattern}s should be safe to use from several threads at once.
+ * @author realest
+ *
+ */
+public class CachingRegexpCompiler implements RegexpCompiler {
+	
+	/**
+	 * The default number of {@link Pattern}s a {@link CachingRegexpCompiler} holds.
+	 */
+	public static final int DEFAULT_CAPACITY = 512;
+	
+	private final RegexpCompiler compiler;
+	private final int capacity;
+	
+	/**
+	 * Keys from {@link #getKey(String, boolean, boolean, boolean)} to {@link Entry}s.
+	 */
+	private final Hashtable entries = new Hashtable();
+	
+	/**
+	 * The head of a circular list of {@link Entry}s.  {@link Entry#next} of the head
+	 * is the most recently used, {@link Entry#prev} the least.
+	 */
+	private final Entry head = new Entry(null, null);
+	
+	private long hits = 0;
+	private long misses = 0;
+	
+	private static final class Entry {
+		private final String key;
+		private final Pattern pattern;
+		private Entry prev = this;
+		private Entry next = this;
+		
+		private Entry(String key, Pattern pattern) {
+			this.key = key;
+			this.pattern = pattern;
+		}
+		
+		private void unlink() {
+			prev.next = next;
+			next.prev = prev;
+		}
+		
+		private void linkAfter(Entry entry) {
+			prev = entry;
+			next = entry.next;
+			entry.next.prev = this;
+			entry.next = this;
+		}
+	}
+	
+	private static String getKey(String patternString, boolean isCaseInsensitive,
+			boolean isMultiline, boolean doesDotMatchNewline) {
+		return (isCaseInsensitive ? "i" : "-")
+				+ (isMultiline ? "m" : "-")
+				+ (doesDotMatchNewline ? "s" : "-")
+				+ patternString;
+	}
+	
+	/**
+	 * Construct a {@link CachingRegexpCompiler} holding up to {@link #DEFAULT_CAPACITY}
+	 * {@link Pattern}s.
+	 * @param compiler The {@link RegexpCompiler} to compile {@link Pattern}s and
+	 * {@link StringTemplate}s with.
+	 */
+	public CachingRegexpCompiler(RegexpCompiler compiler) {
+		this(compiler, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Construct a {@link CachingRegexpCompiler}.
+	 * @param compiler The {@link RegexpCompiler} to compile {@link Pattern}s and
+	 * {@link StringTemplate}s with.
+	 * @param capacity How many {@link Pattern}s to hold.  Must be positive.
+	 */
+	public CachingRegexpCompiler(RegexpCompiler compiler, int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.compiler = compiler;
+		this.capacity = capacity;
+	}
+	
+	public Pattern newPattern(String patternString, boolean isCaseInsensitive,
+			boolean isMultiline, boolean doesDotMatchNewline) {
+		final String key = getKey(patternString, isCaseInsensitive, isMultiline, doesDotMatchNewline);
+		synchronized(entries) {
+			Entry entry = (Entry) entries.get(key);
+			if(entry != null) {
+				hits++;
+				entry.unlink();
+				entry.linkAfter(head);
+				return entry.pattern;
+			}
+			misses++;
+		}
+		
+		// Compile outside the lock.  Two threads missing on the same key will both
+		// compile it, and the second one's Pattern is kept.
+		final Pattern pattern = compiler.newPattern(patternString, isCaseInsensitive, isMultiline, doesDotMatchNewline);
+		synchronized(entries) {
+			Entry old = (Entry) entries.remove(key);
+			if(old != null) {
+				old.unlink();
+			}
+			Entry entry = new Entry(key, pattern);
+			entry.linkAfter(head);
+			entries.put(key, entry);
+			if(entries.size() > capacity) {
+				Entry eldest = head.prev;
+				eldest.unlink();
+				entries.remove(eldest.key);
+			}
+		}
+		return pattern;
+	}
+	
+	public StringTemplate newTemplate(String templateString,
+			String encodedPatternString, String notEncodedPatternString) {
+		return compiler.newTemplate(templateString, encodedPatternString, notEncodedPatternString);
+	}
+	
+	public StringTemplate newTemplate(String templateString) {
+		return compiler.newTemplate(templateString);
+	}
+	
+	/**
+	 * 
+	 * @return How many times {@link #newPattern(String, boolean, boolean, boolean)} returned
+	 * a {@link Pattern} that was already compiled.
+	 */
+	public long getHits() {
+		synchronized(entries) {
+			return hits;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return How many times {@link #newPattern(String, boolean, boolean, boolean)} had to
+	 * compile a {@link Pattern}.
+	 */
+	public long getMisses() {
+		synchronized(entries) {
+			return misses;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return How many {@link Pattern}s are held.
+	 */
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+}
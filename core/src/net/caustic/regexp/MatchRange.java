@@ -0,0 +1,133 @@
+package net.caustic.regexp;
+
+import java.util.Vector;
+
+/**
+ * Collects the matches between a <code>minMatch</code> and <code>maxMatch</code> for
+ * {@link Pattern#match(String, String, int, int)} in one pass over the input.  Matches
+ * are offered in order: {@link #isWanted()} says whether the next one could be in the range,
+ * so that unwanted matches are only counted with {@link #skip()}, never substituted.
+ * {@link #isComplete()} says when no later match could be in the range.
+ * <p>
+ * Only matches that could be returned are kept.  Ranges counted from the end keep at most
+ * <code>-minMatch</code> in a ring.
+ * @see Pattern#match(String, String, int, int)
+ * @author realest
+ *
+ */
+final class MatchRange {
+	private final int minMatch;
+	private final int maxMatch;
+	
+	/**
+	 * How many matches have been offered.
+	 */
+	private int count = 0;
+	
+	/**
+	 * Kept matches when <code>minMatch</code> counts from the start, starting with match
+	 * <code>minMatch</code>; or when only <code>maxMatch</code> does, starting with match
+	 * <code>0</code>.
+	 */
+	private final Vector kept;
+	
+	/**
+	 * Kept matches when both bounds count from the end.  Match <code>i</code> is at
+	 * <code>i % ring.length</code>.
+	 */
+	private final String[] ring;
+	
+	/**
+	 * 
+	 * @param minMatch Which match should be the first returned.  0-indexed, with negative numbers
+	 * counting backwards from the end.
+	 * @param maxMatch Which match should be the last returned.  0-indexed, with negative numbers
+	 * counting backwards from the end.
+	 */
+	MatchRange(int minMatch, int maxMatch) {
+		this.minMatch = minMatch;
+		this.maxMatch = maxMatch;
+		if(minMatch < 0 && maxMatch < 0) {
+			kept = null;
+			ring = new String[-minMatch];
+		} else {
+			kept = new Vector();
+			ring = null;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return <code>true</code> if no later match could be returned, so matching can stop.
+	 */
+	boolean isComplete() {
+		return minMatch >= 0 && maxMatch >= 0 && count > maxMatch;
+	}
+	
+	/**
+	 * 
+	 * @return <code>true</code> if the next match could be returned, and should be
+	 * passed to {@link #add(String)}; <code>false</code> if it should be passed to
+	 * {@link #skip()}.
+	 */
+	boolean isWanted() {
+		if(minMatch >= 0) {
+			return count >= minMatch && (maxMatch < 0 || count <= maxMatch);
+		} else if(maxMatch >= 0) {
+			return count <= maxMatch;
+		} else {
+			return true;
+		}
+	}
+	
+	/**
+	 * Count the next match and keep its substitution.
+	 * @param match The substituted {@link String}.
+	 */
+	void add(String match) {
+		if(ring != null) {
+			ring[count % ring.length] = match;
+		} else {
+			kept.addElement(match);
+		}
+		count++;
+	}
+	
+	/**
+	 * Count the next match without keeping it.
+	 */
+	void skip() {
+		count++;
+	}
+	
+	/**
+	 * 
+	 * @return The kept matches in the range, in order.  Zero-length if there are none.
+	 */
+	String[] getMatches() {
+		int first = minMatch >= 0 ? minMatch : count + minMatch;
+		int last  = maxMatch >= 0 ? maxMatch : count + maxMatch;
+		if(first < 0) {
+			first = 0;
+		}
+		if(last > count - 1) {
+			last = count - 1;
+		}
+		if(last < first) {
+			return new String[] {};
+		}
+		
+		String[] matches = new String[1 + last - first];
+		if(ring != null) {
+			for(int i = 0 ; i < matches.length ; i++) {
+				matches[i] = ring[(first + i) % ring.length];
+			}
+		} else {
+			int base = minMatch >= 0 ? minMatch : 0;
+			for(int i = 0 ; i < matches.length ; i++) {
+				matches[i] = (String) kept.elementAt(first - base + i);
+			}
+		}
+		return matches;
+	}
+}
@@ -32,6 +32,19 @@ public interface Pattern {
 	 */
 	public abstract boolean matches(String input, int matchNumber);
 	
+	/**
+	 * Like {@link #matches(String, int)}, but only returns <code>true</code> if the match at
+	 * <code>matchNumber</code> and every match before it would be the same no matter what
+	 * was appended to <code>input</code>.  Used to stop reading a response once enough of it
+	 * has loaded.
+	 * @param input String input, possibly the beginning of a longer input.
+	 * @param matchNumber The number of matches to look for before returning <code>true</code>.  Must
+	 * be 0 or positive.
+	 * @return {@link boolean} Whether a settled match was found at the specified <code>matchNumber</code>.
+	 * Implementations that cannot tell whether a match is settled should return <code>false</code>.
+	 */
+	public abstract boolean hasSettledMatch(String input, int matchNumber);
+	
 	/**
 	 * Returns an array of Strings of the substitution, one for each match.  Returns a zero-length
 	 * array if there were no matches.
@@ -27,6 +27,14 @@ public abstract class StringTemplate {
 	 * @return a {@link String} representing this {@link StringTemplate}.
 	 */
 	protected abstract String asString();
+	
+	/**
+	 * 
+	 * @return <code>true</code> if this {@link StringTemplate} has tags, so that what
+	 * {@link #sub(Database, Scope)} returns depends upon the {@link Database}, <code>false</code>
+	 * if it always returns the same {@link String}.
+	 */
+	public abstract boolean hasTags();
 
 	public final String toString() {
 		return asString();
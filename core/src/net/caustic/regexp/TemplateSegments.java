@@ -0,0 +1,153 @@
+package net.caustic.regexp;
+
+import java.util.Vector;
+
+import net.caustic.database.Database;
+import net.caustic.database.DatabaseException;
+import net.caustic.scope.Scope;
+import net.caustic.template.StringSubstitution;
+import net.caustic.util.Encoder;
+
+/**
+ * A {@link StringTemplate}'s template string, split once into literal text and tags.
+ * {@link StringTemplate} implementations find the tags with their own regular expressions,
+ * {@link #addLiteral(String)} and {@link #addTag(String, boolean)} them in order, then
+ * {@link #sub(Database, Scope)} without looking at the template string again.
+ * @author realest
+ *
+ */
+final class TemplateSegments {
+	private final Encoder encoder;
+	
+	/**
+	 * {@link String}s of literal text.  <code>literals[i]</code> comes before <code>tags[i]</code>,
+	 * and the last comes after every tag.  Always one longer than {@link #tags}.
+	 */
+	private String[] literals = new String[] { "" };
+	
+	/**
+	 * Indices into {@link #tagNames} for each tag, in order.
+	 */
+	private int[] tags = new int[] { };
+	
+	/**
+	 * Whether each tag's value should be encoded by {@link #encoder}.
+	 */
+	private boolean[] encoded = new boolean[] { };
+	
+	/**
+	 * Each distinct tag name, in order of its first appearance.
+	 */
+	private final Vector tagNames = new Vector();
+	
+	/**
+	 * The combined length of {@link #literals}.
+	 */
+	private int literalLength = 0;
+	
+	/**
+	 * @param encoder The {@link Encoder} to use for encoded tags.
+	 */
+	TemplateSegments(Encoder encoder) {
+		this.encoder = encoder;
+	}
+	
+	/**
+	 * Add literal text after the last tag.
+	 * @param literal The {@link String} text.
+	 */
+	void addLiteral(String literal) {
+		literals[literals.length - 1] += literal;
+		literalLength += literal.length();
+	}
+	
+	/**
+	 * Add a tag after the last literal text.
+	 * @param tagName The {@link String} key of the value to substitute.
+	 * @param isEncoded Whether the value should be encoded.
+	 */
+	void addTag(String tagName, boolean isEncoded) {
+		int index = tagNames.indexOf(tagName);
+		if(index == -1) {
+			index = tagNames.size();
+			tagNames.addElement(tagName);
+		}
+		
+		int[] newTags = new int[tags.length + 1];
+		System.arraycopy(tags, 0, newTags, 0, tags.length);
+		newTags[tags.length] = index;
+		tags = newTags;
+		
+		boolean[] newEncoded = new boolean[encoded.length + 1];
+		System.arraycopy(encoded, 0, newEncoded, 0, encoded.length);
+		newEncoded[encoded.length] = isEncoded;
+		encoded = newEncoded;
+		
+		String[] newLiterals = new String[literals.length + 1];
+		System.arraycopy(literals, 0, newLiterals, 0, literals.length);
+		newLiterals[literals.length] = "";
+		literals = newLiterals;
+	}
+	
+	/**
+	 * @return Whether any tags were added.
+	 */
+	boolean hasTags() {
+		return tags.length > 0;
+	}
+	
+	/**
+	 * Substitute values from <code>db</code>.  Each distinct tag is only looked up once,
+	 * and several are looked up together with {@link Database#getAll(Scope, String[])}.
+	 * @param db The {@link Database} to use when substituting.
+	 * @param scope The {@link Scope} within <code>db</code>.
+	 * @return A {@link StringSubstitution} with the results of the substitution.
+	 * Missing tags are listed once each, in the order they first appear.
+	 * @throws DatabaseException if <code>db</code> could not be read from.
+	 */
+	StringSubstitution sub(Database db, Scope scope) throws DatabaseException {
+		if(tags.length == 0) {
+			return StringSubstitution.success(literals[0]);
+		}
+		
+		final String[] values;
+		if(tagNames.size() == 1) {
+			values = new String[] { db.get(scope, (String) tagNames.elementAt(0)) };
+		} else {
+			String[] tagNamesAry = new String[tagNames.size()];
+			tagNames.copyInto(tagNamesAry);
+			values = db.getAll(scope, tagNamesAry);
+		}
+		
+		Vector missingTags = null;
+		for(int i = 0 ; i < values.length ; i++) {
+			if(values[i] == null) {
+				if(missingTags == null) {
+					missingTags = new Vector();
+				}
+				missingTags.addElement(tagNames.elementAt(i));
+			}
+		}
+		
+		if(missingTags != null) {
+			String[] missingTagsAry = new String[missingTags.size()];
+			missingTags.copyInto(missingTagsAry);
+			return StringSubstitution.missingTags(missingTagsAry);
+		}
+		
+		final String[] substitutions = new String[tags.length];
+		int length = literalLength;
+		for(int i = 0 ; i < tags.length ; i++) {
+			String value = values[tags[i]];
+			substitutions[i] = encoded[i] ? encoder.encode(value) : value;
+			length += substitutions[i].length();
+		}
+		
+		StringBuffer buf = new StringBuffer(length);
+		for(int i = 0 ; i < tags.length ; i++) {
+			buf.append(literals[i]).append(substitutions[i]);
+		}
+		buf.append(literals[tags.length]);
+		return StringSubstitution.success(buf.toString());
+	}
+}
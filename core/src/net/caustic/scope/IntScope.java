@@ -6,7 +6,7 @@ package net.caustic.scope;
  * @author talos
  *
  */
-final class IntScope implements Scope {
+public final class IntScope implements Scope {
 
 	private final int id;
 	private final String name;
@@ -15,6 +15,13 @@ final class IntScope implements Scope {
 		this.name = name;
 	}
 
+	/**
+	 * @return The <code>int</code> id of this {@link IntScope}.
+	 */
+	public int getId() {
+		return id;
+	}
+	
 	public String getName() {
 		return name;
 	}
@@ -33,6 +40,8 @@ final class IntScope implements Scope {
 	public boolean equals(Object obj) {
 		if(obj == this) {
 			return true;
+		} else if(obj instanceof IntScope) {
+			return this.id == ((IntScope) obj).id;
 		} else if(obj instanceof Scope) {
 			Scope that = (Scope) obj;
 			return this.asString().equals(that.asString());
@@ -33,6 +33,13 @@ public class StaticStringTemplate extends StringTemplate {
 		return StringSubstitution.success(staticValue);
 	}
 	
+	/**
+	 * A {@link StaticStringTemplate} never has tags.
+	 */
+	public boolean hasTags() {
+		return false;
+	}
+	
 	/**
 	 * Returns the static value this {@link StaticStringTemplate} was
 	 * initialized with.
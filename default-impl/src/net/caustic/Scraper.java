@@ -1,70 +1,224 @@
 package net.caustic;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.caustic.database.Database;
 import net.caustic.database.InMemoryDatabase;
 import net.caustic.deserializer.DefaultJSONDeserializer;
 import net.caustic.http.DefaultHttpBrowser;
+import net.caustic.http.HttpBrowser;
 
 /**
  * An implementation of {@link AbstractScraper} using {@link DefaultHttpBrowser},
  * {@link AsyncExecutor} with a specified number of threads, and
  * {@link DefaultJSONDeserializer} for deserialization.
+ * Waiting {@link Executable}s are run in the order of the scraper's {@link Priority}.
+ * {@link #withVirtualThreads(Database)} instead runs every {@link Executable} on
+ * its own thread.
  * @author realest
  *
  */
 public class Scraper extends AbstractScraper {
 	public static final int DEFAULT_THREADS = 10;
+	
+	/**
+	 * How many milliseconds {@link #join()} waits between checks on whether the
+	 * executor was shut down by a crash.
+	 */
+	private static final int TERMINATION_CHECK_INTERVAL = 1000;
+	
+	/**
+	 * The first Java release whose virtual threads give up their carrier while they
+	 * wait for or on a monitor.  Before it, the <code>synchronized</code> waits that
+	 * limit requests to a host could take every carrier and stall the scraper.
+	 * @see #withVirtualThreads(Database)
+	 */
+	public static final int VIRTUAL_THREADS_MIN_JAVA_VERSION = 24;
 
 	private final ExecutorService executor;
 	
+	/**
+	 * Breaks ties between equal priorities, so they run in the order submitted.
+	 */
+	private final AtomicLong submitted = new AtomicLong();
+	
+	/**
+	 * An {@link Executable} waiting in a {@link PriorityBlockingQueue}.
+	 */
+	private static final class Prioritized implements Runnable, Comparable<Prioritized> {
+		private final Executable executable;
+		private final int priority;
+		private final long sequence;
+		
+		private Prioritized(Executable executable, int priority, long sequence) {
+			this.executable = executable;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+		
+		public void run() {
+			executable.run();
+		}
+		
+		public int compareTo(Prioritized other) {
+			if(priority != other.priority) {
+				return priority > other.priority ? -1 : 1;
+			}
+			return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+		}
+	}
+	
 	public Scraper() {
 		super(new InMemoryDatabase(), new DefaultHttpBrowser(),
 				new DefaultJSONDeserializer());
 		
-		executor = Executors.newFixedThreadPool(DEFAULT_THREADS);
+		executor = newPriorityThreadPool(DEFAULT_THREADS);
 	}
 	
 	public Scraper(int nThreads) {
 		super(new InMemoryDatabase(), new DefaultHttpBrowser(),
 				new DefaultJSONDeserializer());
-		executor = Executors.newFixedThreadPool(nThreads);
+		executor = newPriorityThreadPool(nThreads);
 	}
 	
 	public Scraper(Database db) {
 		super(db, new DefaultHttpBrowser(),	
 				new DefaultJSONDeserializer());
-		executor = Executors.newFixedThreadPool(DEFAULT_THREADS);
+		executor = newPriorityThreadPool(DEFAULT_THREADS);
 	}
 	
 	public Scraper(Database db, int nThreads) {
 		super(db, new DefaultHttpBrowser(),
 				new DefaultJSONDeserializer());
-		executor = Executors.newFixedThreadPool(nThreads);
+		executor = newPriorityThreadPool(nThreads);
+	}
+	
+	public Scraper(Database db, HttpBrowser browser, int nThreads) {
+		this(db, browser, newPriorityThreadPool(nThreads));
+	}
+	
+	private Scraper(Database db, HttpBrowser browser, ExecutorService executor) {
+		super(db, browser, new DefaultJSONDeserializer());
+		this.executor = executor;
+	}
+	
+	/**
+	 * Obtain a {@link Scraper} that starts a virtual thread for each {@link Executable},
+	 * so that the number of loads in flight is not bounded by a thread pool.  Instead, the
+	 * number of simultaneous requests to each host is limited to {@link #DEFAULT_THREADS}.
+	 * Requires Java {@link #VIRTUAL_THREADS_MIN_JAVA_VERSION} or later.
+	 * @param db The {@link Database} to use.
+	 * @return A {@link Scraper}.
+	 * @throws UnsupportedOperationException if this JVM is older than
+	 * {@link #VIRTUAL_THREADS_MIN_JAVA_VERSION}.
+	 * @see #supportsVirtualThreads()
+	 */
+	public static Scraper withVirtualThreads(Database db) {
+		return withVirtualThreads(db, new DefaultHttpBrowser());
+	}
+	
+	/**
+	 * Obtain a {@link Scraper} that starts a virtual thread for each {@link Executable}.
+	 * @param db The {@link Database} to use.
+	 * @param browser The {@link HttpBrowser} to use.  Its limit on simultaneous requests
+	 * to each host is set to {@link #DEFAULT_THREADS}.
+	 * @return A {@link Scraper}.
+	 * @throws UnsupportedOperationException if this JVM is older than
+	 * {@link #VIRTUAL_THREADS_MIN_JAVA_VERSION}.
+	 * @see #withVirtualThreads(Database)
+	 */
+	public static Scraper withVirtualThreads(Database db, HttpBrowser browser) {
+		ExecutorService executor = newThreadPerTaskExecutor();
+		browser.setMaxHostRequests(DEFAULT_THREADS);
+		return new Scraper(db, browser, executor);
+	}
+	
+	/**
+	 * 
+	 * @return <code>true</code> if this JVM can run {@link #withVirtualThreads(Database)},
+	 * <code>false</code> otherwise.
+	 */
+	public static boolean supportsVirtualThreads() {
+		return getJavaVersion() >= VIRTUAL_THREADS_MIN_JAVA_VERSION;
+	}
+	
+	/**
+	 * 
+	 * @return The feature release of this JVM, such as <code>17</code>, or <code>1</code>
+	 * for releases numbered <code>1.x</code>.
+	 */
+	private static int getJavaVersion() {
+		String version = System.getProperty("java.specification.version", "1");
+		int end = 0;
+		while(end < version.length() && Character.isDigit(version.charAt(end))) {
+			end++;
+		}
+		try {
+			return Integer.parseInt(version.substring(0, end));
+		} catch(NumberFormatException e) {
+			return 1;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param nThreads The number of threads to use.
+	 * @return A fixed-size {@link ExecutorService} whose queue runs higher priorities first.
+	 */
+	private static ExecutorService newPriorityThreadPool(int nThreads) {
+		return new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<Runnable>());
+	}
+	
+	/**
+	 * 
+	 * @return An {@link ExecutorService} that runs each task on a new virtual thread.
+	 * @throws UnsupportedOperationException if this JVM does not {@link #supportsVirtualThreads()}.
+	 */
+	private static ExecutorService newThreadPerTaskExecutor() {
+		if(!supportsVirtualThreads()) {
+			throw new UnsupportedOperationException("Virtual threads require Java " +
+					VIRTUAL_THREADS_MIN_JAVA_VERSION + " or later, this is Java " + getJavaVersion() + ".");
+		}
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch(NoSuchMethodException e) {
+			throw new UnsupportedOperationException("Virtual threads are not available: " + e.getMessage());
+		} catch(IllegalAccessException e) {
+			throw new UnsupportedOperationException("Virtual threads are not available: " + e.getMessage());
+		} catch(InvocationTargetException e) {
+			throw new UnsupportedOperationException("Virtual threads are not available: " + e.getMessage());
+		}
 	}
 	
 	public void submit(Executable executable) {
-		executor.submit(executable);
+		executor.execute(new Prioritized(executable, getPriority(executable), submitted.getAndIncrement()));
 	}
 	
 	/**
 	 * Block the calling thread until {@link Scraper} is dormant, then shut
-	 * down {@link Scraper}.
+	 * down {@link Scraper}.  The thread is woken as soon as the last scrape
+	 * finishes.
 	 */
 	public void join() throws InterruptedException {
-		while(!isDormant()) {
-			if(executor.isTerminated()) { // break if artificial termination
-				break;
-			}
-			
-			try {
-				Thread.sleep(100);
-			} catch(InterruptedException e) {
-				interrupt();
+		try {
+			// the executor is only checked between waits, in case it was shut down
+			// by a crash.
+			while(!waitUntilDormant(TERMINATION_CHECK_INTERVAL)) {
+				if(executor.isTerminated()) { // break if artificial termination
+					break;
+				}
 			}
+		} catch(InterruptedException e) {
+			interrupt();
 		}
 		executor.shutdown();
 		//executor.awaitTermination(60, TimeUnit.MINUTES);
@@ -73,5 +227,6 @@ public class Scraper extends AbstractScraper {
 	
 	public void interrupt() {
 		executor.shutdownNow();
+		markInterrupted();
 	}
 }
@@ -1,5 +1,6 @@
 package net.caustic.database;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +21,11 @@ public final class MultiTableDatabase extends Database {
 
 	private final Connection connection;
 	
+	/**
+	 * Serves reads for recently used scopes without going to {@link #connection}.
+	 */
+	private final ScopeCache cache = new ScopeCache();
+	
 	/**
 	 * String to prepend before table names to prevent collision
 	 * with {@link #DEFAULT_TABLE}, and to prepend before column
@@ -79,6 +85,7 @@ public final class MultiTableDatabase extends Database {
 	public MultiTableDatabase(Connection connection) {
 		this.connection = connection;
 		addListener(new MultiTableDatabaseListener(this));
+		addListener(cache);
 	}
 	
 	/**
@@ -91,6 +98,10 @@ public final class MultiTableDatabase extends Database {
 	 */
 	@Override
 	public String get(Scope scope, String tagName) throws DatabaseException {
+		String[] cached = new String[1];
+		if(cache.get(scope, tagName, cached)) {
+			return cached[0];
+		}
 		synchronized(connection) {
 			open();
 			
@@ -105,7 +116,7 @@ public final class MultiTableDatabase extends Database {
 						// there should be only one row per scope in results tables.
 						List<Map<String, String>> rows =
 								resultTable.select(scope, EMPTY_MAP, new String[] { columnName });
-						if(rows.size() == 1) {
+						if(rows.size() == 1 && rows.get(0).get(columnName) != null) {
 							return rows.get(0).get(columnName);
 						} else if(rows.size() > 1) {
 							throw new DatabaseReadException("Should not have stored multiple values for a scope ID");
@@ -139,6 +150,95 @@ public final class MultiTableDatabase extends Database {
 		}
 	}
 	
+	/**
+	 * Retrieve several values from a scope, reading each scope's link and result
+	 * row once while walking up through its sources.
+	 * @param scope The {@link Scope} scope of the values to retrieve.
+	 * @param tagNames The {@link String} names of the values.
+	 * @return An array of {@link String} values, with <code>null</code> for those
+	 * that do not exist in this <code>scope</code>.
+	 * @throws DatabaseException if the values could not be read.
+	 */
+	@Override
+	public String[] getAll(Scope scope, String[] tagNames) throws DatabaseException {
+		String[] cached = new String[tagNames.length];
+		if(cache.getAll(scope, tagNames, cached)) {
+			return cached;
+		}
+		String[] values = new String[tagNames.length];
+		boolean[] found = new boolean[tagNames.length];
+		int remaining = tagNames.length;
+		
+		String[] columnNames = new String[tagNames.length];
+		for(int i = 0 ; i < tagNames.length ; i ++) {
+			columnNames[i] = cleanColumnName(tagNames[i]);
+		}
+		
+		synchronized(connection) {
+			open();
+			
+			while(remaining > 0) {
+				Map<String, String> link = getLink(scope);
+				String resultTableName = link.get(RESULT_TABLE);
+				
+				try {
+					Table resultTable = connection.getTable(resultTableName);
+					
+					// if there is a result table, select every remaining column it has at once.
+					if(resultTable != null) {
+						List<String> selectColumns = new ArrayList<String>();
+						for(int i = 0 ; i < columnNames.length ; i ++) {
+							if(!found[i] && resultTable.hasColumn(columnNames[i])
+									&& !selectColumns.contains(columnNames[i])) {
+								selectColumns.add(columnNames[i]);
+							}
+						}
+						if(selectColumns.size() > 0) {
+							// there should be only one row per scope in results tables.
+							List<Map<String, String>> rows = resultTable.select(scope, EMPTY_MAP,
+									selectColumns.toArray(new String[selectColumns.size()]));
+							if(rows.size() > 1) {
+								throw new DatabaseReadException("Should not have stored multiple values for a scope ID");
+							} else if(rows.size() == 1) {
+								for(int i = 0 ; i < columnNames.length ; i ++) {
+									if(!found[i] && rows.get(0).get(columnNames[i]) != null) {
+										values[i] = rows.get(0).get(columnNames[i]);
+										found[i] = true;
+										remaining--;
+									}
+								}
+							}
+						}
+					}
+				} catch(ConnectionException e) {
+					throw new DatabaseReadException("Could not get result table");
+				}
+				
+				// if the result table shares a name with the tag, should check the linking value.
+				String linkValue = link.get(VALUE);
+				if(linkValue != null) {
+					for(int i = 0 ; i < columnNames.length ; i ++) {
+						if(!found[i] && resultTableName.equals(columnNames[i])) {
+							values[i] = linkValue;
+							found[i] = true;
+							remaining--;
+						}
+					}
+				}
+				
+				// not in the linking value, check the source table.
+				String sourceScope = link.get(SOURCE_SCOPE);
+				if(sourceScope != null) {
+					scope = new SerializedScope(sourceScope, resultTableName);
+				} else {
+					// we're already at a default scope, the remaining columns don't exist.
+					break;
+				}
+			}
+			return values;
+		}
+	}
+	
 	protected void insert(Scope scope, String key, String value) throws DatabaseException {
 		synchronized(connection) {
 			// if the result table for this scope doesn't exist yet, create it.
@@ -162,11 +262,7 @@ public final class MultiTableDatabase extends Database {
 					resultTable.addColumn(columnName);
 
 				}
-				if(resultTable.select(scope, MultiTableDatabase.EMPTY_MAP, new String[] {} ).size() == 1) {
-					resultTable.update(scope, MultiTableDatabase.EMPTY_MAP, map);						
-				} else {
-					resultTable.insert(scope, map);
-				}
+				resultTable.upsert(scope, map);
 			}
 		}
 	}
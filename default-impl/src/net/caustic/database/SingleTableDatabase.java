@@ -25,12 +25,22 @@ public class SingleTableDatabase extends Database {
 	private final Connection connection;
 	private Table table;
 	
+	/**
+	 * Serves reads for recently used scopes without going to {@link #connection}.
+	 */
+	private final ScopeCache cache = new ScopeCache();
+	
 	public SingleTableDatabase(Connection connection) {
 		this.connection = connection;
 		addListener(new SingleTableDatabaseListener(this));
+		addListener(cache);
 	}
 
 	public String get(Scope scope, String name) throws DatabaseException {
+		String[] cached = new String[1];
+		if(cache.get(scope, name, cached)) {
+			return cached[0];
+		}
 		synchronized(connection) {
 			open();
 			Map<String, String> whereMap = Collections.emptyMap();
@@ -45,7 +55,7 @@ public class SingleTableDatabase extends Database {
 				// assume we find nothing
 				scope = null;
 				for(Map<String, String> row : rows) {
-					if(row.get(NAME_COLUMN_NAME).equals(name)) {
+					if(row.get(NAME_COLUMN_NAME).equals(name) && row.get(VALUE_COLUMN_NAME) != null) {
 						return row.get(VALUE_COLUMN_NAME);
 					} else if(row.get(SOURCE_COLUMN_NAME) != null) {
 						String sourceScopeString = row.get(SOURCE_COLUMN_NAME);
@@ -61,6 +71,50 @@ public class SingleTableDatabase extends Database {
 		}
 	}
 	
+	/**
+	 * Select each scope's rows once, walking up through the sources until
+	 * every name is found.
+	 */
+	@Override
+	public String[] getAll(Scope scope, String[] names) throws DatabaseException {
+		String[] cached = new String[names.length];
+		if(cache.getAll(scope, names, cached)) {
+			return cached;
+		}
+		String[] values = new String[names.length];
+		boolean[] found = new boolean[names.length];
+		int remaining = names.length;
+		synchronized(connection) {
+			open();
+			Map<String, String> whereMap = Collections.emptyMap();
+			
+			while(scope != null && remaining > 0) {
+				// return all name-values in this scope
+				List<Map<String, String>> rows = table.select(scope, whereMap, 
+						new String[] { SOURCE_COLUMN_NAME, NAME_COLUMN_NAME, VALUE_COLUMN_NAME } );
+				
+				// assume we find nothing
+				scope = null;
+				for(Map<String, String> row : rows) {
+					String rowName = row.get(NAME_COLUMN_NAME);
+					for(int i = 0 ; i < names.length ; i ++) {
+						if(!found[i] && rowName.equals(names[i]) && row.get(VALUE_COLUMN_NAME) != null) {
+							values[i] = row.get(VALUE_COLUMN_NAME);
+							found[i] = true;
+							remaining--;
+						}
+					}
+					String sourceScopeString = row.get(SOURCE_COLUMN_NAME);
+					// if one row has a none-null source, use it.
+					if(sourceScopeString != null) {
+						scope = new SerializedScope(sourceScopeString, rowName);
+					}
+				}
+			}
+			return values;
+		}
+	}
+	
 	protected void insert(Scope source, Scope scope, String key, String value) 
 				throws DatabaseException {
 		synchronized(connection) {
@@ -63,6 +63,15 @@ public interface Table {
 	 * @throws TableManipulationException if the row could not be inserted.
 	 */
 	public abstract void insert(Scope scope, Map<String, String> map) throws TableManipulationException;
+	
+	/**
+	 * Insert a new row into the {@link Table}, or update the row of <code>scope</code>
+	 * with <code>map</code> if there is one already.
+	 * @param scope the {@link Scope} of the row to insert or update.
+	 * @param map A {@link Map} mapping columns names to values to insert or update.
+	 * @throws TableManipulationException if the row could not be inserted or updated.
+	 */
+	public abstract void upsert(Scope scope, Map<String, String> map) throws TableManipulationException;
 
 	
 }
\ No newline at end of file
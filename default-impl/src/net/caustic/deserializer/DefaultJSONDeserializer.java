@@ -1,14 +1,14 @@
 package net.caustic.deserializer;
 
 import net.caustic.deserializer.JSONDeserializer;
-import net.caustic.json.JsonMEParser;
+import net.caustic.json.SlicingJsonParser;
 import net.caustic.regexp.DefaultRegexpCompiler;
 import net.caustic.uri.DefaultURILoader;
 import net.caustic.uri.JavaNetUriResolver;
 
 /**
  * A default implementation of {@link JSONDeserializer}, using
- * {@link JsonMEParser}, {@link DefaultRegexpCompiler}, {@link JavaNetUriResolver},
+ * {@link SlicingJsonParser}, {@link DefaultRegexpCompiler}, {@link JavaNetUriResolver},
  * and {@link DefaultURILoader}.
  * @author realest
  *
@@ -17,7 +17,7 @@ public class DefaultJSONDeserializer extends JSONDeserializer {
 	
 	public DefaultJSONDeserializer() {
 		super(
-				new JsonMEParser(),
+				new SlicingJsonParser(),
 				new DefaultRegexpCompiler(),
 				new JavaNetUriResolver(),
 				new DefaultURILoader());
@@ -1,5 +1,7 @@
 package net.caustic.http;
 
+import java.lang.reflect.InvocationTargetException;
+
 import net.caustic.http.HttpBrowser;
 import net.caustic.http.JavaNetCookieManager;
 import net.caustic.http.JavaNetHttpRequester;
@@ -13,9 +15,60 @@ import net.caustic.http.RateLimitManager;
  */
 public class DefaultHttpBrowser extends HttpBrowser {
 
+	/**
+	 * The {@link HttpRequester} using {@link java.net.http.HttpClient}.  It is loaded by
+	 * name, because it requires Java 11 and is left out of some builds, like Android's.
+	 */
+	private static final String HTTP_CLIENT_REQUESTER = "net.caustic.http.HttpClientRequester";
+	
 	public DefaultHttpBrowser() {
-		super(new JavaNetHttpRequester(),
+		this(false);
+	}
+	
+	/**
+	 * @param useHttpClient Whether to make requests with a pooling, HTTP/2-capable
+	 * {@link java.net.http.HttpClient} instead of a new {@link java.net.HttpURLConnection}
+	 * for each request.
+	 * @throws UnsupportedOperationException if <code>useHttpClient</code> is <code>true</code>
+	 * and the HttpClient requester is not on the classpath or cannot run on this JVM.
+	 */
+	public DefaultHttpBrowser(boolean useHttpClient) {
+		super(newRequester(useHttpClient),
 				new RateLimitManager(new JavaNetHttpUtils()),
 				new BasicCookieManager());
 	}
+	
+	private static HttpRequester newRequester(boolean useHttpClient) {
+		if(useHttpClient) {
+			return newHttpClientRequester();
+		}
+		return new JavaNetHttpRequester();
+	}
+	
+	/**
+	 * 
+	 * @return A new {@link #HTTP_CLIENT_REQUESTER}.
+	 * @throws UnsupportedOperationException if it is not on the classpath or cannot run
+	 * on this JVM.
+	 */
+	private static HttpRequester newHttpClientRequester() {
+		try {
+			return (HttpRequester) Class.forName(HTTP_CLIENT_REQUESTER).getDeclaredConstructor().newInstance();
+		} catch(ClassNotFoundException e) {
+			throw new UnsupportedOperationException("The HttpClient requester is not on the classpath.");
+		} catch(LinkageError e) { // running on a JVM older than Java 11.
+			throw new UnsupportedOperationException("The HttpClient requester could not be loaded: " + e.getMessage());
+		} catch(InvocationTargetException e) {
+			if(e.getCause() instanceof RuntimeException) { // such as a JVM too old for it.
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Could not create the HttpClient requester: " + e.getCause());
+		} catch(NoSuchMethodException e) {
+			throw new IllegalStateException("Could not create the HttpClient requester: " + e.getMessage());
+		} catch(InstantiationException e) {
+			throw new IllegalStateException("Could not create the HttpClient requester: " + e.getMessage());
+		} catch(IllegalAccessException e) {
+			throw new IllegalStateException("Could not create the HttpClient requester: " + e.getMessage());
+		}
+	}
 }
@@ -8,7 +8,8 @@ import net.caustic.util.DefaultEncoder;
 
 /**
  * A default {@link RegexpCompiler}, using {@link JavaUtilRegexpCompiler}
- * and UTF-8 encoding.
+ * and UTF-8 encoding.  Compiled {@link Pattern}s are cached by a
+ * {@link CachingRegexpCompiler}.
  * @author realest
  *
  */
@@ -16,7 +17,7 @@ public class DefaultRegexpCompiler implements RegexpCompiler {
 
 	private final RegexpCompiler c;
 	public DefaultRegexpCompiler() {
-		c = new JavaUtilRegexpCompiler(new DefaultEncoder());
+		c = new CachingRegexpCompiler(new JavaUtilRegexpCompiler(new DefaultEncoder()));
 	}
 	
 	@Override
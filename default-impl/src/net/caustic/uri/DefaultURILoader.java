@@ -2,16 +2,22 @@ package net.caustic.uri;
 
 import net.caustic.file.JavaIOFileLoader;
 import net.caustic.http.DefaultHttpBrowser;
-import net.caustic.uri.JavaNetURILoader;
+import net.caustic.uri.CachingURILoader;
 import net.caustic.uri.URILoader;
 import net.caustic.uri.URILoaderException;
 
+/**
+ * A default implementation of {@link URILoader}, using a {@link CachingURILoader}
+ * with {@link DefaultHttpBrowser} and {@link JavaIOFileLoader}.
+ * @author realest
+ *
+ */
 public class DefaultURILoader implements URILoader {
 
 	private final URILoader loader;
 	
 	public DefaultURILoader() {
-		this.loader = new JavaNetURILoader(
+		this.loader = new CachingURILoader(
 				new DefaultHttpBrowser(),
 				new JavaIOFileLoader());
 	}
@@ -0,0 +1,109 @@
+package net.caustic.client;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Hashtable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.caustic.LogScraperListener;
+import net.caustic.ScrapeFuture;
+import net.caustic.Scraper;
+import net.caustic.database.InMemoryDatabase;
+import net.caustic.http.DefaultHttpBrowser;
+import net.caustic.http.HttpBrowser;
+import net.caustic.log.MultiLog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test that {@link Scraper} gets through more loads per second with more threads,
+ * against a local HTTP server that takes a while to respond.
+ * @author realest
+ *
+ */
+public class ScraperThroughputTest {
+
+	private static final int RESPONSE_DELAY_MILLISECONDS = 50;
+	private static final int LOADS = 40;
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String instruction;
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(RESPONSE_DELAY_MILLISECONDS);
+				} catch(InterruptedException e) { }
+				byte[] body = exchange.getRequestURI().getPath().getBytes();
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+		instruction = "{\"load\":\"http://127.0.0.1:" + server.getAddress().getPort() + "/{{n}}\"," +
+				"\"then\":{\"find\":\"\\\\d+\",\"name\":\"n\"}}";
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		serverExecutor.shutdown();
+	}
+
+	/**
+	 *
+	 * @param nThreads How many threads the {@link Scraper} should use.
+	 * @return How many milliseconds it took to scrape {@link #LOADS} different URLs.
+	 */
+	private long timeScrapes(int nThreads) throws Exception {
+		HttpBrowser browser = new DefaultHttpBrowser();
+		browser.setMinRequestWait(0);
+		browser.setRateLimit(Integer.MAX_VALUE / 1024);
+		Scraper scraper = new Scraper(new InMemoryDatabase(), browser, nThreads);
+
+		ScrapeFuture[] futures = new ScrapeFuture[LOADS];
+		long start = System.currentTimeMillis();
+		for(int i = 0 ; i < LOADS ; i ++) {
+			Hashtable<String, String> input = new Hashtable<String, String>();
+			input.put("n", Integer.toString(i));
+			futures[i] = scraper.scrapeAll(instruction, input, new LogScraperListener(new MultiLog()));
+		}
+		scraper.join();
+		long elapsed = System.currentTimeMillis() - start;
+
+		for(int i = 0 ; i < LOADS ; i ++) {
+			assertTrue(futures[i].isDone());
+			assertEquals(0, futures[i].getStuck());
+			assertEquals(0, futures[i].getFailed());
+		}
+		return elapsed;
+	}
+
+	@Test
+	public void testThroughputGrowsWithThreads() throws Exception {
+		timeScrapes(8); // warm up
+		long oneThread = timeScrapes(1);
+		long eightThreads = timeScrapes(8);
+
+		assertTrue("One thread took " + oneThread + "ms, eight threads took " + eightThreads + "ms.",
+				eightThreads * 3 < oneThread);
+	}
+}
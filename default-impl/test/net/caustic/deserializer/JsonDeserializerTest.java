@@ -413,4 +413,55 @@ public class JsonDeserializerTest {
 		Load load = (Load) deserializer.deserialize(obj.toString(), db, scope, userDir).getInstruction();
 		load.execute(null, db, scope, browser);
 	}
+	
+	@Test
+	public void testDeserializeSameJsonTwiceReturnsSameInstruction() throws Exception {
+		JSONObject find = new JSONObject().put(FIND, "^{{foo}}$");
+		
+		Instruction first = deserializer.deserialize(find.toString(), db, scope, userDir).getInstruction();
+		Instruction second = deserializer.deserialize(find.toString(), db, scope, userDir).getInstruction();
+		assertSame(first, second);
+	}
+	
+	@Test
+	public void testReferenceWithoutTagsIsLoadedOnce() throws Exception {
+		new Expectations() {{
+			loader.load("/uri"); result = new JSONObject().put(FIND, "^foo$").toString(); times = 1;
+		}};
+		
+		Instruction first = deserializer.deserialize("\"/uri\"", db, scope, userDir).getInstruction();
+		Instruction second = deserializer.deserialize("\"/uri\"", db, scope, userDir).getInstruction();
+		assertSame(first, second);
+	}
+	
+	@Test
+	public void testReferenceWithTagsIsLoadedEachTime() throws Exception {
+		new Expectations() {{
+			loader.load("/foo"); result = new JSONObject().put(FIND, "^foo$").toString();
+			loader.load("/bar"); result = new JSONObject().put(FIND, "^bar$").toString();
+		}};
+		
+		db.put(scope, "path", "foo");
+		Instruction foo = deserializer.deserialize("\"/{{path}}\"", db, scope, userDir).getInstruction();
+		db.put(scope, "path", "bar");
+		Instruction bar = deserializer.deserialize("\"/{{path}}\"", db, scope, userDir).getInstruction();
+		assertEquals("^foo$", foo.toString());
+		assertEquals("^bar$", bar.toString());
+	}
+	
+	@Test
+	public void testReferenceToJsonExtendingTagsIsLoadedEachTime() throws Exception {
+		new NonStrictExpectations() {{
+			loader.load("/uri"); result = new JSONObject().put(EXTENDS, "/{{path}}").toString();
+			loader.load("/foo"); result = new JSONObject().put(FIND, "^foo$").toString();
+			loader.load("/bar"); result = new JSONObject().put(FIND, "^bar$").toString();
+		}};
+		
+		db.put(scope, "path", "foo");
+		Instruction foo = deserializer.deserialize("\"/uri\"", db, scope, userDir).getInstruction();
+		db.put(scope, "path", "bar");
+		Instruction bar = deserializer.deserialize("\"/uri\"", db, scope, userDir).getInstruction();
+		assertEquals("^foo$", foo.toString());
+		assertEquals("^bar$", bar.toString());
+	}
 }
@@ -5,6 +5,7 @@ import java.util.Hashtable;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpConnectionParams;
 
 public class ApacheHttpRequester implements HttpRequester {
 	private final HttpClient client = new DefaultHttpClient();
@@ -37,4 +38,9 @@ public class ApacheHttpRequester implements HttpRequester {
 
 	}
 
+	@Override
+	public void setConnectTimeout(int connectTimeoutMilliseconds) {
+		HttpConnectionParams.setConnectionTimeout(client.getParams(), connectTimeoutMilliseconds);
+	}
+
 }
@@ -0,0 +1,191 @@
+package net.caustic.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import net.caustic.http.HttpBrowser;
+import net.caustic.http.HttpRequestException;
+import net.caustic.http.HttpRequester;
+import net.caustic.http.HttpResponse;
+
+/**
+ * A requester implementation using {@link java.net.http.HttpClient}, which keeps
+ * connections to each host alive between requests and multiplexes requests over
+ * HTTP/2 where the host supports it.  All copies of an {@link HttpBrowser} share one
+ * {@link HttpClient}, and so share its connection pool.
+ * <p>
+ * Requires Java {@link #MIN_JAVA_VERSION}, because earlier {@link HttpClient}s refuse the
+ * User-Agent and Referer headers that {@link HttpBrowser} sends.  The Connection,
+ * Content-Length, Expect, Host and Upgrade headers are set by {@link HttpClient} itself,
+ * and are left out of requests, as {@link java.net.HttpURLConnection} leaves them out.
+ * @author john
+ *
+ */
+public class HttpClientRequester implements HttpRequester {
+	
+	/**
+	 * The Content-Type {@link java.net.HttpURLConnection} sends with posts by default.
+	 */
+	private static final String DEFAULT_POST_CONTENT_TYPE = "application/x-www-form-urlencoded";
+	
+	/**
+	 * The first Java release whose {@link HttpClient} lets requests set the User-Agent,
+	 * Referer, Origin and From headers.
+	 */
+	public static final int MIN_JAVA_VERSION = 12;
+	
+	/**
+	 * Lower case names of headers that {@link HttpClient} sets itself and will not take
+	 * from a request.  These are left out of requests rather than failing them.
+	 */
+	private static final String[] RESTRICTED_HEADER_NAMES = new String[] {
+		"connection", "content-length", "expect", "host", "upgrade" };
+	
+	private volatile int timeoutMilliseconds = HttpBrowser.DEFAULT_TIMEOUT_MILLISECONDS;
+	private volatile HttpClient client = newClient(HttpBrowser.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS);
+	
+	/**
+	 * @throws UnsupportedOperationException if this JVM is older than {@link #MIN_JAVA_VERSION}.
+	 */
+	public HttpClientRequester() {
+		int version = Runtime.version().feature();
+		if(version < MIN_JAVA_VERSION) {
+			throw new UnsupportedOperationException("HttpClient requires Java " + MIN_JAVA_VERSION +
+					" or later to send User-Agent and Referer headers, this is Java " + version + ".");
+		}
+	}
+	
+	/**
+	 * 
+	 * @param connectTimeoutMilliseconds How long to wait for a connection to be opened.
+	 * @return A {@link HttpClient} that does not follow redirects or handle cookies, since
+	 * {@link HttpBrowser} does both.
+	 */
+	private static HttpClient newClient(int connectTimeoutMilliseconds) {
+		return HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.connectTimeout(Duration.ofMillis(connectTimeoutMilliseconds))
+				.build();
+	}
+	
+	/**
+	 * Send a request with {@link #client}.
+	 * @param method The HTTP method to use.
+	 * @param urlStr A URL to load.
+	 * @param requestHeaders A {@link Hashtable} of headers.
+	 * @param encodedPostData A {@link String} of post data to send, already encoded.
+	 * @return A {@link HttpResponse}.
+	 */
+	private HttpResponse getResponse(String method, String urlStr, Hashtable requestHeaders,
+			String encodedPostData) throws InterruptedException, HttpRequestException {
+		final HttpRequest.Builder builder;
+		try {
+			builder = HttpRequest.newBuilder(new URI(urlStr))
+					.timeout(Duration.ofMillis(timeoutMilliseconds));
+		} catch(Exception e) { // URISyntaxException or IllegalArgumentException
+			throw new HttpRequestException("Invalid URL " + urlStr + ": " + e.getMessage());
+		}
+		
+		// Add additional headers.
+		boolean hasContentType = false;
+		Enumeration<?> headerNames = requestHeaders.keys();
+		while(headerNames.hasMoreElements()) {
+			String headerName = (String) headerNames.nextElement();
+			String headerValue = (String) requestHeaders.get(headerName);
+			try {
+				builder.setHeader(headerName, headerValue);
+				if(headerName.equalsIgnoreCase(HttpResponse.CONTENT_TYPE_HEADER_NAME)) {
+					hasContentType = true;
+				}
+			} catch(IllegalArgumentException e) {
+				if(!isRestricted(headerName)) {
+					throw new HttpRequestException("Invalid header " + headerName + ": " + e.getMessage());
+				}
+			}
+		}
+		
+		if(method.equalsIgnoreCase(HttpBrowser.POST)) {
+			if(!hasContentType) {
+				builder.setHeader(HttpResponse.CONTENT_TYPE_HEADER_NAME, DEFAULT_POST_CONTENT_TYPE);
+			}
+			builder.POST(HttpRequest.BodyPublishers.ofString(encodedPostData));
+		} else {
+			builder.method(method.toUpperCase(), HttpRequest.BodyPublishers.noBody());
+		}
+		
+		// Send asynchronously, so that an interrupt abandons the exchange.
+		TimeoutBodyStream body = new TimeoutBodyStream(timeoutMilliseconds);
+		CompletableFuture<java.net.http.HttpResponse<InputStream>> future =
+				client.sendAsync(builder.build(), responseInfo -> body);
+		try {
+			return new HttpClientResponse(future.get());
+		} catch(InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof HttpTimeoutException) { // provide information about timeout.
+				throw new HttpRequestException("Timeout after " + timeoutMilliseconds + " milliseconds: "
+						+ cause.getMessage());
+			}
+			throw new HttpRequestException(cause.getMessage());
+		}
+	}
+	
+	/**
+	 * 
+	 * @param headerName The name of a header.
+	 * @return <code>true</code> if <code>headerName</code> is one of {@link #RESTRICTED_HEADER_NAMES}.
+	 */
+	private static boolean isRestricted(String headerName) {
+		for(int i = 0 ; i < RESTRICTED_HEADER_NAMES.length ; i ++) {
+			if(RESTRICTED_HEADER_NAMES[i].equalsIgnoreCase(headerName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public HttpResponse head(String url, Hashtable requestHeaders)
+			throws InterruptedException, HttpRequestException {
+		return getResponse("HEAD", url, requestHeaders, null);
+	}
+
+	@Override
+	public HttpResponse get(String url, Hashtable requestHeaders)
+			throws InterruptedException, HttpRequestException {
+		return getResponse("GET", url, requestHeaders, null);
+	}
+
+	@Override
+	public HttpResponse post(String url, Hashtable requestHeaders,
+			String encodedPostData) throws InterruptedException, HttpRequestException {
+		return getResponse("POST", url, requestHeaders, encodedPostData);
+	}
+
+	/**
+	 * Limits both the wait for a response's headers and each read of its body.
+	 */
+	@Override
+	public void setTimeout(int timeoutMilliseconds) {
+		this.timeoutMilliseconds = timeoutMilliseconds;
+	}
+	
+	/**
+	 * Replaces the {@link HttpClient}, so connections already open are not reused.
+	 */
+	@Override
+	public void setConnectTimeout(int connectTimeoutMilliseconds) {
+		client = newClient(connectTimeoutMilliseconds);
+	}
+}
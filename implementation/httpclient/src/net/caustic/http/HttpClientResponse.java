@@ -0,0 +1,105 @@
+package net.caustic.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+
+import net.caustic.http.BadURLException;
+import net.caustic.http.HttpRequestException;
+import net.caustic.http.HttpResponse;
+import net.caustic.http.ResponseHeaders;
+import net.caustic.util.StringUtils;
+
+/**
+ * Implementation of {@link HttpResponse} using {@link java.net.http.HttpResponse}.
+ * @author john
+ *
+ */
+class HttpClientResponse implements HttpResponse {
+	private final int responseCode;
+	private final InputStreamReader contentStream;
+	private final ResponseHeaders responseHeaders;
+	private final URI uri;
+	private final String redirectLocation;
+	
+	public HttpClientResponse(java.net.http.HttpResponse<InputStream> response) throws HttpRequestException {
+		responseCode = response.statusCode();
+		uri = response.uri();
+		
+		// header names are case-insensitive in this map.
+		responseHeaders = new JavaNetResponseHeaders(response.headers().map());
+		
+		InputStream body = response.body();
+		if(isSuccess()) {
+			String charset = JavaNetHttpResponse.getCharset(responseHeaders);
+			try {
+				if(charset != null) {
+					contentStream = new InputStreamReader(body, charset);
+				} else {
+					contentStream = new InputStreamReader(body);
+				}
+			} catch(UnsupportedEncodingException e) { // the charset of the response not supported.
+				close(body);
+				throw new HttpRequestException("Response charset encoding "
+							+ StringUtils.quote(charset) + " not supported: " + e.getMessage());
+			}
+		} else {
+			// the body is never read, so release the connection back to the pool.
+			close(body);
+			contentStream = null;
+		}
+		
+		if(isRedirect()) {
+			redirectLocation = response.headers().firstValue(LOCATION_HEADER_NAME).orElse(null);
+		} else {
+			redirectLocation = null;
+		}
+	}
+	
+	private static void close(InputStream body) {
+		try {
+			body.close();
+		} catch(IOException e) { }
+	}
+	
+	public InputStreamReader getContentStream() {
+		if(isSuccess() && contentStream != null) {
+			return contentStream;
+		} else {
+			throw new IllegalStateException();
+		}
+	}
+
+	public boolean isSuccess() {
+		return responseCode >= 200 && responseCode < 300;
+	}
+
+	public ResponseHeaders getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	public boolean isRedirect() {
+		return responseCode >= 300 && responseCode < 400 ? true : false;
+	}
+
+	public String getRedirectLocation() throws BadURLException {
+		if(isRedirect()) {
+			if(redirectLocation == null) {
+				throw new BadURLException(uri.toString(), "Redirect without a location.");
+			}
+			try {
+				return uri.resolve(redirectLocation).toString();
+			} catch(IllegalArgumentException e) {
+				throw new BadURLException(uri.toString(), e.getMessage());
+			}
+		} else {
+			throw new IllegalStateException();
+		}
+	}
+
+	public int getResponseCode() {
+		return responseCode;
+	}
+}
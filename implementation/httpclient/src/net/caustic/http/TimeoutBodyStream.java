@@ -0,0 +1,178 @@
+package net.caustic.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The body of a {@link java.net.http.HttpResponse}, read as an {@link InputStream}.
+ * Unlike {@link java.net.http.HttpResponse.BodyHandlers#ofInputStream()}, each read
+ * gives up after a timeout, as {@link java.net.HttpURLConnection#setReadTimeout(int)}
+ * does, and abandons the exchange so that a stalled server cannot hold a thread forever.
+ * @author john
+ *
+ */
+final class TimeoutBodyStream extends InputStream implements BodySubscriber<InputStream> {
+
+	/**
+	 * Put in {@link #buffers} once there will be no more, because the body was
+	 * completed or failed.
+	 */
+	private static final List<ByteBuffer> END = new ArrayList<ByteBuffer>();
+
+	private final int timeoutMilliseconds;
+
+	/**
+	 * Buffers received but not yet read.  At most one list is requested ahead of
+	 * the reader.
+	 */
+	private final BlockingQueue<List<ByteBuffer>> buffers = new LinkedBlockingQueue<List<ByteBuffer>>();
+
+	private volatile Flow.Subscription subscription;
+	private volatile Throwable failure;
+	private volatile boolean closed = false;
+
+	/**
+	 * The list being read, and the buffer being read from it.
+	 */
+	private Iterator<ByteBuffer> list;
+	private ByteBuffer buffer;
+	private boolean ended = false;
+
+	/**
+	 *
+	 * @param timeoutMilliseconds How long each read waits for more of the body.
+	 */
+	TimeoutBodyStream(int timeoutMilliseconds) {
+		this.timeoutMilliseconds = timeoutMilliseconds;
+	}
+
+	/**
+	 * Available as soon as the headers are, so that the response is not held
+	 * until its whole body arrives.
+	 */
+	public CompletionStage<InputStream> getBody() {
+		return CompletableFuture.completedStage(this);
+	}
+
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		if(closed) {
+			subscription.cancel();
+		} else {
+			subscription.request(1);
+		}
+	}
+
+	public void onNext(List<ByteBuffer> item) {
+		buffers.offer(item);
+	}
+
+	public void onError(Throwable throwable) {
+		failure = throwable;
+		buffers.offer(END);
+	}
+
+	public void onComplete() {
+		buffers.offer(END);
+	}
+
+	/**
+	 * Stop receiving the body, which closes its connection.
+	 */
+	private void cancel() {
+		Flow.Subscription subscription = this.subscription;
+		if(subscription != null) {
+			subscription.cancel();
+		}
+	}
+
+	/**
+	 *
+	 * @return A {@link ByteBuffer} with bytes remaining, or <code>null</code> at the
+	 * end of the body.
+	 * @throws SocketTimeoutException If no more of the body came within
+	 * {@link #timeoutMilliseconds}.
+	 * @throws InterruptedIOException If interrupted while waiting.
+	 * @throws IOException If the body failed or this was closed.
+	 */
+	private ByteBuffer current() throws IOException {
+		while(buffer == null || !buffer.hasRemaining()) {
+			if(closed) {
+				throw new IOException("Stream closed.");
+			}
+			if(list != null && list.hasNext()) {
+				buffer = list.next();
+				continue;
+			}
+			if(ended) {
+				return null;
+			}
+
+			final List<ByteBuffer> next;
+			try {
+				next = buffers.poll(timeoutMilliseconds, TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e) {
+				cancel();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading response.");
+			}
+			if(next == null) {
+				cancel();
+				throw new SocketTimeoutException("Read timed out after " + timeoutMilliseconds + " milliseconds.");
+			} else if(next == END) {
+				ended = true;
+				if(failure != null) {
+					throw new IOException(failure.getMessage(), failure);
+				}
+			} else {
+				list = next.iterator();
+				subscription.request(1);
+			}
+		}
+		return buffer;
+	}
+
+	public int read() throws IOException {
+		ByteBuffer current = current();
+		if(current == null) {
+			return -1;
+		}
+		return current.get() & 0xff;
+	}
+
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if(length == 0) {
+			return 0;
+		}
+		ByteBuffer current = current();
+		if(current == null) {
+			return -1;
+		}
+		int read = Math.min(length, current.remaining());
+		current.get(bytes, offset, read);
+		return read;
+	}
+
+	public int available() {
+		ByteBuffer current = buffer;
+		return current == null ? 0 : current.remaining();
+	}
+
+	public void close() {
+		closed = true;
+		cancel();
+	}
+}
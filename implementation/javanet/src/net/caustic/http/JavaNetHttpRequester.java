@@ -21,6 +21,7 @@ import net.caustic.http.HttpResponse;
 public class JavaNetHttpRequester implements HttpRequester {
 	
 	private int timeoutMilliseconds = HttpBrowser.DEFAULT_TIMEOUT_MILLISECONDS;
+	private int connectTimeoutMilliseconds = HttpBrowser.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS;
 	
 	/**
 	 * Request a {@link HttpURLConnection}, and follow any redirects while adding cookies.
@@ -47,6 +48,7 @@ public class JavaNetHttpRequester implements HttpRequester {
 			
 			conn.setDoInput(true);
 			conn.setReadTimeout(timeoutMilliseconds);
+			conn.setConnectTimeout(connectTimeoutMilliseconds);
 			
 			// Set method
 			if(method.equalsIgnoreCase(HttpBrowser.POST)) {
@@ -62,6 +64,8 @@ public class JavaNetHttpRequester implements HttpRequester {
 			return new JavaNetHttpResponse(conn);
 		} catch(IOException e) {
 			throw new HttpRequestException(e.getMessage());
+		} catch(IllegalArgumentException e) { // an invalid header
+			throw new HttpRequestException(e.getMessage());
 		}
 	}
 	
@@ -88,4 +92,9 @@ public class JavaNetHttpRequester implements HttpRequester {
 		this.timeoutMilliseconds = timeoutMilliseconds;
 	}
 	
+	@Override
+	public void setConnectTimeout(int connectTimeoutMilliseconds) {
+		this.connectTimeoutMilliseconds = connectTimeoutMilliseconds;
+	}
+	
 }
@@ -35,22 +35,7 @@ class JavaNetHttpResponse implements HttpResponse {
 			url = conn.getURL();
 			
 			// Attempt to determine charset from response headers.
-			String[] contentTypeHeaders = responseHeaders.getHeaderValues(CONTENT_TYPE_HEADER_NAME);
-			String charset = null;
-			if(contentTypeHeaders != null) {
-				for(int i = 0 ; i < contentTypeHeaders.length ; i ++) {
-					String[] nameValuePairs = StringUtils.split(contentTypeHeaders[i], "; ");
-					for(int j = 0 ; j < nameValuePairs.length ; j++) {
-						String nameValuePair = nameValuePairs[j];
-						if(nameValuePair.indexOf('=') != -1) {
-							String name = nameValuePair.substring(0, nameValuePair.indexOf('='));
-							if(name.equalsIgnoreCase(CHARSET_KEY)) {
-								charset = nameValuePair.substring(nameValuePair.indexOf('=') + 1).toUpperCase();
-							}
-						}
-					}
-				}
-			}
+			String charset = getCharset(responseHeaders);
 			
 			if(isSuccess()) {
 				try {
@@ -80,6 +65,32 @@ class JavaNetHttpResponse implements HttpResponse {
 		}
 	}
 	
+	/**
+	 * 
+	 * @param responseHeaders The {@link ResponseHeaders} of a response.
+	 * @return The upper-case charset named in the <code>Content-Type</code> header of
+	 * <code>responseHeaders</code>, or <code>null</code> if there is none.
+	 */
+	static String getCharset(ResponseHeaders responseHeaders) {
+		String[] contentTypeHeaders = responseHeaders.getHeaderValues(CONTENT_TYPE_HEADER_NAME);
+		String charset = null;
+		if(contentTypeHeaders != null) {
+			for(int i = 0 ; i < contentTypeHeaders.length ; i ++) {
+				String[] nameValuePairs = StringUtils.split(contentTypeHeaders[i], "; ");
+				for(int j = 0 ; j < nameValuePairs.length ; j++) {
+					String nameValuePair = nameValuePairs[j];
+					if(nameValuePair.indexOf('=') != -1) {
+						String name = nameValuePair.substring(0, nameValuePair.indexOf('='));
+						if(name.equalsIgnoreCase(CHARSET_KEY)) {
+							charset = nameValuePair.substring(nameValuePair.indexOf('=') + 1).toUpperCase();
+						}
+					}
+				}
+			}
+		}
+		return charset;
+	}
+	
 	public InputStreamReader getContentStream() {
 		if(isSuccess() && contentStream != null) {
 			return contentStream;
@@ -0,0 +1,235 @@
+package net.caustic.uri;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.caustic.file.FileLoader;
+import net.caustic.http.HttpBrowser;
+import net.caustic.http.HttpException;
+import net.caustic.regexp.Pattern;
+
+/**
+ * A {@link JavaNetURILoader} that remembers what it has loaded, so that templates
+ * referred to again and again are not reloaded each time.
+ * <p>
+ * A local file is loaded again once its last-modified time changes.  A remote URI
+ * is not requested again until the <code>max-age</code> of its
+ * <code>Cache-Control</code> header has passed, and then it is requested with
+ * <code>If-None-Match</code> if it had an <code>ETag</code>.  Remote URIs with
+ * neither, or with <code>no-store</code>, are not remembered.  The least recently
+ * used URI is forgotten once {@link #capacity} are held.
+ * @author realest
+ *
+ */
+public class CachingURILoader extends JavaNetURILoader {
+
+	/**
+	 * The default number of URIs a {@link CachingURILoader} holds.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private static final String ETAG_HEADER_NAME = "etag";
+	private static final String CACHE_CONTROL_HEADER_NAME = "cache-control";
+	private static final String IF_NONE_MATCH_HEADER_NAME = "If-None-Match";
+	private static final String MAX_AGE = "max-age=";
+	private static final String NO_CACHE = "no-cache";
+	private static final String NO_STORE = "no-store";
+
+	/**
+	 * Returned by {@link #getMaxAgeSeconds(Hashtable)} when the response must not be kept.
+	 */
+	private static final int DO_NOT_STORE = -1;
+
+	private final HttpBrowser browser;
+	private final FileLoader fileLoader;
+	private final int capacity;
+
+	/**
+	 * {@link String} paths and URIs to {@link CachedURI}s, least recently used first.
+	 */
+	private final Map<String, CachedURI> entries;
+
+	private static final class CachedURI {
+		private final String contents;
+
+		/**
+		 * The last-modified time of a local file, or <code>0</code> for a remote URI.
+		 */
+		private final long lastModified;
+
+		/**
+		 * The <code>ETag</code> of a remote URI, or <code>null</code>.
+		 */
+		private final String etag;
+
+		/**
+		 * When a remote URI should be requested again, in milliseconds since the epoch.
+		 */
+		private final long expires;
+
+		private CachedURI(String contents, long lastModified, String etag, long expires) {
+			this.contents = contents;
+			this.lastModified = lastModified;
+			this.etag = etag;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Construct a {@link CachingURILoader} holding up to {@link #DEFAULT_CAPACITY} URIs.
+	 * @param browser The {@link HttpBrowser} to load remote URIs with.
+	 * @param fileLoader The {@link FileLoader} to load local URIs with.
+	 */
+	public CachingURILoader(HttpBrowser browser, FileLoader fileLoader) {
+		this(browser, fileLoader, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct a {@link CachingURILoader}.
+	 * @param browser The {@link HttpBrowser} to load remote URIs with.
+	 * @param fileLoader The {@link FileLoader} to load local URIs with.
+	 * @param capacity How many URIs to hold.  Must be positive.
+	 */
+	public CachingURILoader(HttpBrowser browser, FileLoader fileLoader, int capacity) {
+		super(browser, fileLoader);
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.browser = browser;
+		this.fileLoader = fileLoader;
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, CachedURI>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedURI> eldest) {
+				return size() > CachingURILoader.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Load <code>path</code> unless it has the same last-modified time as when it
+	 * was last loaded.
+	 */
+	@Override
+	protected String loadFile(String path) throws IOException {
+		final long lastModified = new File(path).lastModified();
+		final CachedURI cached = getCached(path);
+		// 0 means the time is not known.
+		if(cached != null && lastModified != 0 && cached.lastModified == lastModified) {
+			return cached.contents;
+		}
+
+		// If the file changes while it is read, the next load sees a newer time and
+		// reads it again.
+		final String contents = fileLoader.load(path);
+		if(lastModified != 0) {
+			putCached(path, new CachedURI(contents, lastModified, null, 0));
+		} else {
+			removeCached(path);
+		}
+		return contents;
+	}
+
+	/**
+	 * Request <code>uriStr</code> unless it is still fresh, revalidating it with its
+	 * <code>ETag</code> if it has one.
+	 */
+	@Override
+	protected String loadRemote(String uriStr) throws HttpException, InterruptedException {
+		final CachedURI cached = getCached(uriStr);
+		final long now = System.currentTimeMillis();
+		if(cached != null && now < cached.expires) {
+			return cached.contents;
+		}
+
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		if(cached != null && cached.etag != null) {
+			headers.put(IF_NONE_MATCH_HEADER_NAME, cached.etag);
+		}
+		Hashtable<String, String> responseHeaders = new Hashtable<String, String>();
+		String contents = browser.get(uriStr, headers, new Pattern[] {}, responseHeaders);
+		String etag = responseHeaders.get(ETAG_HEADER_NAME);
+		if(contents == null) { // not modified
+			if(cached == null || cached.etag == null) {
+				// we did not ask for a conditional response, so ask again without one.
+				return super.loadRemote(uriStr);
+			}
+			contents = cached.contents;
+			if(etag == null) {
+				etag = cached.etag;
+			}
+		}
+
+		final int maxAgeSeconds = getMaxAgeSeconds(responseHeaders);
+		if(maxAgeSeconds == DO_NOT_STORE || (etag == null && maxAgeSeconds == 0)) {
+			removeCached(uriStr);
+		} else {
+			putCached(uriStr, new CachedURI(contents, 0, etag, now + maxAgeSeconds * 1000L));
+		}
+		return contents;
+	}
+
+	/**
+	 *
+	 * @param responseHeaders A {@link Hashtable} of response headers with lower case names.
+	 * @return How many seconds a response stays fresh according to its
+	 * <code>Cache-Control</code> header, <code>0</code> if it should be revalidated
+	 * each time, or {@link #DO_NOT_STORE}.
+	 */
+	private static int getMaxAgeSeconds(Hashtable<String, String> responseHeaders) {
+		String cacheControl = responseHeaders.get(CACHE_CONTROL_HEADER_NAME);
+		if(cacheControl == null) {
+			return 0;
+		}
+		int maxAgeSeconds = 0;
+		boolean noCache = false;
+		for(String directive : cacheControl.split(",")) {
+			directive = directive.trim().toLowerCase();
+			if(directive.equals(NO_STORE)) {
+				return DO_NOT_STORE;
+			} else if(directive.equals(NO_CACHE)) {
+				noCache = true;
+			} else if(directive.startsWith(MAX_AGE)) {
+				try {
+					maxAgeSeconds = Math.max(0, Integer.parseInt(directive.substring(MAX_AGE.length())));
+				} catch(NumberFormatException e) {
+					maxAgeSeconds = 0;
+				}
+			}
+		}
+		return noCache ? 0 : maxAgeSeconds;
+	}
+
+	private CachedURI getCached(String key) {
+		synchronized(entries) {
+			return entries.get(key);
+		}
+	}
+
+	private void putCached(String key, CachedURI cached) {
+		synchronized(entries) {
+			entries.put(key, cached);
+		}
+	}
+
+	private void removeCached(String key) {
+		synchronized(entries) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 *
+	 * @return How many URIs are held.
+	 */
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+}
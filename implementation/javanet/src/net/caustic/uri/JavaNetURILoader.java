@@ -35,15 +35,36 @@ public class JavaNetURILoader implements URILoader {
 		this.fileLoader = fileLoader;
 	}
 	
+	/**
+	 * Load a local file.
+	 * @param path The {@link String} path of the file.
+	 * @return The {@link String} contents of the file.
+	 * @throws IOException if the file could not be loaded.
+	 */
+	protected String loadFile(String path) throws IOException {
+		return fileLoader.load(path);
+	}
+	
+	/**
+	 * Load a remote URI.
+	 * @param uriStr The {@link String} URI.
+	 * @return The {@link String} body of the response.
+	 * @throws HttpException if the URI could not be loaded.
+	 * @throws InterruptedException if the user interrupted the request.
+	 */
+	protected String loadRemote(String uriStr) throws HttpException, InterruptedException {
+		return browser.get(uriStr, new Hashtable<String, String>(), new Pattern[] {});
+	}
+	
 	public String load(String uriStr) throws URILoaderException, InterruptedException {
 		try {
 			URI uri = new URI(uriStr);
 			if(uri.getScheme() == null) {
-				return fileLoader.load(uri.getSchemeSpecificPart());
+				return loadFile(uri.getSchemeSpecificPart());
 			} else if(uri.getScheme().equalsIgnoreCase(UriResolver.FILE_SCHEME)) {
-				return fileLoader.load(uri.getSchemeSpecificPart());
+				return loadFile(uri.getSchemeSpecificPart());
 			} else {
-				return browser.get(uriStr, new Hashtable<String, String>(), new Pattern[] {});
+				return loadRemote(uriStr);
 			}
 		} catch (IOException e) {
 			throw URILoaderException.fromLocal(e);
@@ -10,75 +10,129 @@ import net.caustic.scope.Scope;
 import net.caustic.template.StringSubstitution;
 
 import org.apache.regexp.RE;
+import org.apache.regexp.RECompiler;
+import org.apache.regexp.REProgram;
 
+/**
+ * A {@link Pattern} using {@link RE}.  {@link RE} keeps the state of its last match,
+ * so the compiled {@link REProgram} is shared and each call matches with its own
+ * {@link RE}.  This makes {@link JakartaPattern} safe to use from several threads at once.
+ *
+ */
 final class JakartaPattern implements Pattern {
-	private final RE re;
+	private final REProgram program;
+	private final int flags;
 	private final String patternString;
 	
 	public JakartaPattern(String patternString, int flags) {
-		this.re = new RE(patternString, flags);
+		this.program = new RECompiler().compile(patternString);
+		this.flags = flags;
 		this.patternString = patternString;
 	}
 	
+	/**
+	 * 
+	 * @return A new {@link RE} for {@link #program}, to be used by only one thread.
+	 */
+	private RE newRE() {
+		return new RE(program, flags);
+	}
+	
+	/**
+	 * 
+	 * @param re An {@link RE} that has just matched.
+	 * @param pos Where the match was looked for from.
+	 * @return Where to look for the next match from.  Always after <code>pos</code>,
+	 * so that empty matches do not repeat.
+	 */
+	private static int nextPosition(RE re, int pos) {
+		int end = re.getParenEnd(0);
+		return end > pos ? end : pos + 1;
+	}
+	
+	/**
+	 * Fill backreferences in <code>substitution</code> from <code>re</code>, in the same
+	 * way as {@link RE#subst(String, String, int)} with {@link RE#REPLACE_BACKREFERENCES}.
+	 * @param re An {@link RE} that has just matched.
+	 * @param substitution The {@link String} substitution.  <code>$0</code> through
+	 * <code>$9</code> are backreferences, unless preceded by <code>\</code>.
+	 * @return The substituted {@link String}.
+	 */
+	private static String expand(RE re, String substitution) {
+		int dollar = substitution.indexOf('$');
+		if(dollar == -1) {
+			return substitution;
+		}
+		StringBuffer result = new StringBuffer();
+		int last = 0;
+		int length = substitution.length();
+		while(dollar >= 0) {
+			if((dollar == 0 || substitution.charAt(dollar - 1) != '\\') && dollar + 1 < length) {
+				char c = substitution.charAt(dollar + 1);
+				if(c >= '0' && c <= '9') {
+					result.append(substitution.substring(last, dollar));
+					String paren = re.getParen(c - '0');
+					if(paren != null) {
+						result.append(paren);
+					}
+					last = dollar + 2;
+				}
+			}
+			dollar = substitution.indexOf('$', dollar + 1);
+		}
+		result.append(substitution.substring(last));
+		return result.toString();
+	}
+	
 	public boolean matches(String input, int matchNumber) {
+		RE re = newRE();
 		int pos = 0;
 		int curMatch = 0;
-		while(re.match(input, pos)) {
+		while(pos <= input.length() && re.match(input, pos)) {
 			if(curMatch == matchNumber) {
 				return true;
 			}
-			pos = re.getParenEnd(0);
+			pos = nextPosition(re, pos);
 			curMatch++;
 		}
 		return false;
 	}
 	
+	/**
+	 * {@link RE} cannot say whether a match reached the end of its input, so
+	 * no match is ever known to be settled.
+	 */
+	public boolean hasSettledMatch(String input, int matchNumber) {
+		return false;
+	}
+	
+	/**
+	 * Matches are substituted straight from the {@link RE} that found them, and
+	 * matching stops once no later match could be in the range.
+	 * @see MatchRange
+	 */
 	public String[] match(String input, String substitution, int minMatch, int maxMatch) {
 		if((maxMatch >= 0 && minMatch >= 0 && maxMatch < minMatch) ||
 				(maxMatch < 0 && minMatch < 0 && maxMatch < minMatch))
 			throw new IllegalArgumentException(new InvalidRangeException(this, minMatch, maxMatch));
 		
-		//Matcher matcher = pattern.matcher(input);
-		
-		// Find the complete matchesList.
-		Vector matchesList = new Vector();
+		RE re = newRE();
+		MatchRange range = new MatchRange(minMatch, maxMatch);
 		int pos = 0;
-		while(re.match(input, pos)) {
-			pos = re.getParenEnd(0);
-			matchesList.addElement(re.subst(re.getParen(0), substitution, RE.REPLACE_BACKREFERENCES));
-		}
-		// No matches at all.
-		if(matchesList.size() == 0)
-			return new String[] {};
-		
-		// Determine the first and last indices relative to our list.
-		int firstIndex = minMatch >= 0 ? minMatch : matchesList.size() + minMatch;
-		int lastIndex  = maxMatch >= 0 ? maxMatch : matchesList.size() + maxMatch;
-		
-		// Range excludes 
-		if(lastIndex < firstIndex)
-			return new String[] {};
-		
-		// First index is after total length
-		if(matchesList.size() < firstIndex) {
-			return new String[] {};
-		}
-		
-		// Last index must be truncated.
-		if(matchesList.size() < lastIndex) {
-			lastIndex = matchesList.size() - 1;
-		}
-		
-		String[] matches = new String[1 + lastIndex - firstIndex];
-		for(int i = 0 ; i < matches.length ; i ++) {
-			matches[i] = (String) matchesList.get(i + firstIndex);
+		while(!range.isComplete() && pos <= input.length() && re.match(input, pos)) {
+			if(range.isWanted()) {
+				range.add(expand(re, substitution));
+			} else {
+				range.skip();
+			}
+			pos = nextPosition(re, pos);
 		}
-		
-		return matches;
+		return range.getMatches();
 	}
 	
 	public StringSubstitution substitute(String input, Database db, Scope scope)
 			throws DatabaseException {
+		RE re = newRE();
 		StringBuffer subbed = new StringBuffer();
 		Vector missingTags = new Vector();
 		
@@ -113,4 +167,4 @@ final class JakartaPattern implements Pattern {
 	public String toString() {
 		return patternString;
 	}
-}
\ No newline at end of file
+}
@@ -1,7 +1,5 @@
 package net.caustic.regexp;
 
-import java.util.Vector;
-
 import org.apache.regexp.RE;
 
 import net.caustic.database.Database;
@@ -14,24 +12,21 @@ import net.caustic.util.Encoder;
 public class JakartaStringTemplate extends StringTemplate {
 	private static final int NOT_MATCHED = -1;
 	
-	private final RE encodedPattern;
-	private final RE notEncodedPattern;
 	private final String templateString;
-	private final Encoder encoder;
+	private final TemplateSegments segments;
 	
+	/**
+	 * Split <code>templateString</code> into {@link TemplateSegments} once, so that
+	 * {@link #sub(Database, Scope)} does not need to match against it.
+	 */
 	public JakartaStringTemplate(String templateString,
 			String encodedPatternString, String notEncodedPatternString,
 			Encoder encoder) {
-		this.encodedPattern = new RE(encodedPatternString);
-		this.notEncodedPattern = new RE(notEncodedPatternString);
 		this.templateString = templateString;
-		this.encoder = encoder;
-	}
-	
-	public StringSubstitution sub(Database db, Scope scope)
-			throws DatabaseException {
-		StringBuffer buf = new StringBuffer();
-		Vector missingTags = new Vector();
+		this.segments = new TemplateSegments(encoder);
+		
+		RE encodedPattern = new RE(encodedPatternString);
+		RE notEncodedPattern = new RE(notEncodedPatternString);
 		int pos = 0;
 		do {
 			// gather match data for both encoded and not-encoded patterns.
@@ -71,35 +66,25 @@ public class JakartaStringTemplate extends StringTemplate {
 				break;
 			}
 
-			// add unmatched previous string
-			buf.append(templateString.substring(pos, begin));
-			
-			// retrieve & append value
-			String value = db.get(scope, tagName);
-			if(value != null) {
-				if(encoded) {
-					buf.append(encoder.encode(value));
-				} else {
-					buf.append(value);
-				}
-			} else {
-				missingTags.add(tagName);
-			}
+			// add unmatched previous string, then the tag
+			segments.addLiteral(templateString.substring(pos, begin));
+			segments.addTag(tagName, encoded);
 			
 			// advance next match to the end of this one
 			pos = end;
 		} while(pos < templateString.length());
 		
-		// append any trailing characters
-		buf.append(templateString.substring(pos));
-		
-		if(missingTags.size() > 0) { // missing tags
-			String[] missingTagsAry = new String[missingTags.size()];
-			missingTags.copyInto(missingTagsAry);
-			return StringSubstitution.missingTags(missingTagsAry);
-		} else { // success!
-			return StringSubstitution.success(buf.toString());
-		}
+		// add any trailing characters
+		segments.addLiteral(templateString.substring(pos));
+	}
+	
+	public StringSubstitution sub(Database db, Scope scope)
+			throws DatabaseException {
+		return segments.sub(db, scope);
+	}
+	
+	public boolean hasTags() {
+		return segments.hasTags();
 	}
 	
 	/**
@@ -1,7 +1,5 @@
 package net.caustic.regexp;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 
 import net.caustic.regexp.Pattern;
@@ -27,40 +25,36 @@ final class JavaUtilPattern implements Pattern {
 	}
 	
 	@Override
-	public String[] match(String input, String substitution, int minMatch, int maxMatch) {
+	public boolean hasSettledMatch(String input, int matchNumber) {
 		Matcher matcher = pattern.matcher(input);
-		
-		// Find the complete matchesList.
-		List<String> matchesList = new ArrayList<String>();
-		while(matcher.find()) {
-			matchesList.add(pattern.matcher(matcher.group()).replaceFirst(substitution));
-		}
-		
-		// No matches at all.
-		if(matchesList.size() == 0) {
-			return new String[] {};
-		}
-		
-		// Determine the first and last indices relative to our list.
-		// Adding a negative match to the total size counts backwards.
-		int firstIndex = minMatch >= 0 ? minMatch : matchesList.size() + minMatch;
-		int lastIndex  = maxMatch >= 0 ? maxMatch : matchesList.size() + maxMatch;
-
-		// Range excludes all matches.
-		if(lastIndex < firstIndex)
-			return new String[] {};
-		
-		// First index is after total length
-		if(matchesList.size() < firstIndex) {
-			return new String[] {};
+		for(int i = 0 ; i <= matchNumber ; i++) {
+			// A match that touched the end of input could change with more input.
+			if(!matcher.find() || matcher.hitEnd()) {
+				return false;
+			}
 		}
+		return true;
+	}
+	
+	/**
+	 * Matches are substituted straight from the groups of one {@link Matcher}, and
+	 * matching stops once no later match could be in the range.
+	 * @see MatchRange
+	 */
+	@Override
+	public String[] match(String input, String substitution, int minMatch, int maxMatch) {
+		Matcher matcher = pattern.matcher(input);
+		JavaUtilReplacement replacement = new JavaUtilReplacement(substitution, matcher.groupCount());
+		MatchRange range = new MatchRange(minMatch, maxMatch);
 		
-		// Last index must be truncated.
-		if(matchesList.size() < lastIndex) {
-			lastIndex = matchesList.size() - 1;
+		while(!range.isComplete() && matcher.find()) {
+			if(range.isWanted()) {
+				range.add(replacement.expand(matcher));
+			} else {
+				range.skip();
+			}
 		}
-		
-		return matchesList.subList(firstIndex, lastIndex + 1).toArray(new String[1 + lastIndex - firstIndex]);
+		return range.getMatches();
 	}
 
 	@Override
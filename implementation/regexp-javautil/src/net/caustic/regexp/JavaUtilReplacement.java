@@ -0,0 +1,156 @@
+package net.caustic.regexp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A replacement {@link String} for {@link JavaUtilPattern#match(String, String, int, int)},
+ * parsed once so that it can be expanded from the groups of each match of a live
+ * {@link Matcher}.  Understands the same syntax as {@link Matcher#appendReplacement(StringBuffer, String)}:
+ * <code>$n</code> is a backreference by number, <code>${name}</code> is a backreference
+ * to a named group, and <code>\</code> escapes the next character.
+ * @author realest
+ *
+ */
+final class JavaUtilReplacement {
+	
+	/**
+	 * Literal {@link String}s, {@link Integer} group numbers, and {@link NamedGroup}s,
+	 * in order.
+	 */
+	private final Object[] parts;
+	
+	/**
+	 * A <code>${name}</code> backreference.
+	 */
+	private static final class NamedGroup {
+		private final String name;
+		
+		private NamedGroup(String name) {
+			this.name = name;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param replacement The replacement {@link String}.
+	 * @param groupCount The number of groups in the pattern it will be expanded from.
+	 * Multi-digit backreferences are read for as long as they name a group.
+	 * @throws IllegalArgumentException If <code>replacement</code> has a trailing
+	 * <code>\</code> or <code>$</code>, a <code>$</code> not followed by a digit or
+	 * <code>{</code>, or a malformed group name.
+	 * @throws IndexOutOfBoundsException If <code>replacement</code> refers to a group
+	 * that doesn't exist.
+	 */
+	JavaUtilReplacement(String replacement, int groupCount) {
+		List<Object> parts = new ArrayList<Object>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while(i < replacement.length()) {
+			char c = replacement.charAt(i);
+			if(c == '\\') {
+				if(++i == replacement.length()) {
+					throw new IllegalArgumentException("character to be escaped is missing");
+				}
+				literal.append(replacement.charAt(i++));
+			} else if(c == '$') {
+				if(++i == replacement.length()) {
+					throw new IllegalArgumentException("Illegal group reference: group index is missing");
+				}
+				if(literal.length() > 0) {
+					parts.add(literal.toString());
+					literal.setLength(0);
+				}
+				if(replacement.charAt(i) == '{') {
+					int end = replacement.indexOf('}', ++i);
+					if(end == -1) {
+						throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+					}
+					String name = replacement.substring(i, end);
+					if(!isGroupName(name)) {
+						throw new IllegalArgumentException("Illegal group name " + name);
+					}
+					parts.add(new NamedGroup(name));
+					i = end + 1;
+					continue;
+				}
+				int group = Character.digit(replacement.charAt(i++), 10);
+				if(group < 0) {
+					throw new IllegalArgumentException("Illegal group reference");
+				}
+				while(i < replacement.length()) {
+					int digit = Character.digit(replacement.charAt(i), 10);
+					if(digit < 0 || group * 10 + digit > groupCount) {
+						break;
+					}
+					group = group * 10 + digit;
+					i++;
+				}
+				if(group > groupCount) {
+					throw new IndexOutOfBoundsException("No group " + group);
+				}
+				parts.add(Integer.valueOf(group));
+			} else {
+				literal.append(c);
+				i++;
+			}
+		}
+		if(literal.length() > 0) {
+			parts.add(literal.toString());
+		}
+		this.parts = parts.toArray();
+	}
+	
+	/**
+	 * 
+	 * @param name A {@link String}.
+	 * @return <code>true</code> if <code>name</code> could name a group: an ASCII letter
+	 * followed by ASCII letters and digits.
+	 */
+	private static boolean isGroupName(String name) {
+		if(name.length() == 0) {
+			return false;
+		}
+		for(int i = 0 ; i < name.length() ; i ++) {
+			char c = name.charAt(i);
+			boolean isLetter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+			if(!isLetter && (i == 0 || c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param matcher A {@link Matcher} that has just found a match.
+	 * @return This replacement, with backreferences filled from <code>matcher</code>'s groups.
+	 * Groups that did not participate in the match are empty.
+	 * @throws IllegalArgumentException If a <code>${name}</code> backreference names a group
+	 * the pattern doesn't have.
+	 */
+	String expand(Matcher matcher) {
+		if(parts.length == 1 && parts[0] instanceof Integer) {
+			String group = matcher.group((Integer) parts[0]);
+			return group == null ? "" : group;
+		}
+		StringBuilder result = new StringBuilder();
+		for(Object part : parts) {
+			if(part instanceof String) {
+				result.append((String) part);
+			} else if(part instanceof NamedGroup) {
+				String group = matcher.group(((NamedGroup) part).name);
+				if(group != null) {
+					result.append(group);
+				}
+			} else {
+				String group = matcher.group((Integer) part);
+				if(group != null) {
+					result.append(group);
+				}
+			}
+		}
+		return result.toString();
+	}
+}
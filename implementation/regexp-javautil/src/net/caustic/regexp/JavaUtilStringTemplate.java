@@ -1,7 +1,5 @@
 package net.caustic.regexp;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 
 import net.caustic.database.Database;
@@ -14,28 +12,21 @@ import net.caustic.util.Encoder;
 final class JavaUtilStringTemplate extends StringTemplate {
 	private static final int NOT_MATCHED = -1;
 
-	private final java.util.regex.Pattern encodedPattern;
-	private final java.util.regex.Pattern notEncodedPattern;
 	private final String templateString;
-	private final Encoder encoder;
+	private final TemplateSegments segments;
 	
+	/**
+	 * Split <code>templateString</code> into {@link TemplateSegments} once, so that
+	 * {@link #sub(Database, Scope)} does not need to match against it.
+	 */
 	public JavaUtilStringTemplate(String templateString,
 			String encodedPatternString, String notEncodedPatternString,
 			Encoder encoder) {
-		this.encodedPattern = java.util.regex.Pattern.compile(encodedPatternString);
-		this.notEncodedPattern = java.util.regex.Pattern.compile(notEncodedPatternString);
 		this.templateString = templateString;
-		this.encoder = encoder;
-	}
-
-	@Override
-	public StringSubstitution sub(Database db, Scope scope) throws DatabaseException {
-		// cannot reuse matchers because this class is accessed concurrently
-		Matcher encodedMatcher = encodedPattern.matcher(templateString);
-		Matcher notEncodedMatcher = notEncodedPattern.matcher(templateString);
+		this.segments = new TemplateSegments(encoder);
 		
-		StringBuffer buf = new StringBuffer();
-		List<String> missingTags = new ArrayList<String>();
+		Matcher encodedMatcher = java.util.regex.Pattern.compile(encodedPatternString).matcher(templateString);
+		Matcher notEncodedMatcher = java.util.regex.Pattern.compile(notEncodedPatternString).matcher(templateString);
 		
 		int pos = 0;		
 		do {			// gather match data for both encoded and not-encoded patterns.
@@ -75,32 +66,25 @@ final class JavaUtilStringTemplate extends StringTemplate {
 				break;
 			}
 
-			// add unmatched previous string
-			buf.append(templateString.substring(pos, begin));
-			
-			// retrieve & append value
-			String value = db.get(scope, tagName);
-			if(value != null) {
-				if(encoded) {
-					buf.append(encoder.encode(value));
-				} else {
-					buf.append(value);
-				}
-			} else {
-				missingTags.add(tagName);
-			}
+			// add unmatched previous string, then the tag
+			segments.addLiteral(templateString.substring(pos, begin));
+			segments.addTag(tagName, encoded);
 			
 			// advance next match to the end of this one
 			pos = end;
 		} while(pos < templateString.length());
 		
-		buf.append(templateString.substring(pos));
-		
-		if(missingTags.size() > 0) {
-			return StringSubstitution.missingTags(missingTags.toArray(new String[missingTags.size()]));
-		} else {
-			return StringSubstitution.success(buf.toString());
-		}
+		segments.addLiteral(templateString.substring(pos));
+	}
+
+	@Override
+	public StringSubstitution sub(Database db, Scope scope) throws DatabaseException {
+		return segments.sub(db, scope);
+	}
+
+	@Override
+	public boolean hasTags() {
+		return segments.hasTags();
 	}
 
 	@Override
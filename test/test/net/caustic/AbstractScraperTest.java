@@ -0,0 +1,127 @@
+package net.caustic;
+
+import static org.junit.Assert.*;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+import mockit.Mocked;
+import net.caustic.database.Database;
+import net.caustic.database.InMemoryDatabase;
+import net.caustic.deserializer.Deserializer;
+import net.caustic.deserializer.DeserializerResult;
+import net.caustic.http.HttpBrowser;
+import net.caustic.log.MultiLog;
+import net.caustic.scope.Scope;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbstractScraperTest {
+
+	@Mocked private HttpBrowser browser;
+	private QueueScraper scraper;
+	private ScraperListener listener;
+
+	/**
+	 * An {@link AbstractScraper} that holds on to submitted {@link Executable}s until
+	 * they are run with {@link #runNext()}, and drops them when interrupted.
+	 */
+	private static final class QueueScraper extends AbstractScraper {
+		private final Vector queued = new Vector();
+
+		QueueScraper(HttpBrowser browser, Deserializer deserializer) {
+			super(new InMemoryDatabase(), browser, deserializer);
+		}
+
+		protected synchronized void submit(Executable executable) {
+			queued.addElement(executable);
+		}
+
+		protected synchronized void interrupt() {
+			queued.removeAllElements();
+			markInterrupted();
+		}
+
+		void runNext() {
+			final Executable executable;
+			synchronized(this) {
+				executable = (Executable) queued.elementAt(0);
+				queued.removeElementAt(0);
+			}
+			executable.run();
+		}
+	}
+
+	/**
+	 * A {@link Deserializer} that crashes whatever it deserializes.
+	 */
+	private static final class CrashingDeserializer implements Deserializer {
+		public DeserializerResult deserialize(String serializedString, Database db,
+				Scope scope, String uri) {
+			throw new IllegalStateException("Crash.");
+		}
+	}
+
+	/**
+	 * Call {@link AbstractScraper#scrapeAll(String, Hashtable, ScraperListener)} from
+	 * another thread.
+	 */
+	private final class ScrapeThread extends Thread {
+		private ScrapeFuture future;
+		private Throwable failure;
+
+		public void run() {
+			try {
+				future = scraper.scrapeAll("{}", new Hashtable(), listener);
+			} catch(Throwable e) {
+				failure = e;
+			}
+		}
+
+		ScrapeFuture join(int timeoutMilliseconds, String message) throws Throwable {
+			join(timeoutMilliseconds);
+			assertFalse(message, isAlive());
+			if(failure != null) {
+				throw failure;
+			}
+			return future;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		scraper = new QueueScraper(browser, new CrashingDeserializer());
+		scraper.setMaxScrapes(1);
+		listener = new LogScraperListener(new MultiLog());
+	}
+
+	@Test
+	public void testCrashedScrapeMakesRoom() throws Throwable {
+		ScrapeFuture crashed = scraper.scrapeAll("{}", new Hashtable(), listener);
+		scraper.runNext();
+		assertTrue(crashed.isDone());
+		assertNotNull(crashed.getCrash());
+		assertTrue(scraper.isDormant());
+
+		ScrapeThread next = new ScrapeThread();
+		next.start();
+		ScrapeFuture future = next.join(1000, "Scrape after a crash should not wait.");
+		assertTrue(future.isDone());
+		assertNotNull(future.getCrash());
+	}
+
+	@Test
+	public void testInterruptWakesWaitingScrape() throws Throwable {
+		scraper.scrapeAll("{}", new Hashtable(), listener);
+
+		ScrapeThread waiting = new ScrapeThread();
+		waiting.start();
+		waiting.join(100);
+		assertTrue("Scrape should wait for room.", waiting.isAlive());
+
+		scraper.interrupt();
+		ScrapeFuture future = waiting.join(1000, "Interrupt should wake the waiting scrape.");
+		assertTrue(future.isDone());
+	}
+}
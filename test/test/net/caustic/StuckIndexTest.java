@@ -0,0 +1,100 @@
+package net.caustic;
+
+import static org.junit.Assert.*;
+
+import java.util.Vector;
+
+import net.caustic.database.Database;
+import net.caustic.database.InMemoryDatabase;
+import net.caustic.scope.Scope;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StuckIndexTest {
+	
+	private Database db;
+	private StuckIndex stuck;
+	private Scope parent;
+	private Scope child;
+	private ScopeChain chain;
+	
+	@Before
+	public void setUp() throws Exception {
+		db = new InMemoryDatabase();
+		stuck = new StuckIndex();
+		parent = db.newDefaultScope();
+		child = db.newScope(parent, "child");
+		chain = new ScopeChain(parent, null).extend(child);
+	}
+	
+	private Executable executable() {
+		return new Executable(null, db, chain, parent, null, null, null);
+	}
+	
+	@Test
+	public void testUnparkWhenLastTagIsPut() throws Exception {
+		Executable executable = executable();
+		assertFalse(stuck.park(executable, chain, new String[] { "a", "b" }, db));
+		
+		db.put(child, "a", "value");
+		assertEquals(0, stuck.unpark(child, "a").size());
+		
+		db.put(child, "b", "value");
+		Vector unparked = stuck.unpark(child, "b");
+		assertEquals(1, unparked.size());
+		assertSame(executable, unparked.elementAt(0));
+	}
+	
+	@Test
+	public void testUnparkFromAncestor() throws Exception {
+		Executable executable = executable();
+		assertFalse(stuck.park(executable, chain, new String[] { "a" }, db));
+		
+		db.put(parent, "a", "value");
+		Vector unparked = stuck.unpark(parent, "a");
+		assertEquals(1, unparked.size());
+		assertSame(executable, unparked.elementAt(0));
+	}
+	
+	@Test
+	public void testOnlyUnparkedOnce() throws Exception {
+		assertFalse(stuck.park(executable(), chain, new String[] { "a", "a" }, db));
+		
+		db.put(child, "a", "value");
+		assertEquals(1, stuck.unpark(child, "a").size());
+		
+		db.put(parent, "a", "value");
+		assertEquals(0, stuck.unpark(parent, "a").size());
+	}
+	
+	@Test
+	public void testNotUnparkedBySibling() throws Exception {
+		assertFalse(stuck.park(executable(), chain, new String[] { "a" }, db));
+		
+		Scope sibling = db.newScope(parent, "child");
+		db.put(sibling, "a", "value");
+		assertEquals(0, stuck.unpark(sibling, "a").size());
+	}
+	
+	@Test
+	public void testParkReturnsTrueIfTagsAlreadyPut() throws Exception {
+		db.put(parent, "a", "value");
+		assertTrue(stuck.park(executable(), chain, new String[] { "a" }, db));
+		assertTrue(stuck.isEmpty());
+	}
+	
+	@Test
+	public void testEmptyAfterUnpark() throws Exception {
+		assertFalse(stuck.park(executable(), chain, new String[] { "a", "b" }, db));
+		assertFalse(stuck.park(executable(), chain, new String[] { "b" }, db));
+		
+		db.put(child, "a", "value");
+		assertEquals(0, stuck.unpark(child, "a").size());
+		assertFalse(stuck.isEmpty());
+		
+		db.put(parent, "b", "value");
+		assertEquals(2, stuck.unpark(parent, "b").size());
+		assertTrue(stuck.isEmpty());
+	}
+}
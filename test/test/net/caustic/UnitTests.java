@@ -1,16 +1,22 @@
 package net.caustic;
 
+import net.caustic.database.AsyncDatabaseListenerTest;
+import net.caustic.database.ScopeCacheTest;
 import net.caustic.file.FileLoaderTest;
 import net.caustic.http.CookieManagerLocalTest;
 import net.caustic.http.HttpBrowserLocalTest;
+import net.caustic.http.HttpRequesterLocalTest;
 import net.caustic.http.RateLimitManagerTest;
 import net.caustic.http.ResponseHeadersTest;
 import net.caustic.instruction.FindTest;
 import net.caustic.instruction.LoadTest;
 import net.caustic.json.JsonObjectTest;
+import net.caustic.json.SlicingJsonParserTest;
+import net.caustic.regexp.CachingRegexpCompilerTest;
 import net.caustic.regexp.PatternTest;
 import net.caustic.regexp.StringTemplateTest;
 import net.caustic.template.HashtableTemplateTest;
+import net.caustic.uri.CachingURILoaderTest;
 import net.caustic.uri.URILoaderTest;
 import net.caustic.uri.UriResolverTest;
 import net.caustic.util.HashtableUtilsTest;
@@ -28,21 +34,29 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
+	AbstractScraperTest.class,
+	AsyncDatabaseListenerTest.class,
+	ScopeCacheTest.class,
 	FileLoaderTest.class,
 	CookieManagerLocalTest.class,
 	HttpBrowserLocalTest.class,
+	HttpRequesterLocalTest.class,
 	RateLimitManagerTest.class,
 	ResponseHeadersTest.class,
 	FindTest.class,
 	LoadTest.class,
 	JsonObjectTest.class,
+	SlicingJsonParserTest.class,
+	CachingRegexpCompilerTest.class,
 	PatternTest.class,
 	HashtableTemplateTest.class,
 	StringTemplateTest.class,
+	CachingURILoaderTest.class,
 	URILoaderTest.class,
 	UriResolverTest.class,
 	HashtableUtilsTest.class,
 	StringUtilsTest.class,
+	StuckIndexTest.class,
 	VectorUtilsTest.class
 })
 public class UnitTests {
@@ -0,0 +1,107 @@
+package net.caustic.database;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.caustic.scope.Scope;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncDatabaseListenerTest {
+	
+	private Database db;
+	
+	/**
+	 * Records events as strings, optionally taking a while with each put.
+	 */
+	private static class RecordingListener implements BatchDatabaseListener {
+		private final List<String> events = new ArrayList<String>();
+		private final long putMilliseconds;
+		private int batches = 0;
+		
+		RecordingListener(long putMilliseconds) {
+			this.putMilliseconds = putMilliseconds;
+		}
+		public synchronized void onPutBatch(Scope[] scopes, String[] keys, String[] values) {
+			batches++;
+			for(int i = 0 ; i < scopes.length ; i ++) {
+				onPut(scopes[i], keys[i], values[i]);
+			}
+		}
+		public synchronized void onPut(Scope scope, String key, String value) {
+			try {
+				Thread.sleep(putMilliseconds);
+			} catch(InterruptedException e) { }
+			events.add(scope + " " + key + " " + value);
+		}
+		public synchronized void onNewScope(Scope scope) {
+			events.add(scope.toString());
+		}
+		public synchronized void onNewScope(Scope parent, String key, Scope child) {
+			events.add(parent + " " + key + " " + child);
+		}
+		public synchronized void onNewScope(Scope parent, String key, String value, Scope child) {
+			events.add(parent + " " + key + " " + value + " " + child);
+		}
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		db = new InMemoryDatabase();
+	}
+	
+	private RecordingListener fill(AsyncDatabaseListener async) throws Exception {
+		RecordingListener sync = new RecordingListener(0);
+		db.addListener(async);
+		db.addListener(sync);
+		
+		Scope scope = db.newDefaultScope();
+		for(int i = 0 ; i < 200 ; i ++) {
+			db.put(scope, "key", Integer.toString(i));
+			if(i % 20 == 0) {
+				db.newScope(scope, "child", Integer.toString(i));
+			}
+		}
+		async.close();
+		return sync;
+	}
+	
+	@Test
+	public void testBlockDeliversEverythingInOrder() throws Exception {
+		RecordingListener recorder = new RecordingListener(0);
+		RecordingListener sync = fill(new AsyncDatabaseListener(recorder, 4, AsyncDatabaseListener.BLOCK));
+		assertEquals(sync.events, recorder.events);
+	}
+	
+	@Test
+	public void testSpillDeliversEverythingInOrder() throws Exception {
+		RecordingListener recorder = new RecordingListener(1);
+		RecordingListener sync = fill(new AsyncDatabaseListener(recorder, 4, AsyncDatabaseListener.SPILL));
+		assertEquals(sync.events, recorder.events);
+		assertTrue("Puts should have been batched", recorder.batches < 200);
+	}
+	
+	@Test
+	public void testDropCountsDiscardedEvents() throws Exception {
+		RecordingListener recorder = new RecordingListener(5);
+		AsyncDatabaseListener async = new AsyncDatabaseListener(recorder, 4, AsyncDatabaseListener.DROP);
+		RecordingListener sync = fill(async);
+		assertTrue(async.getDropped() > 0);
+		assertEquals(sync.events.size(), recorder.events.size() + async.getDropped());
+	}
+	
+	@Test(expected = DatabaseListenerException.class)
+	public void testListenerExceptionIsThrownOnFlush() throws Exception {
+		AsyncDatabaseListener async = new AsyncDatabaseListener(new RecordingListener(0) {
+			public void onNewScope(Scope scope) {
+				throw new RuntimeException();
+			}
+		});
+		db.addListener(async);
+		db.newDefaultScope();
+		async.flush();
+	}
+}
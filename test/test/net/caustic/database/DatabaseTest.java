@@ -92,6 +92,24 @@ public abstract class DatabaseTest {
 		assertEquals("Child should have access to parent value.", "red", db.get(child, "roses"));
 	}
 	
+	@Test
+	public void testGetAllMatchesGet() throws Exception {
+		db.put(scope, "roses", "red");
+		db.put(scope, "violets", "blue");
+		Scope child = db.newScope(scope, "foo", "bar");
+		db.put(child, "violets", "purple");
+		
+		String[] keys = new String[] { "roses", "violets", "foo", "missing" };
+		String[] values = db.getAll(child, keys);
+		assertEquals(keys.length, values.length);
+		for(int i = 0 ; i < keys.length ; i ++) {
+			assertEquals("getAll should find the same value as get for " + keys[i],
+					db.get(child, keys[i]), values[i]);
+		}
+		assertEquals("purple", values[1]);
+		assertNull(values[3]);
+	}
+	
 	@Test
 	public void testStoreToChildNotAccessibleToParent() throws Exception {
 		db.put(scope, "roses", "red");
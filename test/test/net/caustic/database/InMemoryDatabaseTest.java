@@ -1,5 +1,12 @@
 package net.caustic.database;
 
+import static org.junit.Assert.*;
+
+import net.caustic.scope.Scope;
+import net.caustic.scope.SerializedScope;
+
+import org.junit.Test;
+
 public class InMemoryDatabaseTest extends DatabaseTest {
 
 	@Override
@@ -7,4 +14,15 @@ public class InMemoryDatabaseTest extends DatabaseTest {
 		return new InMemoryDatabase();
 	}
 
+	@Test
+	public void testGetWithSerializedScope() throws Exception {
+		Database db = getDatabase();
+		Scope scope = db.newDefaultScope();
+		Scope child = db.newScope(scope, "foo", "bar");
+		db.put(scope, "roses", "red");
+		
+		Scope serialized = new SerializedScope(child.asString(), child.getName());
+		assertEquals("bar", db.get(serialized, "foo"));
+		assertEquals("red", db.get(serialized, "roses"));
+	}
 }
@@ -0,0 +1,70 @@
+package net.caustic.database;
+
+import static org.junit.Assert.*;
+
+import net.caustic.scope.Scope;
+import net.caustic.scope.SerializedScope;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScopeCacheTest {
+	
+	private ScopeCache cache;
+	private Scope root;
+	private Scope child;
+	private String[] result;
+	
+	@Before
+	public void setUp() throws Exception {
+		cache = new ScopeCache(2);
+		root = new SerializedScope("0", Database.DEFAULT_SCOPE);
+		child = new SerializedScope("1", "child");
+		result = new String[1];
+		
+		cache.onNewScope(root);
+		cache.onPut(root, "roses", "red");
+		cache.onNewScope(root, "child", "value", child);
+	}
+	
+	@Test
+	public void testFindsValueInEnclosingScope() throws Exception {
+		assertTrue(cache.get(child, "roses", result));
+		assertEquals("red", result[0]);
+	}
+	
+	@Test
+	public void testFindsLinkValue() throws Exception {
+		assertTrue(cache.get(child, "child", result));
+		assertEquals("value", result[0]);
+	}
+	
+	@Test
+	public void testKnowsMissingValue() throws Exception {
+		assertTrue(cache.get(child, "violets", result));
+		assertNull(result[0]);
+	}
+	
+	@Test
+	public void testCannotAnswerPastForgottenScope() throws Exception {
+		Scope grandchild = new SerializedScope("2", "grandchild");
+		cache.onNewScope(child, "grandchild", "value", grandchild);
+		
+		assertFalse("Root should have been forgotten.", cache.get(grandchild, "roses", result));
+		assertTrue("Value in remembered scope doesn't need the forgotten one.",
+				cache.get(grandchild, "child", result));
+		assertEquals("value", result[0]);
+	}
+	
+	@Test
+	public void testCannotAnswerUnheardScope() throws Exception {
+		assertFalse(cache.get(new SerializedScope("3", "unheard"), "roses", result));
+	}
+	
+	@Test
+	public void testGetAll() throws Exception {
+		String[] values = new String[3];
+		assertTrue(cache.getAll(child, new String[] { "child", "roses", "violets" }, values));
+		assertArrayEquals(new String[] { "value", "red", null }, values);
+	}
+}
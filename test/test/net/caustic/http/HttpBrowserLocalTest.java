@@ -6,16 +6,20 @@ import static net.caustic.util.TestUtils.*;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
 import net.caustic.http.CookieManager;
 import net.caustic.http.HttpBrowser;
 import net.caustic.http.HttpRequester;
 import net.caustic.http.HttpResponse;
 import net.caustic.http.RateLimitManager;
 import net.caustic.http.ResponseHeaders;
+import net.caustic.log.MultiLog;
 import net.caustic.regexp.Pattern;
 import net.caustic.util.JavaNetEncoder;
 
@@ -79,6 +83,68 @@ public class HttpBrowserLocalTest {
 		assertEquals(content, browser.get(google, new Hashtable<String, String>(), new Pattern[] {}));
 	}
 	
+	@Test
+	public void testConcurrentIdenticalGetsShareOneRequest() throws Throwable {
+		final String content = randomString();
+		final CountDownLatch joined = new CountDownLatch(1);
+		final SharedRequests sharedRequests = new SharedRequests() {
+			void joined() {
+				joined.countDown();
+			}
+		};
+		browser = new HttpBrowser(requester, rateLimitManager, cookieManager, sharedRequests, new MultiLog());
+		new NonStrictExpectations() {
+			@Mocked InputStreamReader contentStream;
+			@Mocked ResponseHeaders responseHeaders;
+			@Mocked HttpResponse response;
+			{
+				requester.get(google, (Hashtable) any); times = 1;
+					result = new Delegate() {
+						HttpResponse get(String url, Hashtable headers) throws InterruptedException {
+							// whichever get leads waits here for the other to join it.
+							assertTrue("Second get should have joined the first.",
+									joined.await(5000, TimeUnit.MILLISECONDS));
+							return response;
+						}
+					};
+				response.getResponseHeaders(); result = responseHeaders;
+				response.isSuccess(); result = true;
+				response.getContentStream(); result = contentStream;
+				contentStream.read((char[]) any);
+					result = new Delegate() {
+						int read(char[] buffer) {
+							for(int i = 0 ; i < content.length() ; i ++) {
+								buffer[i] = content.charAt(i);
+							}
+							return content.length();
+						}
+					};
+					result = -1;
+			}
+		};
+		final String[] secondBody = new String[1];
+		final Throwable[] secondFailure = new Throwable[1];
+		Thread second = new Thread() {
+			public void run() {
+				try {
+					secondBody[0] = browser.get(google, new Hashtable<String, String>(), new Pattern[] {});
+				} catch(Throwable e) {
+					secondFailure[0] = e;
+				}
+			}
+		};
+		second.start();
+		try {
+			assertEquals(content, browser.get(google, new Hashtable<String, String>(), new Pattern[] {}));
+		} finally {
+			second.join();
+		}
+		if(secondFailure[0] != null) {
+			throw secondFailure[0];
+		}
+		assertEquals(content, secondBody[0]);
+	}
+	
 	@Test
 	public void testSetMaxResponseSize() {
 		fail("Not yet implemented");
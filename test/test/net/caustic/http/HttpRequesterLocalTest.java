@@ -0,0 +1,232 @@
+package net.caustic.http;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test {@link HttpRequester}s against a local HTTP server.
+ * @author realest
+ *
+ */
+@RunWith(Parameterized.class)
+public class HttpRequesterLocalTest {
+
+	/**
+	 * An address that should never answer, so that connecting to it times out.
+	 */
+	private static final String UNROUTABLE_URL = "http://10.255.255.1/";
+
+	private static final int SLOW_MILLISECONDS = 5000;
+
+	private final Class<HttpRequester> klass;
+	private HttpRequester requester;
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String url;
+
+	public HttpRequesterLocalTest(Class<HttpRequester> klass) {
+		this.klass = klass;
+	}
+
+	@Parameters
+	public static Collection<Class<?>[]> implementations() {
+		return Arrays.asList(new Class<?>[][] {
+				{ JavaNetHttpRequester.class  },
+				{ HttpClientRequester.class }
+		});
+	}
+
+	/**
+	 * Respond to <code>/echo</code> with the <code>X-Echo</code> and <code>Content-Type</code>
+	 * request headers and the request body, to <code>/slow</code> after
+	 * {@link #SLOW_MILLISECONDS}, and to <code>/stall</code> with half a body, then the
+	 * rest after {@link #SLOW_MILLISECONDS}.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		requester = klass.newInstance();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/echo", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				StringBuffer echo = new StringBuffer();
+				echo.append(exchange.getRequestHeaders().getFirst("X-Echo")).append('\n');
+				echo.append(exchange.getRequestHeaders().getFirst("Content-Type")).append('\n');
+				InputStream in = exchange.getRequestBody();
+				int read;
+				while((read = in.read()) != -1) {
+					echo.append((char) read);
+				}
+				respond(exchange, echo.toString());
+			}
+		});
+		server.createContext("/slow", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(SLOW_MILLISECONDS);
+				} catch(InterruptedException e) { }
+				respond(exchange, "slow");
+			}
+		});
+		server.createContext("/stall", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, 10);
+				OutputStream out = exchange.getResponseBody();
+				out.write("stall".getBytes("UTF-8"));
+				out.flush();
+				try {
+					Thread.sleep(SLOW_MILLISECONDS);
+					out.write("ended".getBytes("UTF-8"));
+				} catch(InterruptedException e) { }
+				out.close();
+			}
+		});
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String getString(InputStreamReader inputStream) throws IOException {
+		StringBuffer strBuf = new StringBuffer();
+		char[] buf = new char[512];
+		int readBytes;
+		while((readBytes = inputStream.read(buf)) != -1) {
+			strBuf.append(buf, 0, readBytes);
+		}
+		return strBuf.toString();
+	}
+
+	@Test
+	public void testHeadersTheRequesterSetsItselfAreSkipped() throws Exception {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put("Host", "www.example.com");
+		headers.put("Connection", "close");
+		headers.put(HttpBrowser.USER_AGENT_HEADER_NAME, HttpBrowser.USER_AGENT_HEADER_DEFAULT_VALUE);
+		headers.put("X-Echo", "echoed");
+
+		HttpResponse response = requester.get(url + "/echo", headers);
+		assertTrue(response.isSuccess());
+		assertTrue(getString(response.getContentStream()).startsWith("echoed\n"));
+	}
+
+	@Test(expected = HttpRequestException.class)
+	public void testInvalidHeaderThrowsHttpRequestException() throws Exception {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put("X-Echo", "line\nbreak");
+		requester.get(url + "/echo", headers);
+	}
+
+	@Test
+	public void testPostDefaultsContentType() throws Exception {
+		HttpResponse response = requester.post(url + "/echo", new Hashtable<String, String>(), "a=b");
+		assertTrue(response.isSuccess());
+		assertEquals("null\napplication/x-www-form-urlencoded\na=b", getString(response.getContentStream()));
+	}
+
+	@Test
+	public void testPostKeepsContentType() throws Exception {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put(HttpResponse.CONTENT_TYPE_HEADER_NAME, "application/json");
+		HttpResponse response = requester.post(url + "/echo", headers, "{}");
+		assertTrue(response.isSuccess());
+		assertEquals("null\napplication/json\n{}", getString(response.getContentStream()));
+	}
+
+	@Test(expected = HttpRequestException.class)
+	public void testTimeoutThrowsHttpRequestException() throws Exception {
+		requester.setTimeout(100);
+		requester.get(url + "/slow", new Hashtable<String, String>());
+	}
+
+	@Test
+	public void testStalledBodyThrowsIOException() throws Exception {
+		requester.setTimeout(1000);
+		HttpResponse response = requester.get(url + "/stall", new Hashtable<String, String>());
+		assertTrue(response.isSuccess());
+		long start = System.currentTimeMillis();
+		try {
+			getString(response.getContentStream());
+			fail("Should have timed out reading the body.");
+		} catch(IOException e) {
+			long elapsed = System.currentTimeMillis() - start;
+			assertTrue("Took " + elapsed + "ms to time out.", elapsed < SLOW_MILLISECONDS);
+		}
+	}
+	
+	@Test
+	public void testConnectTimeoutThrowsHttpRequestException() throws Exception {
+		requester.setConnectTimeout(100);
+		long start = System.currentTimeMillis();
+		try {
+			requester.get(UNROUTABLE_URL, new Hashtable<String, String>());
+			fail("Should not have connected to " + UNROUTABLE_URL);
+		} catch(HttpRequestException e) {
+			long elapsed = System.currentTimeMillis() - start;
+			assertTrue("Took " + elapsed + "ms to time out.", elapsed < SLOW_MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void testInterruptAbandonsRequest() throws Exception {
+		// HttpURLConnection cannot be interrupted.
+		assumeTrue(requester instanceof HttpClientRequester);
+
+		final Thread requesting = Thread.currentThread();
+		Thread interrupter = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch(InterruptedException e) { }
+				requesting.interrupt();
+			}
+		};
+		interrupter.start();
+		long start = System.currentTimeMillis();
+		try {
+			requester.get(url + "/slow", new Hashtable<String, String>());
+			fail("Should have been interrupted.");
+		} catch(InterruptedException e) {
+			long elapsed = System.currentTimeMillis() - start;
+			assertTrue("Took " + elapsed + "ms to interrupt.", elapsed < SLOW_MILLISECONDS);
+		} finally {
+			interrupter.join();
+			Thread.interrupted();
+		}
+	}
+}
@@ -35,7 +35,8 @@ public class HttpRequesterTest {
 	@Parameters
 	public static Collection<Class<?>[]> implementations() {
 		return Arrays.asList(new Class<?>[][] {
-				{ JavaNetHttpRequester.class  }
+				{ JavaNetHttpRequester.class  },
+				{ HttpClientRequester.class }
 		});
 	}
 	
@@ -147,4 +147,52 @@ public class RateLimitManagerTest {
 		manager.shouldDelay(url);
 		assertTrue("Response load from this host should be delayed.", manager.shouldDelay(url + randomString()));
 	}
+	
+	@Test
+	public void testAcquireReturnsWaitUntilNextRequest() throws Exception {
+		String url = "http://www.host.com/";
+		manager.setMinRequestWait(1000);
+		
+		assertEquals("First request shouldn't wait.", 0, manager.acquire(url));
+		long wait = manager.acquire(url);
+		assertTrue("Second request should wait at most the minimum request wait.", wait > 0 && wait <= 1000);
+		Thread.sleep(wait);
+		assertEquals("Request after waiting shouldn't wait.", 0, manager.acquire(url));
+	}
+	
+	@Test
+	public void testAcquireWaitsOffLargeResponse() throws Exception {
+		String url = "http://www.host.com/";
+		manager.setMinRequestWait(0);
+		manager.setRateLimit(1);
+		
+		assertEquals("First request shouldn't wait.", 0, manager.acquire(url));
+		manager.rememberResponse(url, 3 * 1024);
+		long wait = manager.acquire(url);
+		assertTrue("Should wait for bytes over one second's worth to be paid back.", wait > 1000 && wait <= 2000);
+	}
+	
+	@Test
+	public void testMaxHostRequestsBlocksUntilFinished() throws Exception {
+		final String url = "http://www.host.com/";
+		manager.setMaxHostRequests(1);
+		
+		manager.startRequest(url);
+		Thread second = new Thread() {
+			public void run() {
+				try {
+					manager.startRequest(url);
+				} catch(InterruptedException e) { }
+			}
+		};
+		second.start();
+		second.join(100);
+		assertTrue("Second request to one host should wait.", second.isAlive());
+		
+		manager.startRequest("http://www.otherhost.com/");
+		
+		manager.finishRequest(url);
+		second.join(1000);
+		assertFalse("Second request should start once first finishes.", second.isAlive());
+	}
 }
@@ -7,6 +7,7 @@ import java.util.List;
 
 import net.caustic.json.JsonMEParser;
 import net.caustic.json.JsonParser;
+import net.caustic.json.SlicingJsonParser;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -33,7 +34,8 @@ public class JsonObjectTest {
 	@Parameters
 	public static List<Class<?>[]> implementations() {
 		return Arrays.asList(new Class<?>[][] {
-				{	JsonMEParser.class }
+				{	JsonMEParser.class },
+				{	SlicingJsonParser.class }
 		});
 	}
 	
@@ -0,0 +1,162 @@
+package net.caustic.json;
+
+import static org.junit.Assert.*;
+
+import java.util.Hashtable;
+
+import net.caustic.json.JsonArray;
+import net.caustic.json.JsonException;
+import net.caustic.json.JsonIterator;
+import net.caustic.json.JsonObject;
+import net.caustic.json.SlicingJsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SlicingJsonParserTest {
+	
+	private SlicingJsonParser parser;
+	
+	@Before
+	public void setUp() throws Exception {
+		parser = new SlicingJsonParser();
+	}
+	
+	@Test
+	public void testNestedValuesAreSlicesOfSource() throws Exception {
+		String nested = "{ \"find\" : \"\\\\w+\",\n \"then\" : [ 1, 2 ] }";
+		JsonObject obj = parser.newObject("{ \"then\" : " + nested + " }");
+		
+		assertEquals(nested, obj.getString("then"));
+		assertEquals("[ 1, 2 ]", obj.getJsonObject("then").getString("then"));
+		assertEquals(nested, obj.getJsonObject("then").toString());
+	}
+	
+	@Test
+	public void testStringsAreUnescaped() throws Exception {
+		JsonObject obj = parser.newObject("{ \"a\\\"b\" : \"c\\nd\\u0041\\/\" }");
+		
+		assertEquals("c\nd" + "A/", obj.getString("a\"b"));
+	}
+	
+	@Test
+	public void testKeysAreInSourceOrder() throws Exception {
+		JsonIterator keys = parser.newObject("{ \"b\" : 1, \"a\" : 2, \"c\" : 3 }").keys();
+		
+		assertEquals("b", keys.next());
+		assertEquals("a", keys.next());
+		assertEquals("c", keys.next());
+		assertFalse(keys.hasNext());
+	}
+	
+	@Test
+	public void testRepeatedKeyReplacesValue() throws Exception {
+		JsonObject obj = parser.newObject("{ \"a\" : 1, \"a\" : 2 }");
+		
+		assertEquals(1, obj.length());
+		assertEquals(2, obj.getInt("a"));
+	}
+	
+	@Test
+	public void testAcceptsLenientSyntax() throws Exception {
+		JsonObject obj = parser.newObject("{ // comment\n a : 'single', b => unquoted; /* comment */ c = [ 1, , 2, ] # comment\n }");
+		
+		assertEquals("single", obj.getString("a"));
+		assertEquals("unquoted", obj.getString("b"));
+		JsonArray array = obj.getJsonArray("c");
+		assertEquals(3, array.length());
+		assertEquals("null", array.getString(1));
+	}
+	
+	@Test
+	public void testUnquotedStringsMayContainSpaces() throws Exception {
+		JsonObject obj = parser.newObject("{ a b : c d , e:f g}");
+		
+		assertEquals("c d", obj.getString("a b"));
+		assertEquals("f g", obj.getString("e"));
+	}
+	
+	@Test
+	public void testNumbersAreWrittenAsJsonMeWould() throws Exception {
+		JsonObject obj = parser.newObject("{ a : 1.5e3, b : 01, c : 010, d : 0x1F, e : 08, f : 12 , g : 1abc }");
+		
+		assertEquals("1500.0", obj.getString("a"));
+		assertEquals("1", obj.getString("b"));
+		assertEquals("8", obj.getString("c"));
+		assertEquals("31", obj.getString("d"));
+		assertEquals("8", obj.getString("e"));
+		assertEquals("12", obj.getString("f"));
+		assertEquals("1abc", obj.getString("g"));
+		assertEquals(1500, obj.getInt("a"));
+	}
+	
+	@Test
+	public void testHexEscapesAreUnescaped() throws Exception {
+		assertEquals("A", parser.newObject("{ \"a\" : \"\\x41\" }").getString("a"));
+	}
+	
+	@Test(expected = JsonException.class)
+	public void testMalformedHexEscapeThrowsException() throws Exception {
+		parser.newObject("{ \"a\" : \"\\x\" }");
+	}
+	
+	@Test(expected = JsonException.class)
+	public void testMalformedUnicodeEscapeThrowsException() throws Exception {
+		parser.newObject("{ \"a\" : \"\\u00\" }");
+	}
+	
+	@Test
+	public void testIsStringMissingIsFalse() throws Exception {
+		JsonObject obj = parser.newObject("{ \"a\" : [ \"b\" ] }");
+		
+		assertTrue(obj.isString("a"));
+		assertFalse(obj.isString("c"));
+		assertTrue(obj.getJsonArray("a").isString(0));
+		assertFalse(obj.getJsonArray("a").isString(1));
+	}
+	
+	@Test
+	public void testManyKeys() throws Exception {
+		StringBuffer json = new StringBuffer("{");
+		for(int i = 0 ; i < 100 ; i ++) {
+			json.append("\"key" + i + "\" : " + i + ",");
+		}
+		json.append("}");
+		JsonObject obj = parser.newObject(json.toString());
+		
+		assertEquals(100, obj.length());
+		assertEquals(57, obj.getInt("key57"));
+		assertFalse(obj.has("key100"));
+	}
+	
+	@Test
+	public void testGenerate() throws Exception {
+		Hashtable map = new Hashtable();
+		map.put("quote\"", "new\nline");
+		
+		assertEquals("new\nline", parser.generate(map).getString("quote\""));
+	}
+	
+	@Test(expected = JsonException.class)
+	public void testUnterminatedStringThrowsException() throws Exception {
+		parser.newObject("{ \"a\" : \"b }");
+	}
+	
+	@Test(expected = JsonException.class)
+	public void testUnclosedObjectThrowsException() throws Exception {
+		parser.newObject("{ \"a\" : \"b\"");
+	}
+	
+	@Test(expected = JsonException.class)
+	public void testMissingKeyThrowsException() throws Exception {
+		parser.newObject("{ \"a\" : \"b\" }").getString("c");
+	}
+	
+	@Test
+	public void testIsJsonObject() throws Exception {
+		assertTrue(parser.isJsonObject("{}"));
+		assertFalse(parser.isJsonObject("[]"));
+		assertTrue(parser.isJsonArray("[]"));
+		assertFalse(parser.isJsonArray("\"string\""));
+	}
+}
@@ -0,0 +1,56 @@
+package net.caustic.regexp;
+
+import static org.junit.Assert.*;
+
+import net.caustic.regexp.CachingRegexpCompiler;
+import net.caustic.regexp.JavaUtilRegexpCompiler;
+import net.caustic.regexp.Pattern;
+import net.caustic.util.Encoder;
+import net.caustic.util.JavaNetEncoder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingRegexpCompilerTest {
+	
+	private CachingRegexpCompiler compiler;
+	
+	@Before
+	public void setUp() throws Exception {
+		compiler = new CachingRegexpCompiler(new JavaUtilRegexpCompiler(new JavaNetEncoder(Encoder.UTF_8)), 2);
+	}
+	
+	@Test
+	public void testSamePatternIsCompiledOnce() {
+		Pattern first = compiler.newPattern("\\w+", false, false, false);
+		Pattern second = compiler.newPattern("\\w+", false, false, false);
+		
+		assertSame(first, second);
+		assertEquals(1, compiler.getHits());
+		assertEquals(1, compiler.getMisses());
+	}
+	
+	@Test
+	public void testFlagsAreKeyed() {
+		Pattern sensitive = compiler.newPattern("beta", false, false, false);
+		Pattern insensitive = compiler.newPattern("beta", true, false, false);
+		
+		assertNotSame(sensitive, insensitive);
+		assertFalse(sensitive.matches("BETA", Pattern.FIRST_MATCH));
+		assertTrue(insensitive.matches("BETA", Pattern.FIRST_MATCH));
+		assertEquals(2, compiler.getMisses());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedIsForgotten() {
+		Pattern a = compiler.newPattern("a", false, false, false);
+		compiler.newPattern("b", false, false, false);
+		compiler.newPattern("a", false, false, false);
+		compiler.newPattern("c", false, false, false);
+		
+		assertEquals(2, compiler.size());
+		assertSame("Recently used pattern should be kept.", a, compiler.newPattern("a", false, false, false));
+		compiler.newPattern("b", false, false, false);
+		assertEquals("Forgotten pattern should be compiled again.", 4, compiler.getMisses());
+	}
+}
@@ -1,6 +1,7 @@
 package net.caustic.regexp;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 import static net.caustic.util.TestUtils.*;
 
 import java.util.Arrays;
@@ -48,6 +49,18 @@ public class PatternTest {
 		}
 	}
 
+	@Test
+	public void testMatchAtEndOfInputIsNotSettled() {
+		pat = re.newPattern("b\\w+s", false, false, false);
+		String input = "briskets, bicycles";
+		
+		assertFalse(testClass + " settled a match that more input could extend.", pat.hasSettledMatch(input, 1));
+		assertFalse(testClass + " settled a match that isn't there.", pat.hasSettledMatch(input, 2));
+		if(pat.hasSettledMatch(input, 0)) {
+			assertTrue(testClass + " settled a match it couldn't find.", pat.matches(input, 0));
+		}
+	}
+	
 	@Test
 	public void testMatch() throws Exception {
 		pat = re.newPattern("((\\w+ ){3})", false, false, false);
@@ -80,6 +93,18 @@ public class PatternTest {
 		}
 	}
 
+	@Test
+	public void testMatchNamedBackreference() throws Exception {
+		// jakarta regexp has no named groups.
+		assumeTrue(re instanceof JavaUtilRegexpCompiler);
+		pat = re.newPattern("(?<word>\\w+)", false, false, false);
+		
+		String[] matches = pat.match("hello world", "<${word}>", 0, -1);
+		assertEquals(testClass + " didn't match every word.", 2, matches.length);
+		assertEquals(testClass + " didn't substitute named backreference.", "<hello>", matches[0]);
+		assertEquals(testClass + " didn't substitute named backreference.", "<world>", matches[1]);
+	}
+	
 	@Test
 	public void testCaseInsensitive() {
 		String input = "alpha beta gamma";
@@ -118,6 +143,54 @@ public class PatternTest {
 		assertEquals("boleros", lastTwo[1]);
 	}
 	
+	@Test
+	public void testMatchRangePastLastMatch() throws Exception {
+		String input = "briskets, bicycles, and boleros";
+		pat = re.newPattern("b\\w+s", false, false, false);
+		String sub = "$0";
+		
+		String[] lastFive = pat.match(input, sub, -5, -1);
+		assertEquals(testClass + " should return every match when fewer than the range.", 3, lastFive.length);
+		assertEquals("briskets", lastFive[0]);
+		
+		String[] fromSecond = pat.match(input, sub, 1, 5);
+		assertEquals(testClass + " should truncate range to the last match.", 2, fromSecond.length);
+		assertEquals("boleros", fromSecond[1]);
+		
+		assertEquals(0, pat.match(input, sub, 3, 3).length);
+	}
+	
+	@Test
+	public void testPatternIsSharedBetweenThreads() throws Exception {
+		pat = re.newPattern("(\\w+)@(\\w+)", false, false, false);
+		final Thread[] threads = new Thread[8];
+		final boolean[] correct = new boolean[threads.length];
+		for(int i = 0 ; i < threads.length ; i++) {
+			final int id = i;
+			threads[i] = new Thread() {
+				public void run() {
+					String input = "";
+					for(int j = 0 ; j < 200 ; j++) {
+						input += "user" + id + "@host" + j + " ";
+					}
+					correct[id] = true;
+					for(int j = 0 ; j < 20 ; j++) {
+						String[] hosts = pat.match(input, "$2", 0, -1);
+						if(hosts.length != 200 || !hosts[199].equals("host199")
+								|| !pat.match(input, "$1", -1, -1)[0].equals("user" + id)) {
+							correct[id] = false;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for(int i = 0 ; i < threads.length ; i++) {
+			threads[i].join();
+			assertTrue(testClass + " gave a wrong match in thread " + i, correct[i]);
+		}
+	}
+	
 	@Test
 	public void testMatchNumber() throws Exception {
 		String input = "briskets, bicycles, and boleros";
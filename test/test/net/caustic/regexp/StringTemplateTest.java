@@ -84,6 +84,33 @@ public class StringTemplateTest {
 		assertArrayEquals(new String[] { "is missing" }, sub.getMissingTags());
 	}
 
+	@Test
+	public void testSubRepeatedTag() throws Exception {
+		db.put(scope, "word", "a & b");
+		StringTemplate template = re.newTemplate("{{word}}, {{{word}}}, {{word}}",
+				ENCODED_PATTERN, UNENCODED_PATTERN);
+		StringSubstitution sub = template.sub(db, scope);
+		assertFalse(sub.isMissingTags());
+		assertEquals(encoder.encode("a & b") + ", a & b, " + encoder.encode("a & b"), sub.getSubstituted());
+	}
+	
+	@Test
+	public void testSubRepeatedMissingTagIsMissingOnce() throws Exception {
+		StringTemplate template = re.newTemplate("{{is missing}} and {{{is missing}}}",
+				ENCODED_PATTERN, UNENCODED_PATTERN);
+		StringSubstitution sub = template.sub(db, scope);
+		assertTrue(sub.isMissingTags());
+		assertArrayEquals(new String[] { "is missing" }, sub.getMissingTags());
+	}
+	
+	@Test
+	public void testSubWithoutTags() throws Exception {
+		String templateString = "un deux trois & quatre";
+		StringTemplate template = re.newTemplate(templateString,
+				ENCODED_PATTERN, UNENCODED_PATTERN);
+		assertEquals(templateString, template.sub(db, scope).getSubstituted());
+	}
+	
 	@Test
 	public void testToString() {
 		String templateString = "un deux trois & quatre";
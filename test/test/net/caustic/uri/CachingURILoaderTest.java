@@ -0,0 +1,130 @@
+package net.caustic.uri;
+
+import static org.junit.Assert.*;
+import static net.caustic.util.TestUtils.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Hashtable;
+
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Mocked;
+import net.caustic.file.FileLoader;
+import net.caustic.file.JavaIOFileLoader;
+import net.caustic.http.HttpBrowser;
+import net.caustic.regexp.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingURILoaderTest {
+
+	@Mocked private HttpBrowser browser;
+
+	private final String httpURI = "http://" + randomString();
+	private final String httpContents = randomString();
+
+	private File file;
+	private CachingURILoader uriLoader;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("caching", ".json");
+		file.deleteOnExit();
+		write(file, "first");
+		uriLoader = new CachingURILoader(browser, new JavaIOFileLoader(), 2);
+	}
+
+	private static void write(File file, String contents) throws Exception {
+		FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+	}
+
+	@Test
+	public void testUnchangedFileIsReadOnce(@Mocked final FileLoader fileLoader) throws Exception {
+		uriLoader = new CachingURILoader(browser, fileLoader);
+		new Expectations() {{
+			fileLoader.load(file.getPath()); result = "first"; times = 1;
+		}};
+
+		assertEquals("first", uriLoader.load(file.getPath()));
+		assertEquals("first", uriLoader.load("file:" + file.getPath()));
+	}
+
+	@Test
+	public void testModifiedFileIsReadAgain() throws Exception {
+		assertEquals("first", uriLoader.load(file.getPath()));
+		write(file, "second");
+		file.setLastModified(file.lastModified() + 10000);
+		assertEquals("second", uriLoader.load(file.getPath()));
+	}
+
+	@Test
+	public void testFreshResponseIsNotRequestedAgain() throws Exception {
+		new Expectations() {{
+			browser.get(httpURI, (Hashtable) any, (Pattern[]) any, (Hashtable) any);
+			times = 1;
+			result = new Delegate() {
+				String get(String url, Hashtable headers, Pattern[] terminates, Hashtable responseHeaders) {
+					responseHeaders.put("cache-control", "public, max-age=60");
+					return httpContents;
+				}
+			};
+		}};
+
+		assertEquals(httpContents, uriLoader.load(httpURI));
+		assertEquals(httpContents, uriLoader.load(httpURI));
+	}
+
+	@Test
+	public void testStaleResponseIsRevalidatedWithETag() throws Exception {
+		new Expectations() {{
+			browser.get(httpURI, (Hashtable) any, (Pattern[]) any, (Hashtable) any);
+			times = 2;
+			result = new Delegate() {
+				String get(String url, Hashtable headers, Pattern[] terminates, Hashtable responseHeaders) {
+					responseHeaders.put("etag", "\"tag\"");
+					if("\"tag\"".equals(headers.get("If-None-Match"))) {
+						return null; // not modified
+					}
+					return httpContents;
+				}
+			};
+		}};
+
+		assertEquals(httpContents, uriLoader.load(httpURI));
+		assertEquals(httpContents, uriLoader.load(httpURI));
+	}
+
+	@Test
+	public void testNoStoreResponseIsNotKept() throws Exception {
+		new Expectations() {{
+			browser.get(httpURI, (Hashtable) any, (Pattern[]) any, (Hashtable) any);
+			result = new Delegate() {
+				String get(String url, Hashtable headers, Pattern[] terminates, Hashtable responseHeaders) {
+					responseHeaders.put("cache-control", "no-store");
+					responseHeaders.put("etag", "\"tag\"");
+					return httpContents;
+				}
+			};
+		}};
+
+		uriLoader.load(httpURI);
+		assertEquals(0, uriLoader.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsForgotten() throws Exception {
+		File other = File.createTempFile("caching", ".json");
+		other.deleteOnExit();
+		File another = File.createTempFile("caching", ".json");
+		another.deleteOnExit();
+
+		uriLoader.load(file.getPath());
+		uriLoader.load(other.getPath());
+		uriLoader.load(another.getPath());
+		assertEquals(2, uriLoader.size());
+	}
+}
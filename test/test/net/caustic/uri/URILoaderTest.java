@@ -13,6 +13,7 @@ import mockit.NonStrictExpectations;
 import net.caustic.file.FileLoader;
 import net.caustic.http.HttpBrowser;
 import net.caustic.regexp.Pattern;
+import net.caustic.uri.CachingURILoader;
 import net.caustic.uri.JavaNetURILoader;
 import net.caustic.uri.URILoader;
 
@@ -48,7 +49,8 @@ public class URILoaderTest {
 	@Parameters
 	public static List<Constructor<?>[]> implementations() throws Exception {
 		return Arrays.asList(new Constructor<?>[][] {
-				{ JavaNetURILoader.class.getConstructor(HttpBrowser.class, FileLoader.class) }
+				{ JavaNetURILoader.class.getConstructor(HttpBrowser.class, FileLoader.class) },
+				{ CachingURILoader.class.getConstructor(HttpBrowser.class, FileLoader.class) }
 		});
 	}
 	